@@ -0,0 +1,205 @@
+package pl.ciruk.nordea.orders.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.generator.FeedFormat;
+import pl.ciruk.nordea.orders.generator.FeedGenerator;
+import pl.ciruk.nordea.orders.generator.FeedWriter;
+import pl.ciruk.nordea.orders.reader.OrderEventHandler;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Synthetic stream of orders for benchmarks, generated by {@link FeedGenerator} and kept in memory as columns of primitives,
+ * so that benchmarks do not measure the generator. <br/>
+ * Prices are in ticks of {@link PriceScale#DEFAULT}. Instances should be created with {@link Feed.Builder}.
+ */
+public final class Feed {
+	/** Smallest price step, i.e. one cent. */
+	public static final long PRICE_STEP = PriceScale.DEFAULT.parse("0.01");
+
+	public static class Builder {
+		private int orders = 1000000;
+
+		private int books = 1;
+
+		private double cancelRatio = 0.3;
+
+		private double crossingRatio = 0.05;
+
+		private double meanDepth = 10;
+
+		private double volatility = 0.5;
+
+		private long seed = 42;
+
+		public Builder() {
+		}
+
+		/** Number of orders, cancels included. */
+		public Feed.Builder orders(int orders) {
+			this.orders = orders;
+			return this;
+		}
+
+		public Feed.Builder books(int books) {
+			this.books = books;
+			return this;
+		}
+
+		/** Share of cancels among all orders. */
+		public Feed.Builder cancelRatio(double cancelRatio) {
+			this.cancelRatio = cancelRatio;
+			return this;
+		}
+
+		/** Share of adds priced through the opposite side of the mid. */
+		public Feed.Builder crossingRatio(double crossingRatio) {
+			this.crossingRatio = crossingRatio;
+			return this;
+		}
+
+		/** Mean distance of passive orders from the mid, in price steps. */
+		public Feed.Builder meanDepth(double meanDepth) {
+			this.meanDepth = meanDepth;
+			return this;
+		}
+
+		/** Standard deviation of a single move of the mid, in price steps. */
+		public Feed.Builder volatility(double volatility) {
+			this.volatility = volatility;
+			return this;
+		}
+
+		public Feed.Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Feed build() {
+			Preconditions.checkArgument(orders > 0, "Number of orders must be positive");
+			Preconditions.checkArgument(books > 0, "Number of books must be positive");
+			Preconditions.checkArgument(cancelRatio >= 0 && cancelRatio < 1, "Cancel ratio must be within [0, 1)");
+			Preconditions.checkArgument(crossingRatio >= 0 && crossingRatio <= 1, "Crossing ratio must be within [0, 1]");
+			Preconditions.checkArgument(meanDepth >= 0, "Mean depth cannot be negative");
+			Preconditions.checkArgument(volatility >= 0, "Volatility cannot be negative");
+
+			return new Feed(this);
+		}
+	}
+
+	/** Book ids in order of their first appearance. */
+	private final String[] bookIds;
+
+	private int bookCount;
+
+	private final int[] books;
+
+	private final OperationType[] operationTypes;
+
+	private final long[] orderIds;
+
+	private final long[] prices;
+
+	private final long[] volumes;
+
+	private Feed(Feed.Builder builder) {
+		int size = builder.orders;
+		bookIds = new String[builder.books];
+		books = new int[size];
+		operationTypes = new OperationType[size];
+		orderIds = new long[size];
+		prices = new long[size];
+		volumes = new long[size];
+
+		final Map<String, Integer> bookIndices = Maps.newHashMap();
+		new FeedGenerator.Builder()
+				.orders(size)
+				.books(builder.books)
+				.cancelRatio(builder.cancelRatio)
+				.crossingRatio(builder.crossingRatio)
+				.meanDepth(builder.meanDepth)
+				.volatility(builder.volatility)
+				.seed(builder.seed)
+				.build()
+				.generate(new OrderEventHandler() {
+					private int index;
+
+					@Override
+					public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+						Integer book = bookIndices.get(bookId);
+						if (book == null) {
+							book = bookCount++;
+							bookIndices.put(bookId, book);
+							bookIds[book] = bookId;
+						}
+						books[index] = book;
+						operationTypes[index] = operationType;
+						orderIds[index] = orderId;
+						prices[index] = price;
+						volumes[index] = volume;
+						index++;
+					}
+				});
+	}
+
+	public int size() {
+		return orderIds.length;
+	}
+
+	/** Ids of all books the feed refers to. */
+	public String[] getBookIds() {
+		return Arrays.copyOf(bookIds, bookCount);
+	}
+
+	public String getBookId(int index) {
+		return bookIds[books[index]];
+	}
+
+	public OperationType getOperationType(int index) {
+		return operationTypes[index];
+	}
+
+	public long getOrderId(int index) {
+		return orderIds[index];
+	}
+
+	/** Price in ticks; <code>0</code> for cancels. */
+	public long getPrice(int index) {
+		return prices[index];
+	}
+
+	/** Volume; <code>0</code> for cancels. */
+	public long getVolume(int index) {
+		return volumes[index];
+	}
+
+	/** Writes the feed as XML input of the application into a new temporary file, deleted on exit. */
+	public File toXmlFile() throws IOException {
+		return toFile(FeedFormat.XML, ".xml");
+	}
+
+	/** Writes the feed in the binary format into a new temporary file, deleted on exit. */
+	public File toBinaryFile() throws IOException {
+		return toFile(FeedFormat.BINARY, ".bin");
+	}
+
+	private File toFile(FeedFormat format, String suffix) throws IOException {
+		File file = File.createTempFile("orders", suffix);
+		file.deleteOnExit();
+		try (FeedWriter writer = format.writer(FileChannel.open(file.toPath(), StandardOpenOption.WRITE), PriceScale.DEFAULT, FeedWriter.DEFAULT_BUFFER_SIZE)) {
+			for (int i = 0; i < size(); i++) {
+				writer.onOrder(getBookId(i), operationTypes[i], orderIds[i], prices[i], volumes[i]);
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,238 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.ciruk.nordea.orders.benchmark.Feed;
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Cost of single operations on a book, on the calling thread. <br/>
+ * Each benchmark works on a batch of orders against a book prepared before every invocation,
+ * so that the book is in the same shape at the start of each measurement. Results are per order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderBookBenchmark {
+	/** Orders processed by a single invocation. */
+	static final int BATCH = 10000;
+
+	/** Best price on both sides of prepared books, in price steps; the spread is a single step. */
+	static final long MID = 10000;
+
+	/** Levels of each side of prepared books. */
+	static final int LEVELS = 100;
+
+	static final int ORDERS_PER_LEVEL = 10;
+
+	static final long VOLUME = 10;
+
+	/** Orders which rest in a book without crossing the spread. */
+	@State(Scope.Thread)
+	public static class PassiveAdds {
+		@Param({ "HEAP", "DIRECT" })
+		OrderStorage storage;
+
+		OrderBook book;
+
+		final OperationType[] operationTypes = new OperationType[BATCH];
+
+		final long[] prices = new long[BATCH];
+
+		long nextId;
+
+		@Setup(Level.Trial)
+		public void generate() {
+			generatePassive(operationTypes, prices);
+		}
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			book = preparedBook(new OrderBookOptions.Builder().orderStorage(storage));
+			nextId = LEVELS * ORDERS_PER_LEVEL * 2 + 1;
+		}
+	}
+
+	/** The same orders as {@link PassiveAdds}, with market data of given depth published to a listener which counts updates. */
+	@State(Scope.Thread)
+	public static class PublishedAdds {
+		@Param({ "0", "10" })
+		int depth;
+
+		OrderBook book;
+
+		final OperationType[] operationTypes = new OperationType[BATCH];
+
+		final long[] prices = new long[BATCH];
+
+		long nextId;
+
+		long updates;
+
+		@Setup(Level.Trial)
+		public void generate() {
+			generatePassive(operationTypes, prices);
+		}
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			book = preparedBook(new OrderBookOptions.Builder()
+					.depth(depth)
+					.marketDataListener(new MarketDataListener() {
+						@Override
+						public void onLevel(LevelUpdate update) {
+							updates++;
+						}
+
+						@Override
+						public void onTopOfBook(TopOfBook top) {
+							updates++;
+						}
+					}));
+			nextId = LEVELS * ORDERS_PER_LEVEL * 2 + 1;
+		}
+	}
+
+	/** Buys each taking out a given number of sell levels. */
+	@State(Scope.Thread)
+	public static class Sweeps {
+		static final int SWEEPS = 1000;
+
+		@Param({ "1", "4", "16" })
+		int levels;
+
+		OrderBook book;
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			book = new OrderBook("ID", new ArrayBlockingQueue<Order>(1),
+					new OrderBookOptions.Builder().expectedOrders(SWEEPS * levels * ORDERS_PER_LEVEL).build());
+			long id = 1;
+			for (int level = 0; level < SWEEPS * levels; level++) {
+				for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+					book.process(OperationType.SELL, id++, (MID + level) * Feed.PRICE_STEP, VOLUME);
+				}
+			}
+		}
+	}
+
+	/** Cancels of orders resting a given number of levels away from the best price. */
+	@State(Scope.Thread)
+	public static class Cancels {
+		@Param({ "0", "10", "99" })
+		int depth;
+
+		OrderBook book;
+
+		/** Ids of orders at the level to be cancelled, in random order. */
+		final long[] ids = new long[BATCH];
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			book = preparedBook(new OrderBookOptions.Builder());
+			// Whole batch queues at the chosen buy level, behind the orders already there
+			long price = (MID - depth) * Feed.PRICE_STEP;
+			long id = LEVELS * ORDERS_PER_LEVEL * 2 + 1;
+			for (int i = 0; i < BATCH; i++) {
+				ids[i] = id;
+				book.process(OperationType.BUY, id++, price, VOLUME);
+			}
+
+			Random random = new Random(42);
+			for (int i = BATCH - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				long swapped = ids[i];
+				ids[i] = ids[j];
+				ids[j] = swapped;
+			}
+		}
+	}
+
+	/** Orders which do not cross the spread, with the same distribution of distances from the mid as generated feeds. */
+	static void generatePassive(OperationType[] operationTypes, long[] prices) {
+		Random random = new Random(42);
+		for (int i = 0; i < BATCH; i++) {
+			boolean buy = random.nextBoolean();
+			long distance = (long) (-Math.log(1 - random.nextDouble()) * 10);
+			operationTypes[i] = buy ? OperationType.BUY : OperationType.SELL;
+			prices[i] = (buy ? MID - distance : MID + 1 + distance) * Feed.PRICE_STEP;
+		}
+	}
+
+	/** Book with given options and {@link #LEVELS} levels of {@link #ORDERS_PER_LEVEL} orders on each side. */
+	static OrderBook preparedBook(OrderBookOptions.Builder options) {
+		OrderBook book = new OrderBook("ID", new ArrayBlockingQueue<Order>(1),
+				options.expectedOrders(LEVELS * ORDERS_PER_LEVEL * 2 + 2 * BATCH).build());
+		long id = 1;
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+				book.process(OperationType.BUY, id++, (MID - level) * Feed.PRICE_STEP, VOLUME);
+				book.process(OperationType.SELL, id++, (MID + 1 + level) * Feed.PRICE_STEP, VOLUME);
+			}
+		}
+		return book;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public OrderBook addWithoutCross(PassiveAdds adds) {
+		OrderBook book = adds.book;
+		for (int i = 0; i < BATCH; i++) {
+			book.process(adds.operationTypes[i], adds.nextId++, adds.prices[i], VOLUME);
+		}
+		return book;
+	}
+
+	/** Same as {@link #addWithoutCross(PassiveAdds)}, but through the path which publishes market data after every order. */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public OrderBook addPublishingMarketData(PublishedAdds adds) {
+		OrderBook book = adds.book;
+		for (int i = 0; i < BATCH; i++) {
+			book.process(adds.operationTypes[i], adds.nextId++, adds.prices[i], VOLUME, 0L);
+		}
+		return book;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Sweeps.SWEEPS)
+	public OrderBook addWithSweep(Sweeps sweeps) {
+		OrderBook book = sweeps.book;
+		int levels = sweeps.levels;
+		long volume = levels * ORDERS_PER_LEVEL * VOLUME;
+		long id = Long.MAX_VALUE / 2;
+		for (int sweep = 0; sweep < Sweeps.SWEEPS; sweep++) {
+			long limit = (MID + (sweep + 1) * levels - 1) * Feed.PRICE_STEP;
+			book.process(OperationType.BUY, id++, limit, volume);
+		}
+		return book;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public OrderBook cancel(Cancels cancels) {
+		OrderBook book = cancels.book;
+		for (int i = 0; i < BATCH; i++) {
+			book.process(OperationType.DELETE, cancels.ids[i], 0L, 0L);
+		}
+		return book;
+	}
+}
@@ -0,0 +1,66 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.ciruk.nordea.orders.benchmark.Feed;
+
+/**
+ * Throughput of dispatching a generated feed to a container, until all books are done with it. <br/>
+ * Books are either multiplexed onto the default pool of workers (<code>shards = 0</code>)
+ * or sharded onto dedicated threads. Every invocation starts with a new container.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderBookContainerBenchmark {
+	static final int ORDERS = 200000;
+
+	@Param({ "1", "16", "256" })
+	int books;
+
+	@Param({ "0", "4" })
+	int shards;
+
+	Feed feed;
+
+	OrderBookContainer container;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		feed = new Feed.Builder().orders(ORDERS).books(books).build();
+	}
+
+	@Setup(Level.Invocation)
+	public void prepare() {
+		container = new OrderBookContainer.Builder().shards(shards).build();
+		container.register(Arrays.asList(feed.getBookIds()));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public OrderBookContainer dispatch() throws InterruptedException {
+		for (int i = 0; i < ORDERS; i++) {
+			container.process(feed.getBookId(i), feed.getOperationType(i), feed.getOrderId(i), feed.getPrice(i), feed.getVolume(i));
+		}
+		container.finishProcessing();
+		return container;
+	}
+}
@@ -0,0 +1,102 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pl.ciruk.nordea.orders.benchmark.Feed;
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * Throughput of turning a generated file into orders, without processing them. <br/>
+ * Covers every serial {@link OrderReader.Mode}, the {@link OrderPipeline} and the {@link ParallelOrderLoader} reading XML,
+ * and the {@link BinaryOrderLoader} reading the same feed in the binary format.
+ * Files are written once per trial and are small enough to stay in the page cache, so disks do not matter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderReaderBenchmark {
+	static final int ORDERS = 500000;
+
+	/** Serial reader implementation, so that the other benchmarks do not run once per mode. */
+	@State(Scope.Thread)
+	public static class Serial {
+		@Param({ "EVENT", "CURSOR", "MAPPED" })
+		OrderReader.Mode mode;
+	}
+
+	File file;
+
+	File binaryFile;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		Feed feed = new Feed.Builder().orders(ORDERS).books(16).build();
+		file = feed.toXmlFile();
+		binaryFile = feed.toBinaryFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() {
+		file.delete();
+		binaryFile.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void reader(Serial serial, Blackhole blackhole) {
+		try (OrderReader reader = OrderReader.from(file, serial.mode, PriceScale.DEFAULT)) {
+			while (reader.hasNext()) {
+				blackhole.consume(reader.next().getOrderId());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void pipeline(Blackhole blackhole) throws InterruptedException {
+		new OrderPipeline.Builder().build().process(file, consumer(blackhole));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void parallelLoader(Blackhole blackhole) throws InterruptedException {
+		new ParallelOrderLoader.Builder().build().process(file, consumer(blackhole));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ORDERS)
+	public void binaryLoader(Blackhole blackhole) {
+		new BinaryOrderLoader.Builder().build().process(binaryFile, consumer(blackhole));
+	}
+
+	private static OrderEventHandler consumer(final Blackhole blackhole) {
+		return new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				blackhole.consume(orderId);
+			}
+		};
+	}
+}
@@ -1,7 +1,9 @@
 package pl.ciruk.nordea.orders;
 
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
@@ -10,14 +12,26 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import pl.ciruk.nordea.orders.book.Order;
+import pl.ciruk.nordea.orders.book.FsyncPolicy;
 import pl.ciruk.nordea.orders.book.Order.OperationType;
 import pl.ciruk.nordea.orders.book.OrderBookContainer;
+import pl.ciruk.nordea.orders.book.OrderBookOptions;
+import pl.ciruk.nordea.orders.book.OrderBookPersistence;
+import pl.ciruk.nordea.orders.book.OrderStorage;
+import pl.ciruk.nordea.orders.book.WaitStrategy;
+import pl.ciruk.nordea.orders.metrics.OrderBookMetrics;
 import pl.ciruk.nordea.orders.reader.AddOrderMessage;
+import pl.ciruk.nordea.orders.reader.BinaryOrderLoader;
+import pl.ciruk.nordea.orders.reader.ModifyOrderMessage;
+import pl.ciruk.nordea.orders.reader.OrderEventHandler;
+import pl.ciruk.nordea.orders.reader.OrderLoader;
 import pl.ciruk.nordea.orders.reader.OrderMessage;
+import pl.ciruk.nordea.orders.reader.OrderPipeline;
+import pl.ciruk.nordea.orders.reader.ParallelOrderLoader;
 import pl.ciruk.nordea.orders.reader.OrderReader;
+import pl.ciruk.nordea.orders.utils.PriceScale;
 
-import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 
 /**
  * Main application with CLI.
@@ -30,9 +44,60 @@ public class App {
 			Options options = options();
 			CommandLine cmd = parser.parse(options, args);
 			if (cmd.hasOption('f')) {
+				PriceScale priceScale = new PriceScale(intOption(cmd, 's', PriceScale.DEFAULT.getDecimals()));
+				// Instrumentation goes to stderr, so that the books' content is the only output
+				OrderBookMetrics metrics = cmd.hasOption('i') 
+						? new OrderBookMetrics.Builder().jmx(true).dump(System.err, intOption(cmd, 'i', 0), TimeUnit.SECONDS).build() 
+						: null;
+				OrderBookPersistence persistence = cmd.hasOption('j')
+						? new OrderBookPersistence.Builder()
+								.directory(new File(cmd.getOptionValue('j')))
+								.fsyncPolicy(FsyncPolicy.valueOf(cmd.getOptionValue('g', FsyncPolicy.GROUP.name())))
+								.build()
+						: null;
+				OrderBookContainer books = new OrderBookContainer.Builder()
+						.options(new OrderBookOptions.Builder()
+								.priceScale(priceScale)
+								.orderStorage(OrderStorage.valueOf(cmd.getOptionValue('m', OrderStorage.HEAP.name())))
+								.expectedOrders(intOption(cmd, 'o', 0))
+								.build())
+						.workers(intOption(cmd, 'w', OrderBookContainer.DEFAULT_WORKERS))
+						.batchSize(intOption(cmd, 'b', OrderBookContainer.DEFAULT_BATCH_SIZE))
+						.shards(intOption(cmd, 'p', 0))
+						.waitStrategy(WaitStrategy.valueOf(cmd.getOptionValue('y', WaitStrategy.YIELD.name())))
+						.metrics(metrics)
+						.persistence(persistence)
+						.build();
+				
 				long start = System.currentTimeMillis();
-				processOrders(Paths.get(cmd.getOptionValue('f')));
+				Path ordersFile = Paths.get(cmd.getOptionValue('f'));
+				if (BinaryOrderLoader.isBinary(ordersFile.toFile())) {
+					BinaryOrderLoader loader = new BinaryOrderLoader.Builder()
+							.priceScale(priceScale)
+							.build();
+					processOrders(ordersFile, loader, books);
+				} else if (cmd.hasOption('r')) {
+					processOrders(ordersFile, OrderReader.Mode.valueOf(cmd.getOptionValue('r')), priceScale, books);
+				} else if (cmd.hasOption('c')) {
+					ParallelOrderLoader loader = new ParallelOrderLoader.Builder()
+							.priceScale(priceScale)
+							.parallelism(intOption(cmd, 'c', 0))
+							.build();
+					processOrders(ordersFile, loader, books);
+				} else {
+					int queueDepth = intOption(cmd, 'q', OrderPipeline.DEFAULT_QUEUE_DEPTH);
+					OrderPipeline pipeline = new OrderPipeline.Builder()
+							.priceScale(priceScale)
+							.chunkQueueDepth(queueDepth)
+							.batchQueueDepth(queueDepth)
+							.build();
+					processOrders(ordersFile, pipeline, books);
+				}
 				System.out.format("Time: %d ms\n", (System.currentTimeMillis() - start));
+				if (metrics != null) {
+					metrics.dump(System.err);
+					metrics.close();
+				}
 			} else {
 				HelpFormatter formatter = new HelpFormatter();
 				formatter.printHelp("nordea.orders", options);
@@ -43,25 +108,26 @@ public class App {
 		}
 	}
 
-	private static void processOrders(Path ordersFile) {
-		try (OrderReader reader = OrderReader.from(ordersFile.toFile())) {
-			OrderBookContainer books = new OrderBookContainer();
-			
+	private static void processOrders(Path ordersFile, OrderReader.Mode readerMode, PriceScale priceScale, OrderBookContainer books) {
+		try (OrderReader reader = OrderReader.from(ordersFile.toFile(), readerMode, priceScale)) {
 			// Read and process one order at a time
 			while (reader.hasNext()) {
 				OrderMessage msg = reader.next();
 				if (OrderMessage.EMPTY != msg) {
-					Order order = null;
 					if (msg.isDeleteMessage()) {
-						order = new Order.Builder()
-								.id(msg.getOrderId())
-								.operationType(OperationType.DELETE)
-								.build();
+						books.process(msg.getBookId(), OperationType.DELETE, msg.getOrderId(), 0L, 0L);
 					} else if (msg.isAddMessage()) {
-						order  = MESSAGE_TO_ORDER.apply(msg.asAddMessage());
+						AddOrderMessage add = msg.asAddMessage();
+						books.process(
+								add.getBookId(), 
+								OperationType.valueOf(add.getOperation()), 
+								add.getOrderId(), 
+								add.getPrice(), 
+								add.getVolume());
+					} else if (msg.isModifyMessage()) {
+						ModifyOrderMessage modify = msg.asModifyMessage();
+						books.process(modify.getBookId(), OperationType.MODIFY, modify.getOrderId(), modify.getPrice(), modify.getVolume());
 					}
-					
-					books.process(msg.getBookId(), order);
 				}
 			}
 			
@@ -74,29 +140,52 @@ public class App {
 		}
 	}
 
+	/** Dispatches all orders of given file to books as given loader reads them, then prints the books. */
+	private static void processOrders(Path ordersFile, OrderLoader loader, OrderBookContainer books) {
+		try {
+			loader.process(ordersFile.toFile(), dispatcher(books));
+			
+			books.finishProcessing();
+			
+			// Print results
+			books.printContent(System.out);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static OrderEventHandler dispatcher(final OrderBookContainer books) {
+		return new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				books.process(bookId, operationType, orderId, price, volume);
+			}
+		};
+	}
+
 	private static Options options() {
 		Options options = new Options();
-		options.addOption("f", true, "Path to a XML document containing orders");
+		options.addOption("f", true, "Path to a XML document containing orders, or to a binary feed, which is recognized by its header");
+		options.addOption("r", true, "Reads orders serially on one thread with given reader: " + Joiner.on(", ").join(OrderReader.Mode.values()) 
+				+ " (default: reading, decoding and dispatching are pipelined)");
+		options.addOption("c", true, "Number of threads parsing chunks of the file in parallel; when given, replaces the pipeline");
+		options.addOption("q", true, "Number of chunks and batches queued between pipeline stages (default: " + OrderPipeline.DEFAULT_QUEUE_DEPTH + ")");
+		options.addOption("s", true, "Number of decimal places kept in prices (default: " + PriceScale.DEFAULT.getDecimals() + ")");
+		options.addOption("w", true, "Number of threads processing order books (default: " + OrderBookContainer.DEFAULT_WORKERS + ")");
+		options.addOption("b", true, "Number of orders a book processes before yielding its thread (default: " + OrderBookContainer.DEFAULT_BATCH_SIZE + ")");
+		options.addOption("p", true, "Number of dedicated matching threads; when given, books are sharded onto them instead of sharing the pool");
+		options.addOption("y", true, "What idle shard threads do: BUSY_SPIN, YIELD or PARK (default: YIELD)");
+		options.addOption("m", true, "Where books keep resting orders: HEAP or DIRECT (default: HEAP)");
+		options.addOption("o", true, "Number of resting orders each book is sized for up front");
+		options.addOption("i", true, "Instruments books: dumps their latencies and counters to stderr every given number of seconds and exposes them through JMX");
+		options.addOption("j", true, "Directory books are journaled in; books journaled there before are recovered first");
+		options.addOption("g", true, "When journals are forced to the disk: NEVER, GROUP or ALWAYS (default: GROUP)");
 		options.addOption("h", false, "Prints program usage");
 		return options;
 	}
-
-	/** OrderMessage to Order adapter. */
-	private static final Function<AddOrderMessage, Order> MESSAGE_TO_ORDER = new Function<AddOrderMessage, Order>() {
-		@Override
-		public Order apply(AddOrderMessage message) {
-			Order order = null;
-			
-			if (message != null) {
-				order = new Order.Builder()
-					.id(message.getOrderId())
-					.operationType(Order.OperationType.valueOf(message.getOperation()))
-					.price(message.getPrice())
-					.volume(message.getVolume())
-					.build();
-			}
-			
-			return order;
-		}
-	};
+	
+	/** Returns value of given numeric option or the default one, if option is absent. */
+	private static int intOption(CommandLine cmd, char option, int defaultValue) {
+		return cmd.hasOption(option) ? Integer.parseInt(cmd.getOptionValue(option)) : defaultValue;
+	}
 }
@@ -0,0 +1,92 @@
+package pl.ciruk.nordea.orders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import pl.ciruk.nordea.orders.generator.FeedFormat;
+import pl.ciruk.nordea.orders.generator.FeedGenerator;
+import pl.ciruk.nordea.orders.generator.FeedWriter;
+import pl.ciruk.nordea.orders.reader.OrderPipeline;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Joiner;
+
+/**
+ * CLI writing synthetic order feeds, see {@link FeedGenerator}, or converting existing XML feeds to other formats.
+ *
+ */
+public class GeneratorApp {
+	public static void main(String[] args) {
+		CommandLineParser parser = new BasicParser();
+		try {
+			Options options = options();
+			CommandLine cmd = parser.parse(options, args);
+			if (cmd.hasOption('f')) {
+				PriceScale priceScale = new PriceScale(Integer.parseInt(cmd.getOptionValue('s', String.valueOf(PriceScale.DEFAULT.getDecimals()))));
+				FeedGenerator generator = new FeedGenerator.Builder()
+						.orders(Long.parseLong(cmd.getOptionValue('n', "1000000")))
+						.books(Integer.parseInt(cmd.getOptionValue('k', "1")))
+						.cancelRatio(Double.parseDouble(cmd.getOptionValue('x', "0.3")))
+						.crossingRatio(Double.parseDouble(cmd.getOptionValue('c', "0.05")))
+						.meanDepth(Double.parseDouble(cmd.getOptionValue('d', "10")))
+						.volatility(Double.parseDouble(cmd.getOptionValue('v', "0.5")))
+						.priceScale(priceScale)
+						.seed(Long.parseLong(cmd.getOptionValue('e', "42")))
+						.build();
+				FeedFormat format = FeedFormat.valueOf(cmd.getOptionValue('t', FeedFormat.XML.name()));
+				
+				long start = System.currentTimeMillis();
+				FileChannel channel = FileChannel.open(Paths.get(cmd.getOptionValue('f')), 
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				try (FeedWriter writer = format.writer(channel, priceScale, FeedWriter.DEFAULT_BUFFER_SIZE)) {
+					if (cmd.hasOption('i')) {
+						// Streamed through the reading pipeline, so a feed of any size can be converted
+						new OrderPipeline.Builder()
+								.priceScale(priceScale)
+								.build()
+								.process(new File(cmd.getOptionValue('i')), writer);
+					} else {
+						generator.generate(writer);
+					}
+				}
+				System.out.format("Time: %d ms\n", (System.currentTimeMillis() - start));
+			} else {
+				HelpFormatter formatter = new HelpFormatter();
+				formatter.printHelp("nordea.orders.generator", options);
+			}
+		} catch (ParseException e) {
+			System.err.println("Parsing failed. Caused by: " + e.getMessage());
+		} catch (IOException e) {
+			System.err.println("Writing failed. Caused by: " + e.getMessage());
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static Options options() {
+		Options options = new Options();
+		options.addOption("f", true, "Path to the feed to be written; an existing file is overwritten");
+		options.addOption("i", true, "Path to an XML feed to be converted instead of generating orders; prices must fit the scale");
+		options.addOption("t", true, "Format of the feed: " + Joiner.on(", ").join(FeedFormat.values()) + " (default: XML)");
+		options.addOption("n", true, "Number of orders, cancels included (default: 1000000)");
+		options.addOption("k", true, "Number of books (default: 1)");
+		options.addOption("x", true, "Share of cancels among all orders (default: 0.3)");
+		options.addOption("c", true, "Share of adds crossing the spread (default: 0.05)");
+		options.addOption("d", true, "Mean distance of resting adds from the mid, in cents (default: 10)");
+		options.addOption("v", true, "Standard deviation of a move of the mid between orders, in cents (default: 0.5)");
+		options.addOption("e", true, "Seed; the same settings and seed give the same feed (default: 42)");
+		options.addOption("s", true, "Number of decimal places kept in prices (default: " + PriceScale.DEFAULT.getDecimals() + ")");
+		options.addOption("h", false, "Prints program usage");
+		return options;
+	}
+}
@@ -0,0 +1,55 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multiplexes books onto a bounded pool of workers. Each book is a {@link BookActor}.
+ */
+class ActorScheduler implements BookScheduler {
+	private final ExecutorService executor;
+
+	private final int batchSize;
+
+	private final List<BookActor> actors = new CopyOnWriteArrayList<>();
+
+	ActorScheduler(int workers, int batchSize) {
+		this.executor = Executors.newFixedThreadPool(workers);
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public BookRoute route(OrderBook book) {
+		BookActor actor = new BookActor(book, executor, batchSize);
+		actors.add(actor);
+		return actor;
+	}
+
+	@Override
+	public void finish() throws InterruptedException {
+		try {
+			for (BookActor actor : actors) {
+				actor.post(Order.EMPTY);
+			}
+			for (BookActor actor : actors) {
+				actor.awaitFinished();
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+
+		OrderBookException failures = null;
+		for (BookActor actor : actors) {
+			if (actor.getFailure() != null) {
+				failures = OrderBookException.add(failures, "Book " + actor.getBook().id + " failed", actor.getFailure());
+			}
+		}
+		if (failures != null) {
+			throw failures;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Runs an {@link OrderBook} on a shared pool without dedicating a thread to it. <br/>
+ * Orders wait in an {@link OrderMailbox}, as primitives, so posting an order allocates nothing.
+ * Posting an order schedules the actor unless it is already scheduled;
+ * a scheduled actor processes up to <code>batchSize</code> orders and then yields the worker,
+ * rescheduling itself if orders are still waiting. Therefore a book is processed by at most one thread at a time
+ * and any number of books can share a small pool without starving each other.
+ * Market data of the book is published once per batch. <br/>
+ * If the book throws, the actor keeps the failure, counts as finished and rejects further orders.
+ */
+class BookActor implements BookRoute, Runnable, OrderMailbox.Handler {
+	private final OrderBook book;
+
+	private final OrderMailbox mailbox;
+
+	private final Executor executor;
+
+	private final int batchSize;
+
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/** Released once the book processed {@link Order#EMPTY}. */
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	/** What the book threw; <code>null</code> unless it failed. */
+	private volatile Throwable failure;
+
+	BookActor(OrderBook book, Executor executor, int batchSize) {
+		this.book = book;
+		this.mailbox = new OrderMailbox(batchSize);
+		this.executor = executor;
+		this.batchSize = batchSize;
+	}
+
+	/** Appends given order to the mailbox. Never blocks, the mailbox is unbounded. The order is passed as primitives, the instance itself is not handed over. */
+	@Override
+	public void post(Order order) {
+		if (order == Order.EMPTY) {
+			post(null, 0L, 0L, 0L, 0L);
+		} else {
+			post(order.getOperationType(), order.getId(), order.getPrice(), order.getVolume(), order.dispatched);
+		}
+	}
+
+	@Override
+	public void post(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		if (failure != null) {
+			// A failed book is already finished, only orders are rejected
+			if (operationType != null) {
+				throw new OrderBookException("Book " + book.id + " failed", failure);
+			}
+			return;
+		}
+		mailbox.offer(operationType, orderId, price, volume, dispatched);
+		schedule();
+	}
+
+	@Override
+	public void run() {
+		try {
+			mailbox.drain(this, batchSize);
+			book.publishMarketData();
+		} catch (Throwable e) {
+			failure = e;
+			finished.countDown();
+		} finally {
+			scheduled.set(false);
+		}
+
+		// An order might have been posted after the last drain but before the flag was cleared
+		if (failure == null && !mailbox.isEmpty()) {
+			schedule();
+		}
+	}
+
+	@Override
+	public void onOrder(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		if (operationType == null) {
+			book.publishMarketData();
+			finished.countDown();
+		} else {
+			book.accept(operationType, orderId, price, volume, dispatched);
+		}
+	}
+
+	/** Waits until the book processed all orders posted before {@link Order#EMPTY}, or failed. */
+	void awaitFinished() throws InterruptedException {
+		finished.await();
+	}
+
+	/** What the book threw; <code>null</code> unless it failed. */
+	Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public OrderBook getBook() {
+		return book;
+	}
+
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			executor.execute(this);
+		}
+	}
+}
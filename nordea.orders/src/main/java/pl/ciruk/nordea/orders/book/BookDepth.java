@@ -0,0 +1,117 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, point-in-time view of the best levels of both sides of a book. <br/>
+ * A book publishing depth (see {@link OrderBookOptions#isPublishDepth()}) captures a new instance
+ * after every order, or batch of queued orders, that changed its top levels and replaces the previous one with a single volatile write,
+ * so any thread gets a consistent view from {@link OrderBook#getDepth()} without locking and without slowing matching down.
+ * Instances are never modified, so they may be kept and shared freely.
+ */
+public final class BookDepth {
+	private final String bookId;
+
+	private final long version;
+
+	private final long[] bidPrices;
+
+	private final long[] bidVolumes;
+
+	private final int[] bidOrders;
+
+	private final long[] askPrices;
+
+	private final long[] askVolumes;
+
+	private final int[] askOrders;
+
+	/** Copies up to given number of best levels of both sides. Arrays are filled here, so that final fields cover them. */
+	BookDepth(String bookId, long version, PriceLadder bids, PriceLadder asks, int depth) {
+		this.bookId = bookId;
+		this.version = version;
+		int bidLevels = countLevels(bids, depth);
+		this.bidPrices = new long[bidLevels];
+		this.bidVolumes = new long[bidLevels];
+		this.bidOrders = new int[bidLevels];
+		copyLevels(bids, bidPrices, bidVolumes, bidOrders);
+		int askLevels = countLevels(asks, depth);
+		this.askPrices = new long[askLevels];
+		this.askVolumes = new long[askLevels];
+		this.askOrders = new int[askLevels];
+		copyLevels(asks, askPrices, askVolumes, askOrders);
+	}
+
+	private static int countLevels(PriceLadder ladder, int depth) {
+		int levels = 0;
+		for (PriceLevel level = ladder.best(); level != null && levels < depth; level = ladder.next(level)) {
+			levels++;
+		}
+		return levels;
+	}
+
+	private static void copyLevels(PriceLadder ladder, long[] prices, long[] volumes, int[] orders) {
+		PriceLevel level = ladder.best();
+		for (int i = 0; i < prices.length; i++) {
+			prices[i] = level.getPrice();
+			volumes[i] = level.getVolume();
+			orders[i] = level.size();
+			level = ladder.next(level);
+		}
+	}
+
+	public String getBookId() {
+		return bookId;
+	}
+
+	/** Number of views published by the book before this one; later views have greater versions. */
+	public long getVersion() {
+		return version;
+	}
+
+	/** Number of bid levels in this view, up to the book's depth. */
+	public int getBidLevels() {
+		return bidPrices.length;
+	}
+
+	/** Price in ticks of bid level with given number, the best being <code>0</code>. */
+	public long getBidPrice(int level) {
+		return bidPrices[level];
+	}
+
+	/** Total volume of bid level with given number. */
+	public long getBidVolume(int level) {
+		return bidVolumes[level];
+	}
+
+	/** Number of orders of bid level with given number. */
+	public int getBidOrders(int level) {
+		return bidOrders[level];
+	}
+
+	/** Number of ask levels in this view, up to the book's depth. */
+	public int getAskLevels() {
+		return askPrices.length;
+	}
+
+	/** Price in ticks of ask level with given number, the best being <code>0</code>. */
+	public long getAskPrice(int level) {
+		return askPrices[level];
+	}
+
+	/** Total volume of ask level with given number. */
+	public long getAskVolume(int level) {
+		return askVolumes[level];
+	}
+
+	/** Number of orders of ask level with given number. */
+	public int getAskOrders(int level) {
+		return askOrders[level];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s v%d] bids %s x %s, asks %s x %s",
+				bookId, version, Arrays.toString(bidVolumes), Arrays.toString(bidPrices), Arrays.toString(askVolumes), Arrays.toString(askPrices));
+	}
+}
@@ -0,0 +1,267 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.BinaryFeed;
+
+/**
+ * Append-only journal of orders accepted by a single book, with periodic snapshots of the book. <br/>
+ * The journal is a {@link BinaryFeed} of the book's orders, so a cleanly closed one can also be loaded as a feed.
+ * It is memory-mapped in chunks, so appending an order writes a record into memory without a system call;
+ * records are forced to the disk according to {@link FsyncPolicy}, in groups.
+ * The type of a record is written last, so a record cut off by a crash reads as the end of the journal. <br/>
+ * Every {@link OrderBookPersistence#snapshotInterval} orders a {@link BookSnapshot} is taken, together with the number of orders it covers.
+ * Records being of fixed size, recovery skips straight to the first record after the snapshot. <br/>
+ * Used only by the thread processing the book. Closing the journal takes a final snapshot.
+ */
+final class BookJournal {
+	/** Bytes of the journal mapped at a time. */
+	static final int CHUNK_SIZE = 1 << 24;
+
+	/** Bytes read at a time during recovery. */
+	private static final int REPLAY_BUFFER_SIZE = 1 << 16;
+
+	private static final int RECORD_SIZE = BinaryFeed.RECORD_SIZE;
+
+	private final OrderBook book;
+
+	private final FileChannel channel;
+
+	private final Path snapshotFile;
+
+	private final FsyncPolicy fsyncPolicy;
+
+	private final int groupCommit;
+
+	private final long snapshotInterval;
+
+	/** Offset of the first order in the file, i.e. past the header and the book's record. */
+	private final long dataStart;
+
+	private MappedByteBuffer chunk;
+
+	/** Offset of {@link #chunk} in the file. */
+	private long chunkStart;
+
+	/** Number of orders in the journal. */
+	private long position;
+
+	/** Number of orders covered by the last snapshot. */
+	private long snapshotPosition;
+
+	/** Orders appended since the journal was last forced. */
+	private int uncommitted;
+
+	private BookJournal(OrderBook book, FileChannel channel, Path snapshotFile, OrderBookPersistence persistence, long dataStart) {
+		this.book = book;
+		this.channel = channel;
+		this.snapshotFile = snapshotFile;
+		this.fsyncPolicy = persistence.fsyncPolicy;
+		this.groupCommit = persistence.fsyncPolicy == FsyncPolicy.ALWAYS ? 1 : persistence.groupCommit;
+		this.snapshotInterval = persistence.snapshotInterval;
+		this.dataStart = dataStart;
+	}
+
+	/**
+	 * Opens the journal of given empty book, creating it if needed.
+	 * An existing journal is recovered: the book is restored from the snapshot, if any, and the rest of the journal is replayed into it.
+	 * Trades executed during the replay are not reported, nor is market data.
+	 */
+	static BookJournal open(OrderBook book, Path journalFile, Path snapshotFile, OrderBookPersistence persistence) {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long dataStart = channel.size() == 0 ? writeHeader(channel, book) : checkHeader(channel, book);
+			BookJournal journal = new BookJournal(book, channel, snapshotFile, persistence, dataStart);
+			journal.recover();
+			return journal;
+		} catch (IOException | RuntimeException e) {
+			closeQuietly(channel);
+			throw e instanceof JournalException ? (JournalException) e : new JournalException(e);
+		}
+	}
+
+	/** Writes given order ahead of applying it, taking a snapshot first if one is due. */
+	void append(OperationType operationType, long orderId, long price, long volume) {
+		if (position - snapshotPosition >= snapshotInterval) {
+			snapshot();
+		}
+
+		int offset = (int) (dataStart + position * RECORD_SIZE - chunkStart);
+		if (offset + RECORD_SIZE > chunk.capacity()) {
+			map(dataStart + position * RECORD_SIZE);
+			offset = 0;
+		}
+		chunk.putInt(offset + BinaryFeed.BOOK, 0);
+		chunk.putLong(offset + BinaryFeed.ORDER_ID, orderId);
+		chunk.putLong(offset + BinaryFeed.PRICE, price);
+		chunk.putLong(offset + BinaryFeed.VOLUME, volume);
+		chunk.put(offset + BinaryFeed.TYPE, BinaryFeed.type(operationType));
+		position++;
+
+		if (++uncommitted >= groupCommit) {
+			commit();
+		}
+	}
+
+	/** Number of orders in the journal. */
+	long getPosition() {
+		return position;
+	}
+
+	/** Takes a final snapshot, forces the journal and trims it to its orders. */
+	void close() {
+		try {
+			if (position > snapshotPosition) {
+				snapshot();
+			}
+			chunk.force();
+			channel.truncate(dataStart + position * RECORD_SIZE);
+			channel.close();
+		} catch (IOException e) {
+			throw new JournalException(e);
+		}
+	}
+
+	/** Forces appended orders to the disk, unless the policy leaves it to the OS. */
+	private void commit() {
+		uncommitted = 0;
+		if (fsyncPolicy != FsyncPolicy.NEVER) {
+			chunk.force();
+		}
+	}
+
+	/** Writes a snapshot of the book covering all journaled orders. The journal is forced first, so it never lags behind a snapshot. */
+	private void snapshot() {
+		chunk.force();
+		uncommitted = 0;
+		BookSnapshot.write(book, position, snapshotFile);
+		snapshotPosition = position;
+	}
+
+	private void recover() throws IOException {
+		book.suspendReports();
+		try {
+			if (Files.exists(snapshotFile)) {
+				snapshotPosition = BookSnapshot.read(book, snapshotFile);
+			}
+			position = replay(snapshotPosition);
+		} finally {
+			book.resumeReports();
+		}
+		map(dataStart + position * RECORD_SIZE);
+	}
+
+	/**
+	 * Applies journaled orders to the book, starting from order with given number, until the first unwritten record.
+	 * @return Number of orders in the journal
+	 */
+	private long replay(long from) throws IOException {
+		long fileSize = channel.size();
+		long offset = dataStart + from * RECORD_SIZE;
+		if (offset > fileSize) {
+			throw new JournalException("Snapshot of book " + book.id + " covers " + from + " orders, but its journal is shorter");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(REPLAY_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		long replayed = from;
+		while (offset + RECORD_SIZE <= fileSize) {
+			buffer.clear();
+			while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+				// Keep reading
+			}
+			for (int i = 0; i + RECORD_SIZE <= buffer.position(); i += RECORD_SIZE) {
+				OperationType operationType = BinaryFeed.operationType(buffer.get(i + BinaryFeed.TYPE));
+				if (operationType == null) {
+					// Never written, or cut off by a crash
+					return replayed;
+				}
+				book.process(operationType, buffer.getLong(i + BinaryFeed.ORDER_ID), buffer.getLong(i + BinaryFeed.PRICE), buffer.getLong(i + BinaryFeed.VOLUME));
+				replayed++;
+				offset += RECORD_SIZE;
+			}
+		}
+		return replayed;
+	}
+
+	private void map(long start) {
+		try {
+			if (chunk != null && fsyncPolicy != FsyncPolicy.NEVER) {
+				chunk.force();
+			}
+			chunk = channel.map(MapMode.READ_WRITE, start, CHUNK_SIZE);
+			chunk.order(ByteOrder.LITTLE_ENDIAN);
+			chunkStart = start;
+		} catch (IOException e) {
+			throw new JournalException(e);
+		}
+	}
+
+	/** Writes the header of a feed and the record of its only book. Returns offset of the first order. */
+	private static long writeHeader(FileChannel channel, OrderBook book) throws IOException {
+		byte[] bookId = book.id.getBytes(StandardCharsets.UTF_8);
+		int bookIdRecords = BinaryFeed.bookIdRecords(bookId.length);
+		ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE * (2 + bookIdRecords)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(0, BinaryFeed.MAGIC);
+		header.putInt(BinaryFeed.HEADER_VERSION, BinaryFeed.VERSION);
+		header.putInt(BinaryFeed.HEADER_DECIMALS, book.options.getPriceScale().getDecimals());
+		header.put(RECORD_SIZE + BinaryFeed.TYPE, BinaryFeed.BOOK_RECORD);
+		header.putInt(RECORD_SIZE + BinaryFeed.BOOK, 0);
+		header.putInt(RECORD_SIZE + BinaryFeed.BOOK_ID_LENGTH, bookId.length);
+		header.position(2 * RECORD_SIZE);
+		header.put(bookId);
+		header.clear();
+
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		channel.force(true);
+		return header.capacity();
+	}
+
+	/** Checks that the journal belongs to given book and matches its price scale. Returns offset of the first order. */
+	private static long checkHeader(FileChannel channel, OrderBook book) throws IOException {
+		byte[] bookId = book.id.getBytes(StandardCharsets.UTF_8);
+		int length = RECORD_SIZE * (2 + BinaryFeed.bookIdRecords(bookId.length));
+		ByteBuffer header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+			// Keep reading
+		}
+
+		boolean valid = !header.hasRemaining()
+				&& header.getLong(0) == BinaryFeed.MAGIC
+				&& header.getInt(BinaryFeed.HEADER_VERSION) == BinaryFeed.VERSION
+				&& header.get(RECORD_SIZE + BinaryFeed.TYPE) == BinaryFeed.BOOK_RECORD
+				&& header.getInt(RECORD_SIZE + BinaryFeed.BOOK_ID_LENGTH) == bookId.length
+				&& Arrays.equals(bookId, Arrays.copyOfRange(header.array(), 2 * RECORD_SIZE, 2 * RECORD_SIZE + bookId.length));
+		if (!valid) {
+			throw new JournalException("Not a journal of book " + book.id);
+		}
+		int decimals = header.getInt(BinaryFeed.HEADER_DECIMALS);
+		if (decimals != book.options.getPriceScale().getDecimals()) {
+			throw new JournalException("Journal of book " + book.id + " has prices with " + decimals + " decimal places, expected " + book.options.getPriceScale().getDecimals());
+		}
+		return length;
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Already failing
+			}
+		}
+	}
+}
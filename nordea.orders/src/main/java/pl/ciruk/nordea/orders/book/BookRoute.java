@@ -0,0 +1,20 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Way of delivering orders to a single {@link OrderBook}. <br/>
+ * Created by a {@link BookScheduler}, which decides on which thread the book processes them.
+ */
+interface BookRoute {
+	OrderBook getBook();
+
+	/** Delivers given order, or {@link Order#EMPTY} to notify the book of end of processing. */
+	void post(Order order);
+
+	/** 
+	 * Delivers an order given by its fields. Lets a scheduler avoid creating an {@link Order} on the caller's thread.
+	 * @param dispatched {@link System#nanoTime()} of the hand-over if the book is instrumented, otherwise <code>0</code>
+	 */
+	void post(OperationType operationType, long orderId, long price, long volume, long dispatched);
+}
@@ -0,0 +1,16 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Strategy of running order books on threads.
+ */
+interface BookScheduler {
+	/** Starts running given book. Orders are delivered through the returned route. */
+	BookRoute route(OrderBook book);
+
+	/**
+	 * Notifies all routed books of end of processing, waits until they process all delivered orders
+	 * and releases the threads.
+	 * @throws OrderBookException if any book failed; books which did not fail are finished all the same
+	 */
+	void finish() throws InterruptedException;
+}
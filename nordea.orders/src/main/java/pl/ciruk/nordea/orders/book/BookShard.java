@@ -0,0 +1,139 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Dedicated matching thread owning a subset of books. <br/>
+ * Orders for its books arrive through a single {@link OrderEventRing}, 
+ * so handing an order over costs a few ordered writes instead of a lock and a park/unpark.
+ * Orders are drained in batches; each book publishes market data once per batch it had orders in. <br/>
+ * If a book throws, the shard keeps the failure and stops; publishing to it then throws instead of waiting for room.
+ */
+class BookShard implements Runnable, OrderEventRing.Handler {
+	private final String name;
+
+	private final OrderEventRing ring;
+
+	private final WaitStrategy waitStrategy;
+
+	private final int batchSize;
+
+	/** Set by the shard's thread once it consumed the end of processing. */
+	private boolean finished;
+
+	/** What a book of the shard threw; <code>null</code> unless the shard failed. */
+	private volatile Throwable failure;
+
+	/** Books which accepted orders of the current batch and report market data. */
+	private OrderBook[] pending = new OrderBook[16];
+
+	private int pendingCount;
+
+	/** Shard-local numbers of books, given on their first order. Like the fields below, used by the shard's thread only. */
+	private final Map<OrderBook, Integer> indices = new IdentityHashMap<>();
+
+	/** Number of the batch each book, by its shard-local number, was last added to {@link #pending} in. */
+	private long[] pendingIn = new long[16];
+
+	/** Number of the current batch; starts at <code>1</code>, so that no book is pending up front. */
+	private long batch = 1;
+
+	BookShard(String name, int ringSize, WaitStrategy waitStrategy, int batchSize, boolean timestamps) {
+		this.name = name;
+		this.ring = new OrderEventRing(ringSize, timestamps);
+		this.waitStrategy = waitStrategy;
+		this.batchSize = batchSize;
+	}
+
+	/** Hands an order over to the shard's thread. Waits while the ring is full. */
+	void publish(OrderBook book, OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		checkFailure();
+		while (!ring.offer(book, operationType, orderId, price, volume, dispatched)) {
+			checkFailure();
+			waitStrategy.idle();
+		}
+	}
+
+	/** Notifies the shard's thread that no more orders will be published. Returns at once if the shard failed. */
+	void publishEnd() {
+		while (failure == null && !ring.offer(null, null, 0L, 0L, 0L, 0L)) {
+			waitStrategy.idle();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!finished) {
+				int drained = ring.drain(this, batchSize);
+				publishPending();
+				if (drained == 0) {
+					waitStrategy.idle();
+				}
+			}
+		} catch (Throwable e) {
+			failure = e;
+		}
+	}
+
+	/** What a book of the shard threw; <code>null</code> unless the shard failed. */
+	Throwable getFailure() {
+		return failure;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new OrderBookException("Shard " + name + " failed", failure);
+		}
+	}
+
+	/** Publishes market data of books of the last batch. */
+	private void publishPending() {
+		for (int i = 0; i < pendingCount; i++) {
+			pending[i].publishMarketData();
+			pending[i] = null;
+		}
+		pendingCount = 0;
+		batch++;
+	}
+
+	/** Returns shard-local number of given book, giving it one on its first order. */
+	private int indexOf(OrderBook book) {
+		Integer index = indices.get(book);
+		if (index == null) {
+			index = indices.size();
+			indices.put(book, index);
+			if (index == pendingIn.length) {
+				pendingIn = Arrays.copyOf(pendingIn, index * 2);
+			}
+		}
+		return index;
+	}
+
+	@Override
+	public void onEvent(OrderBook book, OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		if (book == null) {
+			finished = true;
+		} else {
+			book.accept(operationType, orderId, price, volume, dispatched);
+			if (book.marketData != null) {
+				int index = indexOf(book);
+				if (pendingIn[index] != batch) {
+					pendingIn[index] = batch;
+					if (pendingCount == pending.length) {
+						pending = Arrays.copyOf(pending, pendingCount * 2);
+					}
+					pending[pendingCount++] = book;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.BinaryFeed;
+
+/**
+ * Binary image of a book's resting orders, taken by its {@link BookJournal}. <br/>
+ * A header of {@link #RECORD_SIZE} bytes holds {@link #MAGIC}, {@link #VERSION}, the number of journaled orders the snapshot covers,
+ * the book's next sequence number and number of trades. It is followed by a record per resting order,
+ * buys then sells, each side in price-time priority; all numbers are little-endian.
+ * Restoring orders in that order rebuilds the same levels with the same time priority. <br/>
+ * A snapshot is written to a temporary file, forced to the disk and then moved over the previous one,
+ * so a crash leaves either the old or the new snapshot in place.
+ */
+final class BookSnapshot {
+	/** First bytes of every snapshot: <code>BOOKSNAP</code> in ASCII. */
+	static final long MAGIC = 0x50414E534B4F4F42L;
+
+	static final int VERSION = 1;
+
+	/** Size of the header and of every order's record. */
+	static final int RECORD_SIZE = 48;
+
+	private static final int HEADER_VERSION = 8;
+
+	private static final int HEADER_JOURNAL_POSITION = 16;
+
+	private static final int HEADER_NEXT_SEQUENCE = 24;
+
+	private static final int HEADER_TRADE_COUNT = 32;
+
+	private static final int HEADER_ORDERS = 40;
+
+	/** Offsets within an order's record; its type is that of {@link BinaryFeed#type(OperationType)}. */
+	private static final int TYPE = 0;
+
+	private static final int ID = 8;
+
+	private static final int PRICE = 16;
+
+	private static final int VOLUME = 24;
+
+	private static final int SEQUENCE = 32;
+
+	private static final int TIMESTAMP = 40;
+
+	/** Bytes written at a time. */
+	private static final int BUFFER_SIZE = RECORD_SIZE * 1024;
+
+	private BookSnapshot() {
+	}
+
+	/** Replaces the snapshot in given file with one of the current state of given book, covering given number of journaled orders. */
+	static void write(OrderBook book, long journalPosition, Path file) {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(0);
+			buffer.putLong(journalPosition);
+			buffer.putLong(book.nextSequence);
+			buffer.putLong(book.tradeCount);
+			buffer.putLong(book.buyLevels.size() + book.sellLevels.size());
+
+			writeSide(book.store, book.buyLevels, buffer, channel);
+			writeSide(book.store, book.sellLevels, buffer, channel);
+			flush(buffer, channel);
+			channel.force(true);
+		} catch (IOException e) {
+			throw new JournalException(e);
+		}
+
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new JournalException(e);
+		}
+	}
+
+	/**
+	 * Restores resting orders of given empty book from given snapshot.
+	 * @return Number of journaled orders the snapshot covers
+	 */
+	static long read(OrderBook book, Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			fill(buffer, channel);
+			if (buffer.remaining() < RECORD_SIZE || buffer.getLong(0) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION) {
+				throw new JournalException("Not a snapshot of a book: " + file);
+			}
+			long journalPosition = buffer.getLong(HEADER_JOURNAL_POSITION);
+			long nextSequence = buffer.getLong(HEADER_NEXT_SEQUENCE);
+			long tradeCount = buffer.getLong(HEADER_TRADE_COUNT);
+			long orders = buffer.getLong(HEADER_ORDERS);
+			buffer.position(RECORD_SIZE);
+
+			for (long i = 0; i < orders; i++) {
+				if (buffer.remaining() < RECORD_SIZE) {
+					buffer.compact();
+					fill(buffer, channel);
+					if (buffer.remaining() < RECORD_SIZE) {
+						throw new JournalException("Snapshot of book " + book.id + " is truncated: " + file);
+					}
+				}
+				int record = buffer.position();
+				OperationType operationType = BinaryFeed.operationType(buffer.get(record + TYPE));
+				if (operationType != OperationType.BUY && operationType != OperationType.SELL) {
+					throw new JournalException("Snapshot of book " + book.id + " is corrupted: " + file);
+				}
+				book.restore(operationType,
+						buffer.getLong(record + ID),
+						buffer.getLong(record + PRICE),
+						buffer.getLong(record + VOLUME),
+						buffer.getLong(record + SEQUENCE),
+						buffer.getLong(record + TIMESTAMP));
+				buffer.position(record + RECORD_SIZE);
+			}
+
+			book.nextSequence = nextSequence;
+			book.tradeCount = tradeCount;
+			return journalPosition;
+		} catch (IOException e) {
+			throw new JournalException(e);
+		}
+	}
+
+	private static void writeSide(OrderStore store, PriceLadder side, ByteBuffer buffer, FileChannel channel) throws IOException {
+		for (PriceLevel level : side.levels()) {
+			for (int slot = level.peek(); slot != OrderStore.NO_SLOT; slot = level.next(slot)) {
+				if (buffer.remaining() < RECORD_SIZE) {
+					flush(buffer, channel);
+				}
+				buffer.put(BinaryFeed.type(store.getOperationType(slot)));
+				// Padding up to the id
+				buffer.put((byte) 0).putShort((short) 0).putInt(0);
+				buffer.putLong(store.getId(slot));
+				buffer.putLong(store.getPrice(slot));
+				buffer.putLong(store.getVolume(slot));
+				buffer.putLong(store.getSequence(slot));
+				buffer.putLong(store.getTimestamp(slot));
+			}
+		}
+	}
+
+	private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/** Reads into given buffer until it is full or the file ends, then flips it. */
+	private static void fill(ByteBuffer buffer, FileChannel channel) throws IOException {
+		while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+			// Keep reading
+		}
+		buffer.flip();
+	}
+}
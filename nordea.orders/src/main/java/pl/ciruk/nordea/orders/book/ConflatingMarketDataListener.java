@@ -0,0 +1,118 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Map;
+
+import pl.ciruk.nordea.orders.book.LevelUpdate.Action;
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Decouples a slow consumer of market data from the books' threads. <br/>
+ * Books hand updates to this listener, which keeps only the net change of each level and the latest top of each book
+ * since the consumer last called {@link #drainTo(MarketDataListener)}.
+ * A level added and deleted in between is not reported at all, so the consumer's view skips intermediate states,
+ * but applying the drained updates still brings it to the books' current state. <br/>
+ * Unlike books, this listener copies every update it keeps. It may be shared by books processed on several threads.
+ */
+public class ConflatingMarketDataListener implements MarketDataListener {
+	/** Pending level updates, in order of their first change. */
+	private Map<LevelKey, LevelUpdate> levels = Maps.newLinkedHashMap();
+
+	/** Pending top of each book. */
+	private Map<String, TopOfBook> tops = Maps.newLinkedHashMap();
+
+	@Override
+	public synchronized void onLevel(LevelUpdate update) {
+		LevelKey key = new LevelKey(update.getBookId(), update.getSide(), update.getPrice());
+		LevelUpdate pending = levels.get(key);
+		if (pending == null) {
+			pending = new LevelUpdate(update.getBookId());
+			pending.fill(update.getSide(), update.getAction(), update.getPrice(), update.getVolume(), update.getOrders());
+			levels.put(key, pending);
+		} else if (pending.getAction() == Action.ADD && update.getAction() == Action.DELETE) {
+			// The consumer never knew of the level
+			levels.remove(key);
+		} else {
+			pending.fill(update.getSide(), conflate(pending.getAction(), update.getAction()), update.getPrice(), update.getVolume(), update.getOrders());
+		}
+	}
+
+	@Override
+	public synchronized void onTopOfBook(TopOfBook top) {
+		TopOfBook pending = tops.get(top.getBookId());
+		if (pending == null) {
+			pending = new TopOfBook(top.getBookId());
+			tops.put(top.getBookId(), pending);
+		}
+		pending.fill(top.getBidPrice(), top.getBidVolume(), top.getAskPrice(), top.getAskVolume());
+	}
+
+	/**
+	 * Passes all pending updates to given listener on the calling thread and forgets them.
+	 * Level updates come first, then the top of each book. Books are not blocked while the listener runs.
+	 * @return Number of updates passed
+	 */
+	public int drainTo(MarketDataListener consumer) {
+		Preconditions.checkArgument(consumer != null, "Consumer cannot be null");
+
+		Map<LevelKey, LevelUpdate> drainedLevels;
+		Map<String, TopOfBook> drainedTops;
+		synchronized (this) {
+			drainedLevels = levels;
+			drainedTops = tops;
+			levels = Maps.newLinkedHashMap();
+			tops = Maps.newLinkedHashMap();
+		}
+
+		for (LevelUpdate update : drainedLevels.values()) {
+			consumer.onLevel(update);
+		}
+		for (TopOfBook top : drainedTops.values()) {
+			consumer.onTopOfBook(top);
+		}
+		return drainedLevels.size() + drainedTops.size();
+	}
+
+	/** Net action of two consecutive updates of a level, except an addition followed by a deletion, which cancel out. */
+	static Action conflate(Action first, Action second) {
+		if (first == Action.ADD) {
+			// Still new to the consumer
+			return Action.ADD;
+		} else if (first == Action.DELETE && second == Action.ADD) {
+			// The consumer still has the level
+			return Action.UPDATE;
+		}
+		return second;
+	}
+
+	private static final class LevelKey {
+		private final String bookId;
+
+		private final OperationType side;
+
+		private final long price;
+
+		LevelKey(String bookId, OperationType side, long price) {
+			this.bookId = bookId;
+			this.side = side;
+			this.price = price;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(bookId, side, price);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LevelKey)) {
+				return false;
+			}
+			LevelKey other = (LevelKey) obj;
+			return price == other.price && side == other.side && bookId.equals(other.bookId);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link OrderStore} keeping columns in direct buffers, outside of the Java heap. <br/>
+ * Resting orders neither count towards the heap size nor have to be scanned by the garbage collector.
+ * A buffer holds at most 2 GB, which limits a book to about 268 million orders.
+ * Memory is released when the store itself is collected.
+ */
+class DirectOrderStore extends OrderStore {
+	private static final int LONG_SHIFT = 3;
+
+	private static final int INT_SHIFT = 2;
+
+	private ByteBuffer ids;
+
+	private ByteBuffer prices;
+
+	private ByteBuffer volumes;
+
+	private ByteBuffer sequences;
+
+	private ByteBuffer timestamps;
+
+	private ByteBuffer operationTypes;
+
+	private ByteBuffer previous;
+
+	private ByteBuffer next;
+
+	private ByteBuffer levels;
+
+	DirectOrderStore(int capacity) {
+		super(capacity);
+
+		ids = longColumn(capacity());
+		prices = longColumn(capacity());
+		volumes = longColumn(capacity());
+		sequences = longColumn(capacity());
+		timestamps = longColumn(capacity());
+		operationTypes = ByteBuffer.allocateDirect(capacity());
+		previous = intColumn(capacity());
+		next = intColumn(capacity());
+		levels = intColumn(capacity());
+	}
+
+	@Override
+	protected int maxCapacity() {
+		return Integer.MAX_VALUE >> LONG_SHIFT;
+	}
+
+	@Override
+	protected void grow(int newCapacity) {
+		ids = copy(ids, longColumn(newCapacity));
+		prices = copy(prices, longColumn(newCapacity));
+		volumes = copy(volumes, longColumn(newCapacity));
+		sequences = copy(sequences, longColumn(newCapacity));
+		timestamps = copy(timestamps, longColumn(newCapacity));
+		operationTypes = copy(operationTypes, ByteBuffer.allocateDirect(newCapacity));
+		previous = copy(previous, intColumn(newCapacity));
+		next = copy(next, intColumn(newCapacity));
+		levels = copy(levels, intColumn(newCapacity));
+	}
+
+	@Override
+	long getId(int slot) {
+		return ids.getLong(slot << LONG_SHIFT);
+	}
+
+	@Override
+	void setId(int slot, long id) {
+		ids.putLong(slot << LONG_SHIFT, id);
+	}
+
+	@Override
+	long getPrice(int slot) {
+		return prices.getLong(slot << LONG_SHIFT);
+	}
+
+	@Override
+	void setPrice(int slot, long price) {
+		prices.putLong(slot << LONG_SHIFT, price);
+	}
+
+	@Override
+	long getVolume(int slot) {
+		return volumes.getLong(slot << LONG_SHIFT);
+	}
+
+	@Override
+	void setVolume(int slot, long volume) {
+		volumes.putLong(slot << LONG_SHIFT, volume);
+	}
+
+	@Override
+	long getSequence(int slot) {
+		return sequences.getLong(slot << LONG_SHIFT);
+	}
+
+	@Override
+	void setSequence(int slot, long sequence) {
+		sequences.putLong(slot << LONG_SHIFT, sequence);
+	}
+
+	@Override
+	long getTimestamp(int slot) {
+		return timestamps.getLong(slot << LONG_SHIFT);
+	}
+
+	@Override
+	void setTimestamp(int slot, long timestamp) {
+		timestamps.putLong(slot << LONG_SHIFT, timestamp);
+	}
+
+	@Override
+	int getPrevious(int slot) {
+		return previous.getInt(slot << INT_SHIFT);
+	}
+
+	@Override
+	void setPrevious(int slot, int previous) {
+		this.previous.putInt(slot << INT_SHIFT, previous);
+	}
+
+	@Override
+	int getNext(int slot) {
+		return next.getInt(slot << INT_SHIFT);
+	}
+
+	@Override
+	void setNext(int slot, int next) {
+		this.next.putInt(slot << INT_SHIFT, next);
+	}
+
+	@Override
+	int getLevel(int slot) {
+		return levels.getInt(slot << INT_SHIFT);
+	}
+
+	@Override
+	void setLevel(int slot, int level) {
+		levels.putInt(slot << INT_SHIFT, level);
+	}
+
+	@Override
+	protected byte getOperationTypeOrdinal(int slot) {
+		return operationTypes.get(slot);
+	}
+
+	@Override
+	protected void setOperationTypeOrdinal(int slot, byte ordinal) {
+		operationTypes.put(slot, ordinal);
+	}
+
+	/** Native byte order spares swapping bytes on every access. */
+	private static ByteBuffer longColumn(int capacity) {
+		return ByteBuffer.allocateDirect(capacity << LONG_SHIFT).order(ByteOrder.nativeOrder());
+	}
+
+	private static ByteBuffer intColumn(int capacity) {
+		return ByteBuffer.allocateDirect(capacity << INT_SHIFT).order(ByteOrder.nativeOrder());
+	}
+
+	private static ByteBuffer copy(ByteBuffer from, ByteBuffer to) {
+		ByteBuffer source = from.duplicate();
+		source.clear();
+		to.put(source);
+		to.clear();
+		return to;
+	}
+}
@@ -0,0 +1,15 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * When journals of books are forced to the disk. <br/>
+ * Trades durability of accepted orders for the cost of <code>fsync</code>.
+ * Journals are memory-mapped, so even without forcing, orders written before a crash of the process are not lost.
+ */
+public enum FsyncPolicy {
+	/** Leaves flushing to the OS. Survives crashes of the process, but not of the machine. */
+	NEVER,
+	/** Forces every group of orders at once, see {@link OrderBookPersistence.Builder#groupCommit(int)}. */
+	GROUP,
+	/** Forces every single order before it is applied. Slowest, loses nothing. */
+	ALWAYS
+}
@@ -0,0 +1,149 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+
+/**
+ * {@link OrderStore} keeping columns in primitive arrays. <br/>
+ * However many orders rest in a book, the garbage collector sees just a few arrays without references.
+ */
+class HeapOrderStore extends OrderStore {
+	private long[] ids;
+
+	private long[] prices;
+
+	private long[] volumes;
+
+	private long[] sequences;
+
+	private long[] timestamps;
+
+	private byte[] operationTypes;
+
+	private int[] previous;
+
+	private int[] next;
+
+	private int[] levels;
+
+	HeapOrderStore(int capacity) {
+		super(capacity);
+
+		ids = new long[capacity()];
+		prices = new long[capacity()];
+		volumes = new long[capacity()];
+		sequences = new long[capacity()];
+		timestamps = new long[capacity()];
+		operationTypes = new byte[capacity()];
+		previous = new int[capacity()];
+		next = new int[capacity()];
+		levels = new int[capacity()];
+	}
+
+	@Override
+	protected int maxCapacity() {
+		return Integer.MAX_VALUE - 8;
+	}
+
+	@Override
+	protected void grow(int newCapacity) {
+		ids = Arrays.copyOf(ids, newCapacity);
+		prices = Arrays.copyOf(prices, newCapacity);
+		volumes = Arrays.copyOf(volumes, newCapacity);
+		sequences = Arrays.copyOf(sequences, newCapacity);
+		timestamps = Arrays.copyOf(timestamps, newCapacity);
+		operationTypes = Arrays.copyOf(operationTypes, newCapacity);
+		previous = Arrays.copyOf(previous, newCapacity);
+		next = Arrays.copyOf(next, newCapacity);
+		levels = Arrays.copyOf(levels, newCapacity);
+	}
+
+	@Override
+	long getId(int slot) {
+		return ids[slot];
+	}
+
+	@Override
+	void setId(int slot, long id) {
+		ids[slot] = id;
+	}
+
+	@Override
+	long getPrice(int slot) {
+		return prices[slot];
+	}
+
+	@Override
+	void setPrice(int slot, long price) {
+		prices[slot] = price;
+	}
+
+	@Override
+	long getVolume(int slot) {
+		return volumes[slot];
+	}
+
+	@Override
+	void setVolume(int slot, long volume) {
+		volumes[slot] = volume;
+	}
+
+	@Override
+	long getSequence(int slot) {
+		return sequences[slot];
+	}
+
+	@Override
+	void setSequence(int slot, long sequence) {
+		sequences[slot] = sequence;
+	}
+
+	@Override
+	long getTimestamp(int slot) {
+		return timestamps[slot];
+	}
+
+	@Override
+	void setTimestamp(int slot, long timestamp) {
+		timestamps[slot] = timestamp;
+	}
+
+	@Override
+	int getPrevious(int slot) {
+		return previous[slot];
+	}
+
+	@Override
+	void setPrevious(int slot, int previous) {
+		this.previous[slot] = previous;
+	}
+
+	@Override
+	int getNext(int slot) {
+		return next[slot];
+	}
+
+	@Override
+	void setNext(int slot, int next) {
+		this.next[slot] = next;
+	}
+
+	@Override
+	int getLevel(int slot) {
+		return levels[slot];
+	}
+
+	@Override
+	void setLevel(int slot, int level) {
+		levels[slot] = level;
+	}
+
+	@Override
+	protected byte getOperationTypeOrdinal(int slot) {
+		return operationTypes[slot];
+	}
+
+	@Override
+	protected void setOperationTypeOrdinal(int slot, byte ordinal) {
+		operationTypes[slot] = ordinal;
+	}
+}
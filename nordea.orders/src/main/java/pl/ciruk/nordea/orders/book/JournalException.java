@@ -0,0 +1,18 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Indicates an error while writing or recovering journals and snapshots of books.
+ */
+public class JournalException extends RuntimeException {
+	
+	/** */
+	private static final long serialVersionUID = 2184627409186243615L;
+
+	public JournalException(String message) {
+		super(message);
+	}
+	
+	public JournalException(Throwable cause) {
+		super(cause);
+	}
+}
@@ -0,0 +1,76 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Change of a single price level of a book, keyed by its side and price. <br/>
+ * Volume and number of orders are totals of the level after the change; both are <code>0</code> for {@link Action#DELETE}.
+ * Each book keeps a single instance and refills it for every update. See {@link MarketDataListener#onLevel(LevelUpdate)}.
+ */
+public class LevelUpdate {
+	public enum Action {
+		/** Level entered the top levels, either new or moved up as better ones were dropped. */
+		ADD,
+		/** Level within the top levels changed its volume or number of orders. */
+		UPDATE,
+		/** Level left the top levels, either emptied or pushed down by a better one. */
+		DELETE
+	}
+
+	private final String bookId;
+
+	private OperationType side;
+
+	private Action action;
+
+	private long price;
+
+	private long volume;
+
+	private int orders;
+
+	LevelUpdate(String bookId) {
+		this.bookId = bookId;
+	}
+
+	void fill(OperationType side, Action action, long price, long volume, int orders) {
+		this.side = side;
+		this.action = action;
+		this.price = price;
+		this.volume = volume;
+		this.orders = orders;
+	}
+
+	public String getBookId() {
+		return bookId;
+	}
+
+	/** {@link OperationType#BUY} for bids, {@link OperationType#SELL} for asks. */
+	public OperationType getSide() {
+		return side;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	/** Price of the level in ticks. */
+	public long getPrice() {
+		return price;
+	}
+
+	/** Total volume resting at the level. */
+	public long getVolume() {
+		return volume;
+	}
+
+	/** Number of orders resting at the level. */
+	public int getOrders() {
+		return orders;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s] %s %s %d x %d@%d", bookId, action, side, orders, volume, price);
+	}
+}
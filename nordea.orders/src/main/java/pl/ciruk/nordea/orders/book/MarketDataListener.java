@@ -0,0 +1,34 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Receives incremental market data of an {@link OrderBook}: changes of its best prices and of its top price levels. <br/>
+ * Called on the thread that processes the book, once the book is done with an order, and only for what the order changed;
+ * a level touched several times by one order is reported once.
+ * Applying every {@link LevelUpdate} in turn to a map of levels keyed by side and price reproduces the book's top levels.
+ * A listener shared by many books may be called by several threads at once. 
+ * Slow consumers may be decoupled with {@link ConflatingMarketDataListener}.
+ */
+public interface MarketDataListener {
+	/** Ignores all updates. Unless they publish {@link BookDepth}, books do not track changes for it at all. */
+	MarketDataListener NONE = new MarketDataListener() {
+		@Override
+		public void onLevel(LevelUpdate update) {
+		}
+
+		@Override
+		public void onTopOfBook(TopOfBook top) {
+		}
+	};
+
+	/**
+	 * Notifies of a price level entering, changing within or leaving the book's top {@link OrderBookOptions#getDepth()} levels. <br/>
+	 * The update is reused by the book, so it must not be kept after this method returns.
+	 */
+	void onLevel(LevelUpdate update);
+
+	/**
+	 * Notifies of a change of the best bid or ask, either its price or its volume. <br/>
+	 * Sent after the level updates of the same order. Reused by the book as well.
+	 */
+	void onTopOfBook(TopOfBook top);
+}
@@ -0,0 +1,133 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.LevelUpdate.Action;
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Turns changes of a book's {@link PriceLadder}s into market data for its {@link MarketDataListener}. <br/>
+ * Levels remember what subscribers were told about them, so only levels changed by an order are compared,
+ * and the top of a side is walked only when levels were created or dropped, since only then may others move in or out of it.
+ * Publishing therefore costs O(1) per changed level, plus O(depth) for orders which create or drop levels.
+ * Used only by the thread processing the book.
+ */
+final class MarketDataPublisher {
+	private final MarketDataListener listener;
+
+	/** Number of best levels of each side published. */
+	private final int depth;
+
+	private final LevelUpdate update;
+
+	private final TopOfBook top;
+
+	/** Number of bid levels subscribers know of. */
+	private int publishedBids;
+
+	/** Number of ask levels subscribers know of. */
+	private int publishedAsks;
+
+	/** Whether anything was sent by the current call to {@link #publish(PriceLadder, PriceLadder)}. */
+	private boolean sent;
+
+	MarketDataPublisher(String bookId, MarketDataListener listener, int depth) {
+		this.listener = listener;
+		this.depth = depth;
+		this.update = new LevelUpdate(bookId);
+		this.top = new TopOfBook(bookId);
+	}
+
+	/** 
+	 * Publishes whatever changed on given sides since the last call, then the top of the book if it changed, and forgets the changes. 
+	 * @return Whether any of the top levels changed
+	 */
+	boolean publish(PriceLadder bids, PriceLadder asks) {
+		sent = false;
+		publishedBids = publish(OperationType.BUY, bids, publishedBids);
+		publishedAsks = publish(OperationType.SELL, asks, publishedAsks);
+
+		PriceLevel bid = bids.best();
+		PriceLevel ask = asks.best();
+		boolean changed = top.fill(
+				bid != null ? bid.getPrice() : 0L, 
+				bid != null ? bid.getVolume() : 0L, 
+				ask != null ? ask.getPrice() : 0L, 
+				ask != null ? ask.getVolume() : 0L);
+		if (changed) {
+			listener.onTopOfBook(top);
+		}
+		return sent || changed;
+	}
+
+	/** 
+	 * Publishes changes of a single side. 
+	 * @return Number of its levels subscribers know of afterwards
+	 */
+	private int publish(OperationType side, PriceLadder ladder, int published) {
+		// Dropped levels are empty and no longer on the ladder
+		for (int i = 0; i < ladder.changedCount(); i++) {
+			PriceLevel level = ladder.changed(i);
+			if (level.isEmpty() && isPublished(level)) {
+				send(side, Action.DELETE, level);
+				published--;
+			}
+		}
+
+		if (ladder.levelsChanged()) {
+			int unseen = published;
+			PriceLevel level = ladder.best();
+			for (int rank = 0; level != null && rank < depth; rank++) {
+				if (!isPublished(level)) {
+					send(side, Action.ADD, level);
+					published++;
+				} else {
+					unseen--;
+					sendIfChanged(side, level);
+				}
+				level = ladder.next(level);
+			}
+
+			// Published levels not seen within the top were pushed below it by new levels
+			for (; level != null && unseen > 0; level = ladder.next(level)) {
+				if (isPublished(level)) {
+					send(side, Action.DELETE, level);
+					published--;
+					unseen--;
+				}
+			}
+		} else {
+			// The same levels make the top, only their volumes may have changed
+			for (int i = 0; i < ladder.changedCount(); i++) {
+				PriceLevel level = ladder.changed(i);
+				if (isPublished(level)) {
+					sendIfChanged(side, level);
+				}
+			}
+		}
+
+		ladder.clearChanges();
+		return published;
+	}
+
+	private void sendIfChanged(OperationType side, PriceLevel level) {
+		if (level.getVolume() != level.publishedVolume || level.size() != level.publishedOrders) {
+			send(side, Action.UPDATE, level);
+		}
+	}
+
+	private void send(OperationType side, Action action, PriceLevel level) {
+		if (action == Action.DELETE) {
+			level.publishedVolume = 0L;
+			level.publishedOrders = 0;
+		} else {
+			level.publishedVolume = level.getVolume();
+			level.publishedOrders = level.size();
+		}
+		update.fill(side, action, level.getPrice(), level.publishedVolume, level.publishedOrders);
+		listener.onLevel(update);
+		sent = true;
+	}
+
+	private static boolean isPublished(PriceLevel level) {
+		return level.publishedVolume != 0L;
+	}
+}
@@ -1,8 +1,5 @@
 package pl.ciruk.nordea.orders.book;
 
-import java.math.BigDecimal;
-import java.util.Date;
-
 /**
  * Representation of order operation of a certain type. <br/>
  * Instances could be created either by using provided {@link Order.Builder} or {@link #copyOf(Order)}.
@@ -15,7 +12,9 @@ public class Order {
 	
 	/** Type of operation. */
 	public enum OperationType {
-		BUY, SELL, DELETE;
+		BUY, SELL, DELETE, 
+		/** Amends price and volume of a resting order, see {@link OrderBook#modify(long, long, long)}. */
+		MODIFY;
 	}
 	
 	/** Creates deep copy of given order. */
@@ -33,7 +32,7 @@ public class Order {
 		
 		private OperationType operationType;
 		
-		private BigDecimal price;
+		private long price;
 		
 		private long volume;
 		
@@ -50,7 +49,8 @@ public class Order {
 			return this;
 		}
 		
-		public Order.Builder price(BigDecimal price) {
+		/** Sets price expressed in ticks of the book's {@link pl.ciruk.nordea.orders.utils.PriceScale}. */
+		public Order.Builder price(long price) {
 			this.price = price;
 			return this;
 		}
@@ -70,19 +70,31 @@ public class Order {
 		this.operationType = builder.operationType;
 		this.price = builder.price;
 		this.volume = builder.volume;
-		
-		timestamp = new Date();
 	}
 	
 	private long id;
 	
 	private OperationType operationType;
 	
-	private BigDecimal price;
+	/** Price in ticks. */
+	private long price;
 	
 	private long volume;
 	
-	private Date timestamp;
+	/** Position in arrival order, assigned by the book. Decides time priority. */
+	private long sequence;
+	
+	/** {@link System#nanoTime()} at arrival, if the book captures it. Otherwise 0. */
+	private long timestamp;
+	
+	/** {@link System#nanoTime()} when the order was handed over to its book, if books are instrumented. Otherwise 0. */
+	long dispatched;
+	
+	/** Marks arrival of this order at a book. */
+	void arrived(long sequence, long timestamp) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+	}
 
 	public void decreaseVolume(long delta) {
 		volume = getVolume() - delta;
@@ -90,7 +102,7 @@ public class Order {
 
 	@Override
 	public String toString() {
-		return String.format("[%s] %d; %f; %d", operationType.toString(), id, price, volume);
+		return String.format("[%s] %d; %d; %d", operationType, id, price, volume);
 	}
 	
 	@Override
@@ -123,7 +135,8 @@ public class Order {
 		return operationType;
 	}
 	
-	public BigDecimal getPrice() {
+	/** Returns price in ticks. */
+	public long getPrice() {
 		return price;
 	}
 	
@@ -131,7 +144,11 @@ public class Order {
 		return volume;
 	}
 	
-	public Date getTimestamp() {
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public long getTimestamp() {
 		return timestamp;
 	}
 }
@@ -1,18 +1,18 @@
 package pl.ciruk.nordea.orders.book;
 
 import java.io.PrintStream;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.metrics.BookMetrics;
+import pl.ciruk.nordea.orders.utils.LongIntMap;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 /**
  * All interest (i.e. orders) container. <br/>
@@ -21,165 +21,359 @@ import com.google.common.collect.Maps;
  * and another side with the orders expressing a sell interest.
  * Orders are sorted by price-time priority, i.e. orders with a better price precedes 
  * an order with a worse price, and orders with the same price are prioritized 
- * such that the order that’s been in the book for the longest time is processed first.
+ * such that the order that’s been in the book for the longest time is processed first. 
+ * The time is measured by a sequence number the book gives to each arriving order. <br/>
+ * Resting orders are kept in an {@link OrderStore}, on or off the heap depending on {@link OrderBookOptions#getOrderStorage()}.
+ * Each side is kept as a {@link PriceLadder} of price levels referring to orders by their slots, 
+ * so inserting an order does not require re-sorting the whole side and no object is created per resting order.
+ * Orders returned by the public API are detached copies, but the lists of them are live views,
+ * to be read by the thread processing the book or once processing has finished.
+ * Other threads query the book through {@link #getDepth()}.
  * @author piotr.ciruk
  *
  */
 public class OrderBook implements Runnable {
 	String id;
 	
+	/** Resting orders of both sides. */
+	final OrderStore store;
+	
+	PriceLadder buyLevels;
+	
+	PriceLadder sellLevels;
+	
+	/** Buy side in price-time priority, built from {@link #buyLevels}. */
 	List<Order> buys;
 	
+	/** Sell side in price-time priority, built from {@link #sellLevels}. */
 	List<Order> sells;
 	
-	Map<Long, Order> ordersCache = Maps.newHashMap();
+	/** Slots of resting orders by their ids. Sized for {@link OrderBookOptions#getExpectedOrders()} up front. */
+	final LongIntMap ordersCache;
 	
 	BlockingQueue<Order> queue;
 	
+	/** Orders {@link #run()} took from the queue behind {@link Order#EMPTY}; the next call processes them first. */
+	private final ArrayDeque<Order> leftovers = new ArrayDeque<>();
+	
+	OrderBookOptions options;
+	
+	/** Sequence number to be given to the next arriving order. */
+	long nextSequence = 1;
+	
+	/** Number of trades executed so far. */
+	long tradeCount;
+	
+	/** Reused for every reported trade. */
+	final TradeEvent trade;
+	
+	/** Whether trades have to be reported at all; avoids filling events for {@link TradeListener#NONE}. See {@link #suspendReports()}. */
+	boolean reportTrades;
+	
+	/** Latencies and counters of the book; <code>null</code> unless the book is instrumented, so that nothing is timed otherwise. */
+	final BookMetrics metrics;
+	
+	/** 
+	 * Publishes changes of levels after every order or batch of orders; <code>null</code> unless market data is reported or depth is published, 
+	 * so that no changes are tracked otherwise. 
+	 */
+	final MarketDataPublisher marketData;
+	
+	/** Latest view of the top levels for other threads; replaced as a whole, never modified. */
+	private volatile BookDepth depth;
+	
+	/** Number of views of the top levels published so far. */
+	private long depthVersion;
+	
+	/** Journal every order is written to before it is applied; <code>null</code> unless the book is persistent (see {@link OrderBookPersistence}). */
+	BookJournal journal;
+	
 	public OrderBook(String id, BlockingQueue<Order> queue) {
+		this(id, queue, OrderBookOptions.DEFAULT);
+	}
+	
+	public OrderBook(String id, BlockingQueue<Order> queue, OrderBookOptions options) {
+		this(id, queue, options, null);
+	}
+	
+	OrderBook(String id, BlockingQueue<Order> queue, OrderBookOptions options, BookMetrics metrics) {
 		this.queue = queue;
+		this.metrics = metrics;
 		this.id = id;
-		
-		buys = Lists.newLinkedList();
-		sells = Lists.newLinkedList();
+		this.options = options;
+		this.trade = new TradeEvent(id);
+		this.store = options.getOrderStorage().create(options.getExpectedOrders());
+		this.ordersCache = new LongIntMap(options.getExpectedOrders());
+		this.buyLevels = PriceLadder.forBuys(store);
+		this.sellLevels = PriceLadder.forSells(store);
+		this.buys = buyLevels.asList();
+		this.sells = sellLevels.asList();
+		this.marketData = options.getMarketDataListener() != MarketDataListener.NONE || options.isPublishDepth()
+				? new MarketDataPublisher(id, options.getMarketDataListener(), options.getDepth())
+				: null;
+		resumeReports();
 	}
 	
+	/** 
+	 * Processes queued orders until {@link Order#EMPTY}. <br/>
+	 * Waits for an order only while the queue is empty, then takes it together with whatever else is waiting,
+	 * up to {@link OrderBookOptions#getBatchSize()} orders, in a single call. Market data is published once per such batch.
+	 * Orders taken behind {@link Order#EMPTY} are kept and processed first by the next call.
+	 */
 	@Override
 	public void run() {
+		int batchSize = options.getBatchSize();
+		List<Order> batch = new ArrayList<>(batchSize);
 		while (true) {
 			try {
-				Order order = queue.take();
-				
+				if (leftovers.isEmpty()) {
+					batch.add(queue.take());
+				} else {
+					// Always fewer than a batch, since they come from a single one
+					batch.addAll(leftovers);
+					leftovers.clear();
+				}
+				queue.drainTo(batch, batchSize - batch.size());
+			} catch (InterruptedException e) {
+				// Nothing to do
+				continue;
+			}
+			
+			for (int i = 0; i < batch.size(); i++) {
+				Order order = batch.get(i);
 				// End of processing?
 				if (order == Order.EMPTY) {
+					publishMarketData();
+					leftovers.addAll(batch.subList(i + 1, batch.size()));
 					return;
 				}
 				
-				if (OperationType.BUY == order.getOperationType()) {
-					buy(order);
-				} else if (OperationType.SELL == order.getOperationType()) {
-					sell(order);
-				} else if (OperationType.DELETE == order.getOperationType()) {
-					remove(order.getId());
-				}
-			} catch (InterruptedException e) {
-				// Nothing to do
+				accept(order);
 			}
+			publishMarketData();
+			batch.clear();
 		}
 	}
 	
-	/** Perform a buying operation. */
-	private void buy(Order order) {
+	/** Applies a single order to the book and publishes market data it changed. The order itself is left intact, its fields are copied. */
+	void process(Order order) {
+		accept(order);
+		publishMarketData();
+	}
+	
+	/** Applies an order handed over to the book at given time, by {@link System#nanoTime()}, and publishes market data it changed. */
+	void process(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		accept(operationType, orderId, price, volume, dispatched);
+		publishMarketData();
+	}
+	
+	/** Same as {@link #accept(OperationType, long, long, long, long)} for an order given as an object. */
+	void accept(Order order) {
 		Preconditions.checkArgument(order != null, "Order cannot be null");
-		Preconditions.checkArgument(order.getOperationType() == OperationType.BUY, "Operation must be of type BUY");
 		
-		processBuy(order);
+		accept(order.getOperationType(), order.getId(), order.getPrice(), order.getVolume(), order.dispatched);
+	}
+	
+	/** 
+	 * Applies an order handed over to the book at given time, by {@link System#nanoTime()}, 
+	 * leaving market data it changed to {@link #publishMarketData()}, so that a batch of orders publishes once. <br/>
+	 * If the book is persistent, journals the order first.
+	 * If the book is instrumented, records how long the order waited, how long it took to match and the order's counters.
+	 */
+	void accept(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		if (journal != null) {
+			journal.append(operationType, orderId, price, volume);
+		}
+		if (metrics == null) {
+			process(operationType, orderId, price, volume);
+			return;
+		}
 		
-		if (order.getVolume() > 0) {
-			ordersCache.put(order.getId(), order);
-			
-			buys.add(order);
-			Collections.sort(buys, new Comparator<Order>() {
-				@Override
-				public int compare(Order first, Order second) {
-					if (first.getPrice().equals(second.getPrice())) {
-						return first.getTimestamp().compareTo(second.getTimestamp());
-					} else {
-						return -1 * first.getPrice().compareTo(second.getPrice());
-					}
-				}
-			});
+		long started = System.nanoTime();
+		process(operationType, orderId, price, volume);
+		metrics.record(operationType, dispatched, started, System.nanoTime(), tradeCount);
+	}
+	
+	/** Publishes market data changed since the last call, i.e. by the orders accepted since, if it is reported. */
+	void publishMarketData() {
+		if (marketData != null && marketData.publish(buyLevels, sellLevels) && options.isPublishDepth()) {
+			publishDepth();
 		}
 	}
 	
-	private void sell(Order order) {
-		Preconditions.checkArgument(order != null, "Order cannot be null");
-		Preconditions.checkArgument(order.getOperationType() == OperationType.SELL, "Operation must be of type SELL");
-		
-		processSell(order);
-		
-		if (order.getVolume() > 0) {
-			ordersCache.put(order.getId(), order);
-			
-			sells.add(order);
-			
-			Collections.sort(sells, new Comparator<Order>() {
-				@Override
-				public int compare(Order first, Order second) {
-					if (first.getPrice().equals(second.getPrice())) {
-						return first.getTimestamp().compareTo(second.getTimestamp());
-					} else {
-						return first.getPrice().compareTo(second.getPrice());
-					}
-				}
-			});
+	/** Stops reporting trades and tracking market data, e.g. while the book is recovered. */
+	void suspendReports() {
+		reportTrades = false;
+		buyLevels.trackChanges(false);
+		sellLevels.trackChanges(false);
+	}
+	
+	/** Reports trades and market data as configured. The first market data published afterwards covers the whole top of the book. */
+	void resumeReports() {
+		reportTrades = options.getTradeListener() != TradeListener.NONE;
+		buyLevels.trackChanges(marketData != null);
+		sellLevels.trackChanges(marketData != null);
+		if (options.isPublishDepth()) {
+			publishDepth();
 		}
 	}
 	
+	/** Replaces the view of the top levels with a copy of their current state. */
+	private void publishDepth() {
+		depth = new BookDepth(id, depthVersion++, buyLevels, sellLevels, options.getDepth());
+	}
+	
 	/** 
-	 * Tries to match given sell operation with all present buy operations. <br/>
-	 * Gets rid of empty buy operations. 
+	 * Applies a single order given by its fields to the book. <br/>
+	 * Price and volume are ignored for {@link OperationType#DELETE}
+	 * and are the new values of the resting order for {@link OperationType#MODIFY}.
 	 */
-	private void processSell(Order sell) {
-		for (Order buy : buys) {
-			if (buy.getPrice().compareTo(sell.getPrice()) < 0 
-					|| sell.getVolume() == 0) {
-				break;
+	void process(OperationType operationType, long orderId, long price, long volume) {
+		if (OperationType.BUY == operationType) {
+			long sequence = nextSequence++;
+			long remaining = processBuy(orderId, price, volume);
+			if (remaining > 0) {
+				rest(buyLevels, orderId, operationType, price, remaining, sequence);
 			}
-			
-			long contractVolume = Math.min(sell.getVolume(), buy.getVolume());
-			sell.decreaseVolume(contractVolume);
-			buy.decreaseVolume(contractVolume);
+		} else if (OperationType.SELL == operationType) {
+			long sequence = nextSequence++;
+			long remaining = processSell(orderId, price, volume);
+			if (remaining > 0) {
+				rest(sellLevels, orderId, operationType, price, remaining, sequence);
+			}
+		} else if (OperationType.DELETE == operationType) {
+			remove(orderId);
+		} else if (OperationType.MODIFY == operationType) {
+			modify(orderId, price, volume);
 		}
+	}
+	
+	/** Puts the unmatched rest of an order into the store and queues it on given side. */
+	private void rest(PriceLadder levels, long orderId, OperationType operationType, long price, long volume, long sequence) {
+		long timestamp = options.isTimestamps() ? System.nanoTime() : 0L;
+		int slot = store.add(orderId, operationType, price, volume, sequence, timestamp);
+		ordersCache.put(orderId, slot);
+		
+		levels.add(slot);
+	}
+	
+	/** Puts a resting order taken from a snapshot back on its side, keeping its sequence number and timestamp. Orders of a level have to come oldest first. */
+	void restore(OperationType operationType, long orderId, long price, long volume, long sequence, long timestamp) {
+		int slot = store.add(orderId, operationType, price, volume, sequence, timestamp);
+		ordersCache.put(orderId, slot);
 		
-		buys = clearEmptyOrders(buys);
+		(OperationType.BUY == operationType ? buyLevels : sellLevels).add(slot);
 	}
 	
 	/** 
-	 * Tries to match given sell operation with all present buy operations. <br/>
-	 * Gets rid of empty buy operations. 
+	 * Tries to match given sell operation with present buy operations, best price first. <br/>
+	 * Fully matched buy operations are removed from the head of their level in place. 
+	 * @return Volume left unmatched
 	 */
-	private void processBuy(Order buy) {
-		for (Order sell : sells) {
-			if (sell.getPrice().compareTo(buy.getPrice()) > 0 
-					|| buy.getVolume() == 0) {
-				break;
+	private long processSell(long sellId, long price, long volume) {
+		PriceLevel level = buyLevels.best();
+		while (volume > 0 
+				&& level != null 
+				&& level.getPrice() >= price) {
+			int buy = level.peek();
+			long buyVolume = store.getVolume(buy);
+			
+			long contractVolume = Math.min(volume, buyVolume);
+			volume -= contractVolume;
+			buyLevels.setVolume(buy, buyVolume - contractVolume);
+			
+			tradeCount++;
+			if (reportTrades) {
+				reportTrade(sellId, OperationType.SELL, store.getId(buy), level.getPrice(), contractVolume);
 			}
 			
-			long contractVolume = Math.min(buy.getVolume(), sell.getVolume());
-			buy.decreaseVolume(contractVolume);
-			sell.decreaseVolume(contractVolume);
+			if (buyVolume == contractVolume) {
+				level = removeFilled(buyLevels);
+			}
 		}
-		
-		sells = clearEmptyOrders(sells);
+		return volume;
 	}
 	
-	List<Order> clearEmptyOrders(List<Order> orders) {
-		int index = 0;
-		
-		for (Order o : orders) {
-			if (o.getVolume() > 0L) {
-				break;
+	/** 
+	 * Tries to match given buy operation with present sell operations, best price first. <br/>
+	 * Fully matched sell operations are removed from the head of their level in place. 
+	 * @return Volume left unmatched
+	 */
+	private long processBuy(long buyId, long price, long volume) {
+		PriceLevel level = sellLevels.best();
+		while (volume > 0 
+				&& level != null 
+				&& level.getPrice() <= price) {
+			int sell = level.peek();
+			long sellVolume = store.getVolume(sell);
+			
+			long contractVolume = Math.min(volume, sellVolume);
+			volume -= contractVolume;
+			sellLevels.setVolume(sell, sellVolume - contractVolume);
+			
+			tradeCount++;
+			if (reportTrades) {
+				reportTrade(buyId, OperationType.BUY, store.getId(sell), level.getPrice(), contractVolume);
 			}
 			
-			index++;
-			this.ordersCache.remove(o.getId());
+			if (sellVolume == contractVolume) {
+				level = removeFilled(sellLevels);
+			}
 		}
-		
-		int lastIndex = Math.max(0, orders.size());
-		
-		return Lists.newArrayList(orders.subList(Math.min(index, lastIndex), lastIndex));
+		return volume;
+	}
+	
+	/** Passes a single execution to the trade listener. */
+	private void reportTrade(long aggressorId, OperationType aggressorOperationType, long passiveId, long price, long volume) {
+		trade.fill(tradeCount, aggressorId, aggressorOperationType, passiveId, price, volume);
+		options.getTradeListener().onTrade(trade);
+	}
+	
+	/** 
+	 * Drops the fully matched order from the head of the ladder. 
+	 * @return Level to continue matching with
+	 */
+	private PriceLevel removeFilled(PriceLadder levels) {
+		int filled = levels.pollBest();
+		ordersCache.remove(store.getId(filled));
+		store.remove(filled);
+		return levels.best();
 	}
 	
 	/** Removes order with given identifier from the book. */
-	public void remove(Long orderId) {
-		if (ordersCache.containsKey(orderId)) {
-			Order toBeRemoved = ordersCache.remove(orderId);
-			if (Order.OperationType.BUY == toBeRemoved.getOperationType()) {
-				buys.remove(toBeRemoved);
-			} else if (Order.OperationType.SELL == toBeRemoved.getOperationType()){
-				sells.remove(toBeRemoved);
+	public void remove(long orderId) {
+		int slot = ordersCache.remove(orderId);
+		if (slot != LongIntMap.NO_VALUE) {
+			if (Order.OperationType.BUY == store.getOperationType(slot)) {
+				buyLevels.remove(slot);
+			} else if (Order.OperationType.SELL == store.getOperationType(slot)) {
+				sellLevels.remove(slot);
 			}
+			store.remove(slot);
+		}
+	}
+	
+	/** 
+	 * Amends resting order with given identifier. <br/>
+	 * Decreasing the volume at the same price keeps the order's place in its level and takes constant time.
+	 * Any other change loses time priority: the order is taken out of the book and processed again
+	 * as a new arrival with the same id, so at a new price it may also match the other side.
+	 * Volume of zero cancels the order. Unknown orders are ignored.
+	 */
+	public void modify(long orderId, long price, long volume) {
+		int slot = ordersCache.get(orderId);
+		if (slot == LongIntMap.NO_VALUE) {
+			return;
+		}
+		
+		if (volume <= 0) {
+			remove(orderId);
+		} else if (price == store.getPrice(slot) && volume <= store.getVolume(slot)) {
+			(Order.OperationType.BUY == store.getOperationType(slot) ? buyLevels : sellLevels).setVolume(slot, volume);
+		} else {
+			OperationType operationType = store.getOperationType(slot);
+			remove(orderId);
+			process(operationType, orderId, price, volume);
 		}
 	}
 	
@@ -191,38 +385,51 @@ public class OrderBook implements Runnable {
 		out.println(Strings.padStart("Buy -", columnWidth, ' ') + Strings.padEnd("- Sell", columnWidth, ' '));
 		out.println(Strings.repeat("=", lineWidth));
 		
-		int higherNumberOfOrders = Math.max(buys.size(), sells.size());
-		for (int i = 0; i < higherNumberOfOrders; i++) {
+		Iterator<Order> buyIterator = buys.iterator();
+		Iterator<Order> sellIterator = sells.iterator();
+		while (buyIterator.hasNext() || sellIterator.hasNext()) {
 			out.println(
-					Strings.padStart(getFormattedOrder(buys, i) + " -", columnWidth, ' ') + 
-					Strings.padEnd("- " + getFormattedOrder(sells, i), columnWidth, ' '));
+					Strings.padStart(getFormattedOrder(buyIterator) + " -", columnWidth, ' ') + 
+					Strings.padEnd("- " + getFormattedOrder(sellIterator), columnWidth, ' '));
 		}
 	}
 	
 	/** 
-	 * Returns String representation of order from the list.
-	 * @param orders List of orders
-	 * @param index Index of order to be formatted. 
-	 * 		If a list does not contain order in the given position empty String is returned 
+	 * Returns String representation of next order from the iterator.
+	 * @param orders Iterator over orders
+	 * 		If there are no orders left empty String is returned 
 	 */
-	private String getFormattedOrder(List<Order> orders, int index) {
+	private String getFormattedOrder(Iterator<Order> orders) {
 		String formattedOrder = "";
-		if (index >= 0 && index < orders.size()) {
-			Order order =  orders.get(index);
-			formattedOrder = String.format("%d@%.2f", order.getVolume(), order.getPrice());
+		if (orders.hasNext()) {
+			Order order =  orders.next();
+			formattedOrder = String.format("%d@%.2f", order.getVolume(), options.getPriceScale().toDecimal(order.getPrice()));
 		}
 		return formattedOrder; 
 	}
 	
+	/** 
+	 * Returns the latest view of the book's top levels, consistent as of the end of processing some order. 
+	 * May be called by any thread; never blocks the book. 
+	 * @return <code>null</code> unless {@link OrderBookOptions#isPublishDepth()}
+	 */
+	public BookDepth getDepth() {
+		return depth;
+	}
+	
+	/** Live view of the buy side; see the class comment on which threads may read it. */
 	public List<Order> getBuys() {
 		return buys;
 	}
 	
+	/** Live view of the sell side; see the class comment on which threads may read it. */
 	public List<Order> getSells() {
 		return sells;
 	}
 	
-	public Order getOrder(Long orderId) {
-		return ordersCache.get(orderId);
+	/** Returns a copy of the resting order with given identifier or <code>null</code> if there is none. */
+	public Order getOrder(long orderId) {
+		int slot = ordersCache.get(orderId);
+		return slot != LongIntMap.NO_VALUE ? store.toOrder(slot) : null;
 	}
 }
@@ -1,65 +1,249 @@
 package pl.ciruk.nordea.orders.book;
 
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.metrics.BookMetrics;
+import pl.ciruk.nordea.orders.metrics.OrderBookMetrics;
 
 import com.google.common.base.Preconditions;
 
+/**
+ * Set of order books identified by their ids. <br/>
+ * By default books are multiplexed onto a bounded pool of workers (see {@link BookActor}),
+ * so the number of books is not limited by the number of threads.
+ * When a number of shards is given, books are instead hashed onto that many dedicated threads
+ * fed through lock-free rings (see {@link BookShard}); in that mode orders must be dispatched from a single thread. <br/>
+ * Books are created lazily on their first order, or up front with {@link #register(Iterable)}.
+ * Looking a book up never locks; creating one takes a lock, so that each id gets exactly one book. <br/>
+ * Given {@link OrderBookMetrics}, every dispatched order is timestamped and its books record latencies and counters;
+ * without them nothing is timed. <br/>
+ * Given {@link OrderBookPersistence}, every book journals dispatched orders and books journaled before are recovered up front;
+ * journals are closed by {@link #finishProcessing()}.
+ */
 public class OrderBookContainer {
-	private List<OrderBook> books = new ArrayList<>();
-	private Map<String, BlockingQueue<Order>> queues = new HashMap<>();
-	private ExecutorService executor = Executors.newFixedThreadPool(4);
-	
+	/** Default number of worker threads. */
+	public static final int DEFAULT_WORKERS = 4;
+
+	/** Default number of orders a book processes before it yields its worker. */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	/** Default capacity of a shard's ring. */
+	public static final int DEFAULT_RING_SIZE = 1 << 14;
+
+	public static class Builder {
+		private OrderBookOptions options = OrderBookOptions.DEFAULT;
+
+		private int workers = DEFAULT_WORKERS;
+
+		private int batchSize = DEFAULT_BATCH_SIZE;
+
+		private int shards;
+
+		private int ringSize = DEFAULT_RING_SIZE;
+
+		private WaitStrategy waitStrategy = WaitStrategy.YIELD;
+
+		private OrderBookMetrics metrics;
+
+		private OrderBookPersistence persistence;
+
+		public Builder() {
+		}
+
+		/** Settings of created books. */
+		public OrderBookContainer.Builder options(OrderBookOptions options) {
+			this.options = options;
+			return this;
+		}
+
+		/** Number of threads shared by all books. */
+		public OrderBookContainer.Builder workers(int workers) {
+			this.workers = workers;
+			return this;
+		}
+
+		/** Maximal number of orders a book processes in one go before it lets other books run. */
+		public OrderBookContainer.Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/** 
+		 * Number of dedicated matching threads books are sharded onto. 
+		 * <code>0</code> (the default) shares a pool of {@link #workers(int)} instead. 
+		 */
+		public OrderBookContainer.Builder shards(int shards) {
+			this.shards = shards;
+			return this;
+		}
+
+		/** Capacity of each shard's ring; a power of two. */
+		public OrderBookContainer.Builder ringSize(int ringSize) {
+			this.ringSize = ringSize;
+			return this;
+		}
+
+		/** What shard threads do while their rings are empty, and the dispatcher while a ring is full. */
+		public OrderBookContainer.Builder waitStrategy(WaitStrategy waitStrategy) {
+			this.waitStrategy = waitStrategy;
+			return this;
+		}
+
+		/** Instruments books, registering each of them with given metrics. By default books are not instrumented. */
+		public OrderBookContainer.Builder metrics(OrderBookMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+
+		/** Journals books, recovering those already journaled when the container is built. By default books are kept in memory only. */
+		public OrderBookContainer.Builder persistence(OrderBookPersistence persistence) {
+			this.persistence = persistence;
+			return this;
+		}
+
+		public OrderBookContainer build() {
+			Preconditions.checkArgument(options != null, "Options cannot be null");
+			Preconditions.checkArgument(workers > 0, "Number of workers must be positive");
+			Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+			Preconditions.checkArgument(shards >= 0, "Number of shards cannot be negative");
+			Preconditions.checkArgument(Integer.bitCount(ringSize) == 1, "Ring size must be a power of two");
+			Preconditions.checkArgument(waitStrategy != null, "Wait strategy cannot be null");
+
+			return new OrderBookContainer(this);
+		}
+	}
+
+	/** Books in order of creation. */
+	private final Queue<OrderBook> books = new ConcurrentLinkedQueue<>();
+	private final ConcurrentMap<String, BookRoute> routes = new ConcurrentHashMap<>();
+	private final BookScheduler scheduler;
+	private final OrderBookOptions options;
+	/** <code>null</code> unless books are instrumented. */
+	private final OrderBookMetrics metrics;
+	/** <code>null</code> unless books are journaled. */
+	private final OrderBookPersistence persistence;
+
+	public OrderBookContainer() {
+		this(OrderBookOptions.DEFAULT);
+	}
+
+	/** Creates a container of books with given settings. */
+	public OrderBookContainer(OrderBookOptions options) {
+		this(new Builder().options(options));
+	}
+
+	private OrderBookContainer(OrderBookContainer.Builder builder) {
+		this.options = builder.options;
+		this.metrics = builder.metrics;
+		this.persistence = builder.persistence;
+		this.scheduler = builder.shards > 0
+				? new ShardedScheduler(builder.shards, builder.ringSize, builder.waitStrategy, builder.batchSize, metrics != null)
+				: new ActorScheduler(builder.workers, builder.batchSize);
+		if (persistence != null) {
+			register(persistence.getBookIds());
+		}
+	}
+
 	/**
-	 * Dispatches given order to book with given id.
+	 * Dispatches given order to book with given id. <br/>
+	 * May be called from several threads at once, unless books are sharded.
 	 * @param bookId
 	 * @param order
 	 */
 	public void process(String bookId, Order order) {
-		if (!queues.containsKey(bookId)) {
-			// Queue for passing orders
-			BlockingQueue<Order> queue = new LinkedBlockingQueue<>();
-			queues.put(bookId, queue);
-			
-			OrderBook book = new OrderBook(bookId, queue);
-			books.add(book);
-			executor.execute(book);
+		if (metrics != null && order != Order.EMPTY) {
+			// Passed as fields, so that the caller's instance is not stamped
+			process(bookId, order.getOperationType(), order.getId(), order.getPrice(), order.getVolume());
+		} else {
+			route(bookId).post(order);
+		}
+	}
+
+	/**
+	 * Dispatches an order given by its fields to book with given id. <br/>
+	 * Price and volume are ignored for {@link OperationType#DELETE}
+	 * and are the new values of the resting order for {@link OperationType#MODIFY}.
+	 * @throws OrderBookException if the book failed processing earlier orders
+	 */
+	public void process(String bookId, OperationType operationType, long orderId, long price, long volume) {
+		BookRoute route = route(bookId);
+		long dispatched = 0L;
+		if (metrics != null) {
+			route.getBook().metrics.dispatched();
+			dispatched = System.nanoTime();
 		}
-		
-		try {
-			queues.get(bookId).put(order);
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+		route.post(operationType, orderId, price, volume, dispatched);
+	}
+
+	/**
+	 * Creates books with given ids up front, so that no book is created while orders are dispatched.
+	 * Ids which already have a book are skipped.
+	 */
+	public void register(Iterable<String> bookIds) {
+		Preconditions.checkArgument(bookIds != null, "Book ids cannot be null");
+
+		for (String bookId : bookIds) {
+			route(bookId);
+		}
+	}
+
+	private BookRoute route(String bookId) {
+		BookRoute route = routes.get(bookId);
+		return route != null ? route : createRoute(bookId);
+	}
+
+	/** Slow path of {@link #route(String)}: serialized, so that concurrent callers never create two books with the same id. */
+	private synchronized BookRoute createRoute(String bookId) {
+		Preconditions.checkArgument(bookId != null, "Book id cannot be null");
+
+		BookRoute route = routes.get(bookId);
+		if (route == null) {
+			BookMetrics bookMetrics = metrics != null ? metrics.register(bookId) : null;
+			OrderBook book = persistence != null
+					? persistence.open(bookId, new LinkedBlockingQueue<Order>(), options, bookMetrics)
+					: new OrderBook(bookId, new LinkedBlockingQueue<Order>(), options, bookMetrics);
+			route = scheduler.route(book);
+
+			books.add(book);
+			routes.put(bookId, route);
 		}
+		return route;
 	}
-	
+
 	/**
-	 * Notify underlying order book queues of end of processing.
+	 * Notify underlying order books of end of processing
+	 * and wait until they process all dispatched orders.
+	 * Journals of persistent books are then closed, each with a final snapshot.
 	 * @throws InterruptedException
+	 * @throws OrderBookException if a book failed while processing; journals are left open then,
+	 * so that the next run recovers books from the orders journaled
 	 */
 	public void finishProcessing() throws InterruptedException {
-		for (BlockingQueue<Order> queue : queues.values()) {
-			queue.put(Order.EMPTY);
+		scheduler.finish();
+
+		for (OrderBook book : books) {
+			if (book.journal != null) {
+				book.journal.close();
+				book.journal = null;
+			}
 		}
-		executor.shutdown();
-		executor.awaitTermination(5, TimeUnit.SECONDS);
 	}
-	
+
 	/**
 	 * Print books and their content to given stream.
 	 * @param out
 	 */
 	public void printContent(PrintStream out) {
 		Preconditions.checkArgument(out != null, "OutputStream cannot be null");
-		
+
 		for (OrderBook book : books) {
 			out.println("book: " + book);
 			book.printContent(out);
@@ -67,4 +251,24 @@ public class OrderBookContainer {
 			out.flush();
 		}
 	}
+
+	/** Returns all books in order of their creation. */
+	public Collection<OrderBook> getBooks() {
+		return Collections.unmodifiableCollection(books);
+	}
+
+	/** 
+	 * Returns the latest view of top levels of book with given id, without blocking it. May be called by any thread.
+	 * @return <code>null</code> if there is no such book or books do not publish depth (see {@link OrderBookOptions#isPublishDepth()})
+	 */
+	public BookDepth getDepth(String bookId) {
+		BookRoute route = routes.get(bookId);
+		return route != null ? route.getBook().getDepth() : null;
+	}
+
+	/** Returns book with given id or <code>null</code> if it was neither registered nor received any orders. */
+	OrderBook getBook(String bookId) {
+		BookRoute route = routes.get(bookId);
+		return route != null ? route.getBook() : null;
+	}
 }
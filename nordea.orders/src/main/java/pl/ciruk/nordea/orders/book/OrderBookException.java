@@ -0,0 +1,28 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Indicates that a book failed while processing orders, e.g. because its listener or journal threw. <br/>
+ * A failed book takes no more orders, since it may have been left half way through one.
+ */
+public class OrderBookException extends RuntimeException {
+	
+	/** */
+	private static final long serialVersionUID = 6041875263471930512L;
+
+	public OrderBookException(String message, Throwable cause) {
+		super(message, cause);
+	}
+	
+	/** 
+	 * Adds a failure to given ones, so that a single exception reports failures of several books.
+	 * @param failures Failures reported so far, or <code>null</code>
+	 */
+	static OrderBookException add(OrderBookException failures, String message, Throwable cause) {
+		OrderBookException failure = new OrderBookException(message, cause);
+		if (failures == null) {
+			return failure;
+		}
+		failures.addSuppressed(failure);
+		return failures;
+	}
+}
@@ -0,0 +1,191 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings shared by order books. <br/>
+ * Instances are immutable and should be created with {@link OrderBookOptions.Builder}.
+ */
+public class OrderBookOptions {
+	/** Default price scale, no wall-clock timestamps, neither trades nor market data are reported. */
+	public static final OrderBookOptions DEFAULT = new Builder().build();
+
+	/** Default number of best levels of each side published as market data. */
+	public static final int DEFAULT_DEPTH = 10;
+
+	/** Default number of orders a book running its own loop takes from its queue at once. */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	public static class Builder {
+		private PriceScale priceScale = PriceScale.DEFAULT;
+
+		private boolean timestamps;
+
+		private TradeListener tradeListener = TradeListener.NONE;
+
+		private OrderStorage orderStorage = OrderStorage.HEAP;
+
+		private int expectedOrders;
+
+		private MarketDataListener marketDataListener = MarketDataListener.NONE;
+
+		private int depth = DEFAULT_DEPTH;
+
+		private boolean publishDepth;
+
+		private int batchSize = DEFAULT_BATCH_SIZE;
+
+		public Builder() {
+		}
+
+		/** Scale of order prices, used when prices are presented. */
+		public OrderBookOptions.Builder priceScale(PriceScale priceScale) {
+			this.priceScale = priceScale;
+			return this;
+		}
+
+		/**
+		 * Whether orders should be stamped with {@link System#nanoTime()} when they arrive. <br/>
+		 * Time priority does not depend on it, it is only informative.
+		 */
+		public OrderBookOptions.Builder timestamps(boolean timestamps) {
+			this.timestamps = timestamps;
+			return this;
+		}
+
+		/** Receiver of executions of all books created with these options. */
+		public OrderBookOptions.Builder tradeListener(TradeListener tradeListener) {
+			this.tradeListener = tradeListener;
+			return this;
+		}
+
+		/** Memory books keep resting orders in; {@link OrderStorage#HEAP} by default. */
+		public OrderBookOptions.Builder orderStorage(OrderStorage orderStorage) {
+			this.orderStorage = orderStorage;
+			return this;
+		}
+
+		/** 
+		 * Number of resting orders each book is sized for up front, i.e. the capacity of its order store and id index. 
+		 * Books grow beyond it when needed, which takes a full copy; <code>0</code> (the default) starts small. 
+		 */
+		public OrderBookOptions.Builder expectedOrders(int expectedOrders) {
+			this.expectedOrders = expectedOrders;
+			return this;
+		}
+
+		/** Receiver of market data of all books created with these options. */
+		public OrderBookOptions.Builder marketDataListener(MarketDataListener marketDataListener) {
+			this.marketDataListener = marketDataListener;
+			return this;
+		}
+
+		/** 
+		 * Number of best levels of each side reported to the market data listener and published as {@link BookDepth}; 
+		 * <code>0</code> reports the top of the book only. 
+		 */
+		public OrderBookOptions.Builder depth(int depth) {
+			this.depth = depth;
+			return this;
+		}
+
+		/** 
+		 * Whether books publish an immutable {@link BookDepth} whenever their top levels change, for other threads to query. 
+		 * Each such change then allocates a copy of the top levels. 
+		 */
+		public OrderBookOptions.Builder publishDepth(boolean publishDepth) {
+			this.publishDepth = publishDepth;
+			return this;
+		}
+
+		/** 
+		 * Maximal number of orders a book running its own loop ({@link OrderBook#run()}) takes from its queue at once
+		 * and publishes market data for once. Books of an {@link OrderBookContainer} are batched by the container instead. 
+		 */
+		public OrderBookOptions.Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public OrderBookOptions build() {
+			Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
+			Preconditions.checkArgument(tradeListener != null, "TradeListener cannot be null");
+			Preconditions.checkArgument(orderStorage != null, "OrderStorage cannot be null");
+			Preconditions.checkArgument(expectedOrders >= 0, "Number of expected orders cannot be negative");
+			Preconditions.checkArgument(marketDataListener != null, "MarketDataListener cannot be null");
+			Preconditions.checkArgument(depth >= 0, "Depth cannot be negative");
+			Preconditions.checkArgument(depth > 0 || !publishDepth, "Depth must be positive to be published");
+			Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+
+			return new OrderBookOptions(this);
+		}
+	}
+
+	private final PriceScale priceScale;
+
+	private final boolean timestamps;
+
+	private final TradeListener tradeListener;
+
+	private final OrderStorage orderStorage;
+
+	private final int expectedOrders;
+
+	private final MarketDataListener marketDataListener;
+
+	private final int depth;
+
+	private final boolean publishDepth;
+
+	private final int batchSize;
+
+	private OrderBookOptions(OrderBookOptions.Builder builder) {
+		this.priceScale = builder.priceScale;
+		this.timestamps = builder.timestamps;
+		this.tradeListener = builder.tradeListener;
+		this.orderStorage = builder.orderStorage;
+		this.expectedOrders = builder.expectedOrders;
+		this.marketDataListener = builder.marketDataListener;
+		this.depth = builder.depth;
+		this.publishDepth = builder.publishDepth;
+		this.batchSize = builder.batchSize;
+	}
+
+	public PriceScale getPriceScale() {
+		return priceScale;
+	}
+
+	public boolean isTimestamps() {
+		return timestamps;
+	}
+
+	public TradeListener getTradeListener() {
+		return tradeListener;
+	}
+
+	public OrderStorage getOrderStorage() {
+		return orderStorage;
+	}
+
+	public int getExpectedOrders() {
+		return expectedOrders;
+	}
+
+	public MarketDataListener getMarketDataListener() {
+		return marketDataListener;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public boolean isPublishDepth() {
+		return publishDepth;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+}
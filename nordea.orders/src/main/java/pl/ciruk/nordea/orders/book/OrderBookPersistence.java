@@ -0,0 +1,143 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import pl.ciruk.nordea.orders.metrics.BookMetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps order books recoverable across restarts. <br/>
+ * Every book gets a journal in a common directory, to which each order dispatched to the book is appended before it is applied,
+ * and a snapshot of its resting orders, rewritten every given number of orders (see {@link BookJournal}).
+ * A book is recovered by loading its snapshot and replaying only the part of the journal written after it,
+ * so recovery time depends on the snapshot interval rather than on the length of the journal. <br/>
+ * An {@link OrderBookContainer} given an instance recovers all books found in the directory when it is created.
+ * Only orders dispatched through the container are journaled. Instances should be created with {@link OrderBookPersistence.Builder}.
+ */
+public class OrderBookPersistence {
+	/** Default number of orders forced to the disk at once. */
+	public static final int DEFAULT_GROUP_COMMIT = 1024;
+
+	/** Default number of orders between snapshots of a book. */
+	public static final long DEFAULT_SNAPSHOT_INTERVAL = 1000000;
+
+	static final String JOURNAL_SUFFIX = ".journal";
+
+	static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	public static class Builder {
+		private File directory;
+
+		private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUP;
+
+		private int groupCommit = DEFAULT_GROUP_COMMIT;
+
+		private long snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+		public Builder() {
+		}
+
+		/** Directory journals and snapshots are kept in; created if missing. */
+		public OrderBookPersistence.Builder directory(File directory) {
+			this.directory = directory;
+			return this;
+		}
+
+		/** When journals are forced to the disk; {@link FsyncPolicy#GROUP} by default. */
+		public OrderBookPersistence.Builder fsyncPolicy(FsyncPolicy fsyncPolicy) {
+			this.fsyncPolicy = fsyncPolicy;
+			return this;
+		}
+
+		/** Number of orders a book journals before forcing them to the disk at once, with {@link FsyncPolicy#GROUP}. */
+		public OrderBookPersistence.Builder groupCommit(int groupCommit) {
+			this.groupCommit = groupCommit;
+			return this;
+		}
+
+		/** Number of orders a book processes between its snapshots. */
+		public OrderBookPersistence.Builder snapshotInterval(long snapshotInterval) {
+			this.snapshotInterval = snapshotInterval;
+			return this;
+		}
+
+		public OrderBookPersistence build() {
+			Preconditions.checkArgument(directory != null, "Directory cannot be null");
+			Preconditions.checkArgument(fsyncPolicy != null, "Fsync policy cannot be null");
+			Preconditions.checkArgument(groupCommit > 0, "Group commit must be positive");
+			Preconditions.checkArgument(snapshotInterval > 0, "Snapshot interval must be positive");
+			Preconditions.checkArgument(directory.isDirectory() || directory.mkdirs(), "Cannot create directory %s", directory);
+
+			return new OrderBookPersistence(this);
+		}
+	}
+
+	private final File directory;
+
+	final FsyncPolicy fsyncPolicy;
+
+	final int groupCommit;
+
+	final long snapshotInterval;
+
+	private OrderBookPersistence(OrderBookPersistence.Builder builder) {
+		this.directory = builder.directory;
+		this.fsyncPolicy = builder.fsyncPolicy;
+		this.groupCommit = builder.groupCommit;
+		this.snapshotInterval = builder.snapshotInterval;
+	}
+
+	/** Returns ids of all books which have a journal in the directory, sorted by file name. */
+	public List<String> getBookIds() {
+		String[] journals = directory.list();
+		Arrays.sort(journals);
+
+		List<String> bookIds = Lists.newArrayList();
+		for (String journal : journals) {
+			if (journal.endsWith(JOURNAL_SUFFIX)) {
+				bookIds.add(decode(journal.substring(0, journal.length() - JOURNAL_SUFFIX.length())));
+			}
+		}
+		return bookIds;
+	}
+
+	/**
+	 * Creates a book with given id, recovering its state if it was journaled before, and attaches a journal to it.
+	 * @throws JournalException if the book's journal or snapshot cannot be read or written
+	 */
+	OrderBook open(String bookId, BlockingQueue<Order> queue, OrderBookOptions options, BookMetrics metrics) {
+		OrderBook book = new OrderBook(bookId, queue, options, metrics);
+		String fileName = encode(bookId);
+		book.journal = BookJournal.open(book,
+				new File(directory, fileName + JOURNAL_SUFFIX).toPath(),
+				new File(directory, fileName + SNAPSHOT_SUFFIX).toPath(),
+				this);
+		return book;
+	}
+
+	/** Book ids may contain characters which are not allowed in file names. */
+	private static String encode(String bookId) {
+		try {
+			return URLEncoder.encode(bookId, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String decode(String fileName) {
+		try {
+			return URLDecoder.decode(fileName, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
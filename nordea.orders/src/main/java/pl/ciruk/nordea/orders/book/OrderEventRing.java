@@ -0,0 +1,121 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounded single-producer/single-consumer ring of order events. <br/>
+ * An event is kept as primitives in preallocated columns, together with the book it is addressed to,
+ * so neither publishing nor consuming an event allocates. The time an event was dispatched at is kept only if asked for.
+ * Producer and consumer coordinate with ordered writes only; no locks are involved.
+ * Exactly one thread may call {@link #offer} and exactly one thread may call {@link #drain}.
+ */
+class OrderEventRing {
+	/** Receives consumed events. */
+	interface Handler {
+		/**
+		 * @param book Book the event is addressed to; <code>null</code> for the end of processing
+		 * @param operationType Type of order; <code>null</code> for the end of processing
+		 * @param dispatched Time the event was dispatched at; <code>0</code> unless the ring keeps it
+		 */
+		void onEvent(OrderBook book, OperationType operationType, long orderId, long price, long volume, long dispatched);
+	}
+
+	/** Counter padded against false sharing with the other side's counter. */
+	@SuppressWarnings("serial")
+	static final class Sequence extends AtomicLong {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	private final int mask;
+
+	private final OrderBook[] books;
+
+	private final OperationType[] operationTypes;
+
+	private final long[] orderIds;
+
+	private final long[] prices;
+
+	private final long[] volumes;
+
+	/** <code>null</code> unless the ring keeps times of dispatch. */
+	private final long[] dispatchTimes;
+
+	/** Next position to be written. Advanced by the producer. */
+	private final Sequence tail = new Sequence();
+
+	/** Next position to be read. Advanced by the consumer. */
+	private final Sequence head = new Sequence();
+
+	/** Producer's last known value of {@link #head}, saves reading the consumer's counter on every offer. */
+	private long headCache;
+
+	OrderEventRing(int capacity) {
+		this(capacity, false);
+	}
+
+	/** @param timestamps Whether to keep the time each event was dispatched at */
+	OrderEventRing(int capacity, boolean timestamps) {
+		Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a power of two");
+
+		mask = capacity - 1;
+		books = new OrderBook[capacity];
+		operationTypes = new OperationType[capacity];
+		orderIds = new long[capacity];
+		prices = new long[capacity];
+		volumes = new long[capacity];
+		dispatchTimes = timestamps ? new long[capacity] : null;
+	}
+
+	/**
+	 * Publishes an event, if there is room for it.
+	 * @return <code>false</code> if the ring is full
+	 */
+	boolean offer(OrderBook book, OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		long position = tail.get();
+		if (position - headCache > mask) {
+			headCache = head.get();
+			if (position - headCache > mask) {
+				return false;
+			}
+		}
+
+		int index = (int) position & mask;
+		books[index] = book;
+		operationTypes[index] = operationType;
+		orderIds[index] = orderId;
+		prices[index] = price;
+		volumes[index] = volume;
+		if (dispatchTimes != null) {
+			dispatchTimes[index] = dispatched;
+		}
+
+		tail.lazySet(position + 1);
+		return true;
+	}
+
+	/**
+	 * Passes up to given number of published events to the handler.
+	 * @return Number of consumed events
+	 */
+	int drain(Handler handler, int limit) {
+		long position = head.get();
+		int available = (int) Math.min(tail.get() - position, limit);
+
+		for (int i = 0; i < available; i++) {
+			int index = (int) (position + i) & mask;
+			OrderBook book = books[index];
+			books[index] = null;
+
+			long dispatched = dispatchTimes != null ? dispatchTimes[index] : 0L;
+			handler.onEvent(book, operationTypes[index], orderIds[index], prices[index], volumes[index], dispatched);
+		}
+
+		head.lazySet(position + available);
+		return available;
+	}
+}
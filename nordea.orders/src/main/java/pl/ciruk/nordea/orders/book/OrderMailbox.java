@@ -0,0 +1,119 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Unbounded multi-producer/single-consumer mailbox of order events. <br/>
+ * As in {@link OrderEventRing}, events are kept as primitives in columns, so once the columns have grown
+ * to the largest burst, neither posting nor consuming an event allocates.
+ * Producers append to one set of columns under a lock. The consumer reads another set without it,
+ * and swaps the two once it has read everything, so it takes the lock once per batch instead of once per event.
+ * Exactly one thread at a time may call {@link #drain}.
+ */
+class OrderMailbox {
+	/** Receives consumed events. */
+	interface Handler {
+		/**
+		 * @param operationType Type of order; <code>null</code> for the end of processing
+		 * @param dispatched Time the event was dispatched at, or <code>0</code>
+		 */
+		void onOrder(OperationType operationType, long orderId, long price, long volume, long dispatched);
+	}
+
+	/** Events in arrival order. */
+	private static final class Columns {
+		private OperationType[] operationTypes;
+
+		private long[] orderIds;
+
+		private long[] prices;
+
+		private long[] volumes;
+
+		private long[] dispatchTimes;
+
+		private int size;
+
+		Columns(int capacity) {
+			operationTypes = new OperationType[capacity];
+			orderIds = new long[capacity];
+			prices = new long[capacity];
+			volumes = new long[capacity];
+			dispatchTimes = new long[capacity];
+		}
+
+		void add(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+			if (size == orderIds.length) {
+				int capacity = size * 2;
+				operationTypes = Arrays.copyOf(operationTypes, capacity);
+				orderIds = Arrays.copyOf(orderIds, capacity);
+				prices = Arrays.copyOf(prices, capacity);
+				volumes = Arrays.copyOf(volumes, capacity);
+				dispatchTimes = Arrays.copyOf(dispatchTimes, capacity);
+			}
+			operationTypes[size] = operationType;
+			orderIds[size] = orderId;
+			prices[size] = price;
+			volumes[size] = volume;
+			dispatchTimes[size] = dispatched;
+			size++;
+		}
+	}
+
+	/** Written by producers. Guarded by <code>this</code>. */
+	private Columns incoming;
+
+	/** Read by the consumer. Replaced under the lock only. */
+	private Columns outgoing;
+
+	/** Next event of {@link #outgoing} to be read. Used by the consumer only. */
+	private int read;
+
+	OrderMailbox(int capacity) {
+		Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+
+		incoming = new Columns(capacity);
+		outgoing = new Columns(capacity);
+	}
+
+	/** Appends an event. Never blocks on the consumer, which holds the lock only to swap columns. */
+	synchronized void offer(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+		incoming.add(operationType, orderId, price, volume, dispatched);
+	}
+
+	/**
+	 * Passes up to given number of events to the handler, in the order they were offered.
+	 * @return Number of consumed events
+	 */
+	int drain(Handler handler, int limit) {
+		if (read == outgoing.size) {
+			swap();
+		}
+
+		Columns events = outgoing;
+		int available = Math.min(events.size - read, limit);
+		for (int i = read; i < read + available; i++) {
+			handler.onOrder(events.operationTypes[i], events.orderIds[i], events.prices[i], events.volumes[i], events.dispatchTimes[i]);
+		}
+		read += available;
+		return available;
+	}
+
+	/** Whether there is no event left to drain. */
+	synchronized boolean isEmpty() {
+		return read == outgoing.size && incoming.size == 0;
+	}
+
+	/** Hands the columns read out back to producers and takes the ones they filled. */
+	private synchronized void swap() {
+		Columns events = incoming;
+		incoming = outgoing;
+		incoming.size = 0;
+		outgoing = events;
+		read = 0;
+	}
+}
@@ -0,0 +1,25 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Memory books keep their resting orders in. <br/>
+ * Either way orders are stored as columns of primitives addressed by slot, not as objects.
+ */
+public enum OrderStorage {
+	/** Primitive arrays on the Java heap. */
+	HEAP {
+		@Override
+		OrderStore create(int capacity) {
+			return new HeapOrderStore(capacity);
+		}
+	},
+	/** Direct buffers outside of the Java heap, for books too deep to be kept on it. */
+	DIRECT {
+		@Override
+		OrderStore create(int capacity) {
+			return new DirectOrderStore(capacity);
+		}
+	};
+
+	/** Creates an empty store with room for given number of orders. */
+	abstract OrderStore create(int capacity);
+}
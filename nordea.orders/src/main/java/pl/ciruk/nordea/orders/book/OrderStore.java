@@ -0,0 +1,151 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Resting orders of a single book kept as columns of primitives. <br/>
+ * An order lives in a slot, i.e. an <code>int</code> index shared by all columns,
+ * so price levels and the id index refer to orders by slot instead of holding objects.
+ * Besides the order itself, a slot holds links to its neighbours within its price level and the index of the level,
+ * so that a price level is a doubly linked list threaded through the store.
+ * Slots of orders that left the book are chained into a free list through the id column
+ * and handed out again before the store grows.
+ * Implementations differ only in where columns are kept, see {@link OrderStorage}.
+ * Used only by the book's thread, so it is not thread-safe.
+ */
+abstract class OrderStore {
+	/** Marks absence of a slot. */
+	static final int NO_SLOT = -1;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+	private int capacity;
+
+	/** Number of slots ever handed out; slots above it were never used. */
+	private int used;
+
+	/** Number of slots holding an order. */
+	private int size;
+
+	/** First slot of the free list. */
+	private int freeHead = NO_SLOT;
+
+	protected OrderStore(int capacity) {
+		Preconditions.checkArgument(capacity >= 0, "Capacity cannot be negative");
+
+		this.capacity = Math.max(capacity, MIN_CAPACITY);
+	}
+
+	/** Returns number of slots columns have to be allocated for. */
+	protected int capacity() {
+		return capacity;
+	}
+
+	/** Puts an order into a free slot, growing the store if there is none. Returns the slot. */
+	int add(long id, OperationType operationType, long price, long volume, long sequence, long timestamp) {
+		int slot;
+		if (freeHead != NO_SLOT) {
+			slot = freeHead;
+			freeHead = (int) getId(slot);
+		} else {
+			if (used == capacity) {
+				Preconditions.checkState(capacity < maxCapacity(), "Order store is full");
+
+				int newCapacity = (int) Math.min(2L * capacity, maxCapacity());
+				grow(newCapacity);
+				capacity = newCapacity;
+			}
+			slot = used++;
+		}
+		size++;
+
+		setId(slot, id);
+		setOperationType(slot, operationType);
+		setPrice(slot, price);
+		setVolume(slot, volume);
+		setSequence(slot, sequence);
+		setTimestamp(slot, timestamp);
+		return slot;
+	}
+
+	/** Releases given slot. Its order must not be accessed afterwards. */
+	void remove(int slot) {
+		setId(slot, freeHead);
+		freeHead = slot;
+		size--;
+	}
+
+	/** Number of orders in the store. */
+	int size() {
+		return size;
+	}
+
+	/** Copies order from given slot into a new, detached instance. */
+	Order toOrder(int slot) {
+		Order order = new Order.Builder()
+				.id(getId(slot))
+				.operationType(getOperationType(slot))
+				.price(getPrice(slot))
+				.volume(getVolume(slot))
+				.build();
+		order.arrived(getSequence(slot), getTimestamp(slot));
+		return order;
+	}
+
+	OperationType getOperationType(int slot) {
+		return OPERATION_TYPES[getOperationTypeOrdinal(slot)];
+	}
+
+	void setOperationType(int slot, OperationType operationType) {
+		setOperationTypeOrdinal(slot, (byte) operationType.ordinal());
+	}
+
+	/** Largest number of slots the implementation can hold. */
+	protected abstract int maxCapacity();
+
+	/** Enlarges columns to given number of slots, keeping their content. */
+	protected abstract void grow(int newCapacity);
+
+	abstract long getId(int slot);
+
+	abstract void setId(int slot, long id);
+
+	abstract long getPrice(int slot);
+
+	abstract void setPrice(int slot, long price);
+
+	abstract long getVolume(int slot);
+
+	abstract void setVolume(int slot, long volume);
+
+	abstract long getSequence(int slot);
+
+	abstract void setSequence(int slot, long sequence);
+
+	abstract long getTimestamp(int slot);
+
+	abstract void setTimestamp(int slot, long timestamp);
+
+	/** Previous, i.e. older, order at the same price level or {@link #NO_SLOT}. */
+	abstract int getPrevious(int slot);
+
+	abstract void setPrevious(int slot, int previous);
+
+	/** Next, i.e. younger, order at the same price level or {@link #NO_SLOT}. */
+	abstract int getNext(int slot);
+
+	abstract void setNext(int slot, int next);
+
+	/** Index of the price level the order rests at, unique within its side. */
+	abstract int getLevel(int slot);
+
+	abstract void setLevel(int slot, int level);
+
+	protected abstract byte getOperationTypeOrdinal(int slot);
+
+	protected abstract void setOperationTypeOrdinal(int slot, byte ordinal);
+}
@@ -0,0 +1,284 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import com.google.common.collect.Ordering;
+
+/**
+ * One side of an order book stored as price levels. <br/>
+ * Levels are kept in a sorted map, best price first, so a level is found in O(log L)
+ * where L is the number of distinct prices. Within a level orders are queued FIFO
+ * by their slots in the book's {@link OrderStore}. <br/>
+ * Levels are also numbered, and the store records the number of each order's level,
+ * so removing an order by its slot needs neither a price lookup nor a scan. <br/>
+ * Optionally the ladder collects levels changed since it was last asked for them,
+ * so that market data is derived from what changed rather than from the whole side.
+ */
+class PriceLadder {
+	/** Higher price is better. */
+	static PriceLadder forBuys(OrderStore store) {
+		return new PriceLadder(Ordering.<Long>natural().reverse(), store);
+	}
+
+	/** Lower price is better. */
+	static PriceLadder forSells(OrderStore store) {
+		return new PriceLadder(Ordering.<Long>natural(), store);
+	}
+
+	private final NavigableMap<Long, PriceLevel> levels;
+
+	private final OrderStore store;
+
+	/** Levels by their indices; <code>null</code> for unused indices. */
+	private PriceLevel[] levelsByIndex = new PriceLevel[16];
+
+	/** Indices of dropped levels, to be given to new levels first. */
+	private int[] freeIndices = new int[16];
+
+	private int freeIndexCount;
+
+	/** Number of indices ever given to levels. */
+	private int usedIndices;
+
+	/** Level with the best price, cached so that matching does not have to look it up. */
+	private PriceLevel best;
+
+	private int size;
+
+	/** Whether changed levels are collected. */
+	private boolean tracking;
+
+	/** Levels changed since {@link #clearChanges()}, including dropped ones. */
+	private PriceLevel[] changed = new PriceLevel[16];
+
+	private int changedCount;
+
+	/** Whether a level was created or dropped since {@link #clearChanges()}, which may move other levels in or out of the top. */
+	private boolean levelsChanged;
+
+	/** Orders are copied out of the store as they are read. */
+	private final List<Order> view = new AbstractList<Order>() {
+		@Override
+		public Order get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+
+			for (PriceLevel level : levels.values()) {
+				if (index < level.size()) {
+					int slot = level.peek();
+					for (int i = 0; i < index; i++) {
+						slot = level.next(slot);
+					}
+					return store.toOrder(slot);
+				}
+				index -= level.size();
+			}
+			throw new IllegalStateException("Ladder size does not match its levels");
+		}
+
+		@Override
+		public Iterator<Order> iterator() {
+			return new Iterator<Order>() {
+				private final Iterator<PriceLevel> remainingLevels = levels.values().iterator();
+
+				private PriceLevel level;
+
+				private int slot = OrderStore.NO_SLOT;
+
+				@Override
+				public boolean hasNext() {
+					while (slot == OrderStore.NO_SLOT && remainingLevels.hasNext()) {
+						level = remainingLevels.next();
+						slot = level.peek();
+					}
+					return slot != OrderStore.NO_SLOT;
+				}
+
+				@Override
+				public Order next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					Order order = store.toOrder(slot);
+					slot = level.next(slot);
+					return order;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	};
+
+	private PriceLadder(Comparator<Long> priceOrder, OrderStore store) {
+		this.levels = new TreeMap<>(priceOrder);
+		this.store = store;
+	}
+
+	/** Queues order in given slot at the end of its price level. */
+	void add(int slot) {
+		long price = store.getPrice(slot);
+		PriceLevel level = levels.get(price);
+		if (level == null) {
+			level = new PriceLevel(price, nextIndex(), store);
+			levelsByIndex[level.getIndex()] = level;
+			levels.put(level.getKey(), level);
+
+			if (best == null || levels.comparator().compare(level.getKey(), best.getKey()) < 0) {
+				best = level;
+			}
+			levelsChanged = true;
+		}
+		level.add(slot);
+		size++;
+		markChanged(level);
+	}
+
+	/** Removes order in given slot, which has to rest on this side, from its price level in constant time. Empty levels are dropped. */
+	void remove(int slot) {
+		PriceLevel level = levelsByIndex[store.getLevel(slot)];
+		level.remove(slot);
+		markChanged(level);
+		if (level.isEmpty()) {
+			removeLevel(level);
+		}
+		size--;
+	}
+
+	/** Changes volume of order in given slot, which has to rest on this side, keeping its place. */
+	void setVolume(int slot, long volume) {
+		PriceLevel level = levelsByIndex[store.getLevel(slot)];
+		level.setVolume(slot, volume);
+		markChanged(level);
+	}
+
+	/** Returns the level with the best price or <code>null</code> if the ladder is empty. */
+	PriceLevel best() {
+		return best;
+	}
+
+	/** Removes the first order of the best level and returns its slot, or {@link OrderStore#NO_SLOT} if the ladder is empty. */
+	int pollBest() {
+		PriceLevel level = best;
+		if (level == null) {
+			return OrderStore.NO_SLOT;
+		}
+
+		int slot = level.poll();
+		markChanged(level);
+		if (level.isEmpty()) {
+			removeLevel(level);
+		}
+		size--;
+		return slot;
+	}
+
+	/** Drops given empty level. Looks up the next best level without allocating map entries. */
+	private void removeLevel(PriceLevel level) {
+		levels.remove(level.getKey());
+		if (level == best) {
+			best = levels.isEmpty() ? null : levels.get(levels.firstKey());
+		}
+
+		levelsByIndex[level.getIndex()] = null;
+		freeIndices[freeIndexCount++] = level.getIndex();
+		levelsChanged = true;
+	}
+
+	/** Adds given level to the changed ones, once. */
+	private void markChanged(PriceLevel level) {
+		if (tracking && !level.changed) {
+			if (changedCount == changed.length) {
+				changed = Arrays.copyOf(changed, changedCount * 2);
+			}
+			level.changed = true;
+			changed[changedCount++] = level;
+		}
+	}
+
+	/** 
+	 * Starts or stops collecting changed levels. 
+	 * Starting treats the whole ladder as changed, since nothing was collected before. 
+	 */
+	void trackChanges(boolean tracking) {
+		clearChanges();
+		this.tracking = tracking;
+		this.levelsChanged = tracking;
+	}
+
+	int changedCount() {
+		return changedCount;
+	}
+
+	/** Returns changed level with given number, from <code>0</code> to {@link #changedCount()}. It may have been dropped since. */
+	PriceLevel changed(int index) {
+		return changed[index];
+	}
+
+	boolean levelsChanged() {
+		return levelsChanged;
+	}
+
+	/** Forgets changed levels. */
+	void clearChanges() {
+		for (int i = 0; i < changedCount; i++) {
+			changed[i].changed = false;
+			changed[i] = null;
+		}
+		changedCount = 0;
+		levelsChanged = false;
+	}
+
+	/** Returns the level following given one, i.e. with the next worse price, or <code>null</code> if it is the worst. */
+	PriceLevel next(PriceLevel level) {
+		// Looks up keys rather than entries, which would be copied
+		Long price = levels.higherKey(level.getKey());
+		return price != null ? levels.get(price) : null;
+	}
+
+	/** Returns an index for a new level, reusing indices of dropped levels first. */
+	private int nextIndex() {
+		if (freeIndexCount > 0) {
+			return freeIndices[--freeIndexCount];
+		}
+		if (usedIndices == levelsByIndex.length) {
+			// Both grow together, so that dropping a level never allocates
+			levelsByIndex = Arrays.copyOf(levelsByIndex, usedIndices * 2);
+			freeIndices = Arrays.copyOf(freeIndices, usedIndices * 2);
+		}
+		return usedIndices++;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/** Price levels from the best price on; not to be modified while iterated. */
+	Iterable<PriceLevel> levels() {
+		return levels.values();
+	}
+
+	/** Read-only view of all orders in price-time priority. */
+	List<Order> asList() {
+		return view;
+	}
+}
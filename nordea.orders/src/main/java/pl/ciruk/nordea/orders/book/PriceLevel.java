@@ -0,0 +1,127 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * All orders resting at a single price. <br/>
+ * Orders are kept in arrival order, so the head of the level is the one
+ * to be matched first. Orders are referred to by their slots in the book's {@link OrderStore}
+ * and linked with each other through the store's previous/next columns,
+ * so any of them is unlinked in constant time. <br/>
+ * The level keeps the total volume of its orders, so it is known without walking them.
+ */
+class PriceLevel {
+	/** Price in ticks, boxed once to serve as the key of the level in its ladder. */
+	private final Long price;
+
+	/** Index of the level within its ladder, recorded in the store for every order of the level. */
+	private final int index;
+
+	private final OrderStore store;
+
+	/** Slot of the oldest order. */
+	private int head = OrderStore.NO_SLOT;
+
+	/** Slot of the youngest order. */
+	private int tail = OrderStore.NO_SLOT;
+
+	private int size;
+
+	/** Sum of volumes of all orders at this level. */
+	private long volume;
+
+	/** Whether the level is on the ladder's list of changed levels. */
+	boolean changed;
+
+	/** Volume market data subscribers were last told about; <code>0</code> if the level was not published. */
+	long publishedVolume;
+
+	/** Number of orders market data subscribers were last told about. */
+	int publishedOrders;
+
+	PriceLevel(long price, int index, OrderStore store) {
+		this.price = price;
+		this.index = index;
+		this.store = store;
+	}
+
+	/** Appends given slot to the end of the queue. */
+	void add(int slot) {
+		store.setPrevious(slot, tail);
+		store.setNext(slot, OrderStore.NO_SLOT);
+		store.setLevel(slot, index);
+		if (tail == OrderStore.NO_SLOT) {
+			head = slot;
+		} else {
+			store.setNext(tail, slot);
+		}
+		tail = slot;
+		size++;
+		volume += store.getVolume(slot);
+	}
+
+	/** Returns slot of the oldest order at this level or {@link OrderStore#NO_SLOT} if the level is empty. */
+	int peek() {
+		return head;
+	}
+
+	/** Removes and returns slot of the oldest order at this level. */
+	int poll() {
+		int slot = head;
+		if (slot != OrderStore.NO_SLOT) {
+			remove(slot);
+		}
+		return slot;
+	}
+
+	/** Unlinks given slot, which has to belong to this level, keeping the order of the others. */
+	void remove(int slot) {
+		int previous = store.getPrevious(slot);
+		int next = store.getNext(slot);
+		if (previous == OrderStore.NO_SLOT) {
+			head = next;
+		} else {
+			store.setNext(previous, next);
+		}
+		if (next == OrderStore.NO_SLOT) {
+			tail = previous;
+		} else {
+			store.setPrevious(next, previous);
+		}
+		size--;
+		volume -= store.getVolume(slot);
+	}
+
+	/** Changes volume of order in given slot, which has to belong to this level, keeping its place. */
+	void setVolume(int slot, long volume) {
+		this.volume += volume - store.getVolume(slot);
+		store.setVolume(slot, volume);
+	}
+
+	/** Returns slot following given one at this level or {@link OrderStore#NO_SLOT} if it is the youngest. */
+	int next(int slot) {
+		return store.getNext(slot);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long getVolume() {
+		return volume;
+	}
+
+	int getIndex() {
+		return index;
+	}
+
+	long getPrice() {
+		return price;
+	}
+
+	Long getKey() {
+		return price;
+	}
+}
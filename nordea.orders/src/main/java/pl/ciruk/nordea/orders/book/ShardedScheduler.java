@@ -0,0 +1,82 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Assigns books to a fixed number of {@link BookShard}s by hash of their ids. <br/>
+ * Each shard runs on its own thread and is fed through a single-producer ring,
+ * so orders must be dispatched from a single thread.
+ */
+class ShardedScheduler implements BookScheduler {
+	private final BookShard[] shards;
+
+	private final Thread[] threads;
+
+	/** @param timestamps Whether rings carry the time orders are dispatched at, for instrumented books */
+	ShardedScheduler(int numberOfShards, int ringSize, WaitStrategy waitStrategy, int batchSize, boolean timestamps) {
+		shards = new BookShard[numberOfShards];
+		threads = new Thread[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			shards[i] = new BookShard("book-shard-" + i, ringSize, waitStrategy, batchSize, timestamps);
+			threads[i] = new Thread(shards[i], shards[i].getName());
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	@Override
+	public BookRoute route(OrderBook book) {
+		int index = (book.id.hashCode() & Integer.MAX_VALUE) % shards.length;
+		return new ShardRoute(book, shards[index]);
+	}
+
+	@Override
+	public void finish() throws InterruptedException {
+		for (BookShard shard : shards) {
+			shard.publishEnd();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		OrderBookException failures = null;
+		for (BookShard shard : shards) {
+			if (shard.getFailure() != null) {
+				failures = OrderBookException.add(failures, "Shard " + shard.getName() + " failed", shard.getFailure());
+			}
+		}
+		if (failures != null) {
+			throw failures;
+		}
+	}
+
+	private static class ShardRoute implements BookRoute {
+		private final OrderBook book;
+
+		private final BookShard shard;
+
+		ShardRoute(OrderBook book, BookShard shard) {
+			this.book = book;
+			this.shard = shard;
+		}
+
+		@Override
+		public OrderBook getBook() {
+			return book;
+		}
+
+		/** The order is passed as primitives, the instance itself is not handed over. */
+		@Override
+		public void post(Order order) {
+			// End of processing is signalled per shard, see ShardedScheduler.finish()
+			if (order != Order.EMPTY) {
+				post(order.getOperationType(), order.getId(), order.getPrice(), order.getVolume(), order.dispatched);
+			}
+		}
+
+		@Override
+		public void post(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+			shard.publish(book, operationType, orderId, price, volume, dispatched);
+		}
+	}
+}
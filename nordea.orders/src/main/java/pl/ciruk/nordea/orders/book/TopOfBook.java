@@ -0,0 +1,70 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Best bid and ask of a book with the total volume resting at each. <br/>
+ * A side without orders has volume of <code>0</code> and an undefined price.
+ * Each book keeps a single instance and refills it whenever it changes. See {@link MarketDataListener#onTopOfBook(TopOfBook)}.
+ */
+public class TopOfBook {
+	private final String bookId;
+
+	private long bidPrice;
+
+	private long bidVolume;
+
+	private long askPrice;
+
+	private long askVolume;
+
+	TopOfBook(String bookId) {
+		this.bookId = bookId;
+	}
+
+	/** 
+	 * Sets given best levels. 
+	 * @return Whether anything changed
+	 */
+	boolean fill(long bidPrice, long bidVolume, long askPrice, long askVolume) {
+		boolean changed = bidPrice != this.bidPrice || bidVolume != this.bidVolume || askPrice != this.askPrice || askVolume != this.askVolume;
+		this.bidPrice = bidPrice;
+		this.bidVolume = bidVolume;
+		this.askPrice = askPrice;
+		this.askVolume = askVolume;
+		return changed;
+	}
+
+	public String getBookId() {
+		return bookId;
+	}
+
+	public boolean hasBid() {
+		return bidVolume > 0;
+	}
+
+	public boolean hasAsk() {
+		return askVolume > 0;
+	}
+
+	/** Price of the best bid in ticks. */
+	public long getBidPrice() {
+		return bidPrice;
+	}
+
+	public long getBidVolume() {
+		return bidVolume;
+	}
+
+	/** Price of the best ask in ticks. */
+	public long getAskPrice() {
+		return askPrice;
+	}
+
+	public long getAskVolume() {
+		return askVolume;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s] %d@%d / %d@%d", bookId, bidVolume, bidPrice, askVolume, askPrice);
+	}
+}
@@ -0,0 +1,73 @@
+package pl.ciruk.nordea.orders.book;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Execution of an incoming (aggressor) order against an order resting in the book (passive). <br/>
+ * Each book keeps a single instance and refills it for every trade, 
+ * so reporting a trade does not allocate. See {@link TradeListener#onTrade(TradeEvent)}.
+ */
+public class TradeEvent {
+	private final String bookId;
+
+	private long sequence;
+
+	private long aggressorId;
+
+	private long passiveId;
+
+	private OperationType aggressorOperationType;
+
+	private long price;
+
+	private long volume;
+
+	TradeEvent(String bookId) {
+		this.bookId = bookId;
+	}
+
+	void fill(long sequence, long aggressorId, OperationType aggressorOperationType, long passiveId, long price, long volume) {
+		this.sequence = sequence;
+		this.aggressorId = aggressorId;
+		this.passiveId = passiveId;
+		this.aggressorOperationType = aggressorOperationType;
+		this.price = price;
+		this.volume = volume;
+	}
+
+	public String getBookId() {
+		return bookId;
+	}
+
+	/** Number of this trade within its book, starting from 1. */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getAggressorId() {
+		return aggressorId;
+	}
+
+	public long getPassiveId() {
+		return passiveId;
+	}
+
+	/** Side of the aggressor, i.e. {@link OperationType#BUY} when a buy order lifted resting sells. */
+	public OperationType getAggressorOperationType() {
+		return aggressorOperationType;
+	}
+
+	/** Execution price in ticks; always the price of the passive order. */
+	public long getPrice() {
+		return price;
+	}
+
+	public long getVolume() {
+		return volume;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s #%d] %s %d x %d@%d vs %d", bookId, sequence, aggressorOperationType, aggressorId, volume, price, passiveId);
+	}
+}
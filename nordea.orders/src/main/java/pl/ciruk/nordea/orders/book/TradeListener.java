@@ -0,0 +1,21 @@
+package pl.ciruk.nordea.orders.book;
+
+/**
+ * Receives executions from the matching loop of an {@link OrderBook}. <br/>
+ * Called on the thread that processes the book, once per match. 
+ * A listener shared by many books may be called by several threads at once.
+ */
+public interface TradeListener {
+	/** Ignores all trades. Books skip preparing events for it altogether. */
+	TradeListener NONE = new TradeListener() {
+		@Override
+		public void onTrade(TradeEvent trade) {
+		}
+	};
+
+	/**
+	 * Notifies of a single execution. <br/>
+	 * The event is reused by the book, so it must not be kept after this method returns.
+	 */
+	void onTrade(TradeEvent trade);
+}
@@ -0,0 +1,35 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it has nothing to consume or no room to produce. <br/>
+ * Trades CPU usage for hand-off latency.
+ */
+public enum WaitStrategy {
+	/** Keeps spinning. Lowest latency, burns a whole core per waiting thread. */
+	BUSY_SPIN {
+		@Override
+		void idle() {
+		}
+	},
+	/** Gives up the rest of the time slice, so that other threads can run on the core. */
+	YIELD {
+		@Override
+		void idle() {
+			Thread.yield();
+		}
+	},
+	/** Sleeps for a short while. Cheapest for the CPU, adds tens of microseconds of latency. */
+	PARK {
+		@Override
+		void idle() {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	};
+
+	private static final long PARK_NANOS = 10000;
+
+	/** Called each time the thread finds nothing to do. */
+	abstract void idle();
+}
@@ -0,0 +1,76 @@
+package pl.ciruk.nordea.orders.generator;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.BinaryFeed;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Writes orders as records of {@link BinaryFeed}. <br/>
+ * Books get indices in order of their first appearance; a book's record is written just before its first order.
+ */
+class BinaryFeedWriter extends FeedWriter {
+	/** Indices of books written so far. */
+	private final Map<String, Integer> books = Maps.newHashMap();
+
+	/** Book of the previous order, saves a lookup for runs of orders of the same book. */
+	private String lastBookId;
+
+	private int lastBook;
+
+	BinaryFeedWriter(WritableByteChannel channel, PriceScale priceScale, int bufferSize) {
+		super(channel, bufferSize);
+
+		putFixedLong(BinaryFeed.MAGIC);
+		putFixedInt(BinaryFeed.VERSION);
+		putFixedInt(priceScale.getDecimals());
+		putZeros(BinaryFeed.RECORD_SIZE - BinaryFeed.HEADER_DECIMALS - 4);
+	}
+
+	@Override
+	public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+		int book = book(bookId);
+
+		putByte(BinaryFeed.type(operationType));
+		putZeros(BinaryFeed.BOOK - 1);
+		putFixedInt(book);
+		putFixedLong(orderId);
+		putFixedLong(price);
+		putFixedLong(volume);
+	}
+
+	@Override
+	protected void writeFooter() {
+		// Records are self-contained, the feed ends with the last one
+	}
+
+	/** Returns index of given book, writing the book's record first if it is new. */
+	private int book(String bookId) {
+		if (bookId == lastBookId) {
+			return lastBook;
+		}
+
+		Integer book = books.get(bookId);
+		if (book == null) {
+			book = books.size();
+			books.put(bookId, book);
+
+			byte[] encoded = bookId.getBytes(StandardCharsets.UTF_8);
+			putByte(BinaryFeed.BOOK_RECORD);
+			putZeros(BinaryFeed.BOOK - 1);
+			putFixedInt(book);
+			putFixedInt(encoded.length);
+			putZeros(BinaryFeed.RECORD_SIZE - BinaryFeed.BOOK_ID_LENGTH - 4);
+			put(encoded);
+			putZeros(BinaryFeed.bookIdRecords(encoded.length) * BinaryFeed.RECORD_SIZE - encoded.length);
+		}
+		lastBookId = bookId;
+		lastBook = book;
+		return book;
+	}
+}
@@ -0,0 +1,29 @@
+package pl.ciruk.nordea.orders.generator;
+
+import java.nio.channels.WritableByteChannel;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * Formats feeds can be written in.
+ */
+public enum FeedFormat {
+	/** XML document of <code>AddOrder</code>, <code>DeleteOrder</code> and <code>ModifyOrder</code> elements. */
+	XML {
+		@Override
+		public FeedWriter writer(WritableByteChannel channel, PriceScale priceScale, int bufferSize) {
+			return new XmlFeedWriter(channel, priceScale, bufferSize);
+		}
+	},
+
+	/** Fixed-width little-endian records, see {@link pl.ciruk.nordea.orders.reader.BinaryFeed}. */
+	BINARY {
+		@Override
+		public FeedWriter writer(WritableByteChannel channel, PriceScale priceScale, int bufferSize) {
+			return new BinaryFeedWriter(channel, priceScale, bufferSize);
+		}
+	};
+
+	/** Creates a writer encoding orders into given channel. Prices are expected in ticks of given scale. */
+	public abstract FeedWriter writer(WritableByteChannel channel, PriceScale priceScale, int bufferSize);
+}
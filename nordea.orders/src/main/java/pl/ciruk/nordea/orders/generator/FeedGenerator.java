@@ -0,0 +1,232 @@
+package pl.ciruk.nordea.orders.generator;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.OrderEventHandler;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Generates a reproducible stream of synthetic orders, e.g. for load tests. <br/>
+ * Every book has its own mid price drifting as a random walk. Adds rest a number of price steps away from the mid,
+ * drawn from an exponential distribution, so books are deep near the spread and thin further out;
+ * a given share of adds is priced through the mid instead, so that it trades.
+ * Cancels pick one of the most recent adds to the same book at random. It may have been filled in the meantime,
+ * in which case books ignore the cancel. <br/>
+ * Orders are generated one at a time and passed to a handler, e.g. a {@link FeedWriter},
+ * and only a bounded window of ids per book is kept, so feeds of any size can be generated.
+ * The same settings and seed always give the same feed.
+ * Instances should be created with {@link FeedGenerator.Builder}.
+ */
+public class FeedGenerator {
+	/** Number of recent adds per book that cancels choose from. */
+	static final int CANCEL_WINDOW = 1024;
+
+	public static class Builder {
+		private long orders = 1000000;
+
+		private int books = 1;
+
+		private double cancelRatio = 0.3;
+
+		private double crossingRatio = 0.05;
+
+		private double meanDepth = 10;
+
+		private double volatility = 0.5;
+
+		private PriceScale priceScale = PriceScale.DEFAULT;
+
+		private long seed = 42;
+
+		public Builder() {
+		}
+
+		/** Number of orders to generate, cancels included. */
+		public FeedGenerator.Builder orders(long orders) {
+			this.orders = orders;
+			return this;
+		}
+
+		/** Number of books orders are spread evenly over. */
+		public FeedGenerator.Builder books(int books) {
+			this.books = books;
+			return this;
+		}
+
+		/** Share of cancels among all orders. */
+		public FeedGenerator.Builder cancelRatio(double cancelRatio) {
+			this.cancelRatio = cancelRatio;
+			return this;
+		}
+
+		/** Share of adds priced through the mid, i.e. likely to trade. */
+		public FeedGenerator.Builder crossingRatio(double crossingRatio) {
+			this.crossingRatio = crossingRatio;
+			return this;
+		}
+
+		/** Mean distance of adds from the mid, in price steps of one cent. */
+		public FeedGenerator.Builder meanDepth(double meanDepth) {
+			this.meanDepth = meanDepth;
+			return this;
+		}
+
+		/** Standard deviation of a move of a book's mid between two of its orders, in price steps of one cent. */
+		public FeedGenerator.Builder volatility(double volatility) {
+			this.volatility = volatility;
+			return this;
+		}
+
+		/** Scale generated prices are expressed in; at least two decimal places. */
+		public FeedGenerator.Builder priceScale(PriceScale priceScale) {
+			this.priceScale = priceScale;
+			return this;
+		}
+
+		public FeedGenerator.Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public FeedGenerator build() {
+			Preconditions.checkArgument(orders >= 0, "Number of orders cannot be negative");
+			Preconditions.checkArgument(books > 0, "Number of books must be positive");
+			Preconditions.checkArgument(cancelRatio >= 0 && cancelRatio < 1, "Cancel ratio must be within [0, 1)");
+			Preconditions.checkArgument(crossingRatio >= 0 && crossingRatio <= 1, "Crossing ratio must be within [0, 1]");
+			Preconditions.checkArgument(meanDepth >= 0, "Mean depth cannot be negative");
+			Preconditions.checkArgument(volatility >= 0, "Volatility cannot be negative");
+			Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
+			Preconditions.checkArgument(priceScale.getDecimals() >= 2, "PriceScale must keep cents");
+
+			return new FeedGenerator(this);
+		}
+	}
+
+	/** Mid price books start at, in price steps. */
+	private static final double START_MID = 10000;
+
+	private static final long MAX_VOLUME = 100;
+
+	private final long orders;
+
+	private final int books;
+
+	private final double cancelRatio;
+
+	private final double crossingRatio;
+
+	private final double meanDepth;
+
+	private final double volatility;
+
+	/** Ticks of the scale in one price step. */
+	private final long priceStep;
+
+	private final long seed;
+
+	/** State of the xorshift generator; {@link java.util.Random} would synchronize on every number. */
+	private long random;
+
+	private double spareGaussian = Double.NaN;
+
+	private FeedGenerator(FeedGenerator.Builder builder) {
+		this.orders = builder.orders;
+		this.books = builder.books;
+		this.cancelRatio = builder.cancelRatio;
+		this.crossingRatio = builder.crossingRatio;
+		this.meanDepth = builder.meanDepth;
+		this.volatility = builder.volatility;
+		this.priceStep = builder.priceScale.parse("0.01");
+		this.seed = builder.seed;
+	}
+
+	/** Passes every generated order to given handler, in order. Cancels have price and volume of <code>0</code>. */
+	public void generate(OrderEventHandler handler) {
+		Preconditions.checkArgument(handler != null, "Handler cannot be null");
+
+		// xorshift never leaves a zero state
+		random = seed != 0x9E3779B97F4A7C15L ? seed ^ 0x9E3779B97F4A7C15L : 1L;
+		spareGaussian = Double.NaN;
+
+		String[] bookIds = new String[books];
+		double[] mids = new double[books];
+		// Windows of recent adds per book
+		long[][] recent = new long[books][CANCEL_WINDOW];
+		int[] recentCount = new int[books];
+		for (int book = 0; book < books; book++) {
+			bookIds[book] = "book-" + book;
+			mids[book] = START_MID;
+		}
+
+		long nextId = 1;
+		for (long i = 0; i < orders; i++) {
+			int book = nextInt(books);
+			int count = recentCount[book];
+			if (count > 0 && nextDouble() < cancelRatio) {
+				// Swap the cancelled id with the last one, so that the window stays dense
+				int victim = nextInt(count);
+				long orderId = recent[book][victim];
+				recent[book][victim] = recent[book][count - 1];
+				recentCount[book] = count - 1;
+				handler.onOrder(bookIds[book], OperationType.DELETE, orderId, 0L, 0L);
+				continue;
+			}
+
+			mids[book] = Math.max(mids[book] + nextGaussian() * volatility, 1 + meanDepth);
+			boolean buy = (nextLong() & 1) == 0;
+			long distance = 1 + (long) (-Math.log(1 - nextDouble()) * meanDepth);
+			if (nextDouble() < crossingRatio) {
+				distance = -distance;
+			}
+			long steps = Math.max(Math.round(mids[book]) + (buy ? -distance : distance), 1);
+
+			long orderId = nextId++;
+			if (count < CANCEL_WINDOW) {
+				recent[book][count] = orderId;
+				recentCount[book] = count + 1;
+			} else {
+				// Oldest adds drop out of the window at random and just stay in the book
+				recent[book][nextInt(CANCEL_WINDOW)] = orderId;
+			}
+			handler.onOrder(bookIds[book], buy ? OperationType.BUY : OperationType.SELL, orderId, steps * priceStep, 1 + nextInt((int) MAX_VOLUME));
+		}
+	}
+
+	/** xorshift64* */
+	private long nextLong() {
+		random ^= random >>> 12;
+		random ^= random << 25;
+		random ^= random >>> 27;
+		return random * 0x2545F4914F6CDD1DL;
+	}
+
+	/** Uniform within <code>[0, 1)</code>. */
+	private double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/** Uniform within <code>[0, bound)</code>. */
+	private int nextInt(int bound) {
+		return (int) (((nextLong() >>> 33) * bound) >>> 31);
+	}
+
+	/** Standard normal, by the polar method; every other call returns the spare value. */
+	private double nextGaussian() {
+		if (!Double.isNaN(spareGaussian)) {
+			double gaussian = spareGaussian;
+			spareGaussian = Double.NaN;
+			return gaussian;
+		}
+
+		double x, y, s;
+		do {
+			x = 2 * nextDouble() - 1;
+			y = 2 * nextDouble() - 1;
+			s = x * x + y * y;
+		} while (s >= 1 || s == 0);
+		double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+		spareGaussian = y * multiplier;
+		return x * multiplier;
+	}
+}
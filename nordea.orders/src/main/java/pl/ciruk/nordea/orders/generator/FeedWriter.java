@@ -0,0 +1,174 @@
+package pl.ciruk.nordea.orders.generator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import pl.ciruk.nordea.orders.reader.OrderEventHandler;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Encodes orders into a channel, e.g. a file. <br/>
+ * Orders are encoded straight into a fixed buffer, which is written out whenever it fills up,
+ * so memory use does not depend on the size of the feed. Both text and fixed-width little-endian numbers can be encoded. Not thread-safe.
+ */
+public abstract class FeedWriter implements OrderEventHandler, Closeable {
+	/** Default size of the buffer, in bytes. */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	/** Digits of the longest <code>long</code>. */
+	private static final int MAX_DIGITS = 19;
+
+	/** Room for the longest number, sign and decimal point included, with up to 18 decimal places. */
+	private static final int MIN_BUFFER_SIZE = 64;
+
+	private final WritableByteChannel channel;
+
+	/** Encoded bytes not written out yet; written through a wrapping buffer only when flushed. */
+	private final byte[] bytes;
+
+	private int position;
+
+	private boolean closed;
+
+	protected FeedWriter(WritableByteChannel channel, int bufferSize) {
+		Preconditions.checkArgument(bufferSize >= MIN_BUFFER_SIZE, "Buffer must hold at least %s bytes", MIN_BUFFER_SIZE);
+
+		this.channel = channel;
+		this.bytes = new byte[bufferSize];
+	}
+
+	/** Writes what is buffered and what ends the feed, then closes the channel. */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			writeFooter();
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/** Called once, before the buffer is flushed for the last time. */
+	protected abstract void writeFooter();
+
+	protected final void put(byte[] value) {
+		if (value.length > bytes.length - position) {
+			flush();
+			if (value.length > bytes.length) {
+				throw new FeedWriterException("Value of " + value.length + " bytes does not fit the buffer");
+			}
+		}
+		System.arraycopy(value, 0, bytes, position, value.length);
+		position += value.length;
+	}
+
+	/** Writes decimal representation of given number. */
+	protected final void putLong(long value) {
+		reserve(MAX_DIGITS + 1);
+		if (value < 0) {
+			bytes[position++] = '-';
+		}
+		// Digits are taken from the negative value, so that Long.MIN_VALUE needs no special case
+		long negative = value < 0 ? value : -value;
+		int end = position + digits(negative);
+		for (int i = end - 1; i >= position; i--) {
+			bytes[i] = (byte) ('0' - negative % 10);
+			negative /= 10;
+		}
+		position = end;
+	}
+
+	/** Writes given number of ticks as a decimal number with given number of decimal places. */
+	protected final void putDecimal(long ticks, int decimals) {
+		if (decimals == 0) {
+			putLong(ticks);
+			return;
+		}
+
+		reserve(MAX_DIGITS + decimals + 3);
+		if (ticks < 0) {
+			bytes[position++] = '-';
+		}
+		long negative = ticks < 0 ? ticks : -ticks;
+		// At least one digit before the point
+		int length = Math.max(digits(negative), decimals + 1);
+		int end = position + length + 1;
+		int i = end;
+		for (int digit = 0; digit < length; digit++) {
+			if (digit == decimals) {
+				bytes[--i] = '.';
+			}
+			bytes[--i] = (byte) ('0' - negative % 10);
+			negative /= 10;
+		}
+		position = end;
+	}
+
+	/** Writes lowest byte of given number. */
+	protected final void putByte(int value) {
+		reserve(1);
+		bytes[position++] = (byte) value;
+	}
+
+	/** Writes given number as four little-endian bytes. */
+	protected final void putFixedInt(int value) {
+		reserve(4);
+		for (int i = 0; i < 4; i++) {
+			bytes[position++] = (byte) (value >>> (8 * i));
+		}
+	}
+
+	/** Writes given number as eight little-endian bytes. */
+	protected final void putFixedLong(long value) {
+		reserve(8);
+		for (int i = 0; i < 8; i++) {
+			bytes[position++] = (byte) (value >>> (8 * i));
+		}
+	}
+
+	/** Writes given number of zero bytes. */
+	protected final void putZeros(int length) {
+		for (int i = 0; i < length; i++) {
+			putByte(0);
+		}
+	}
+
+	/** Makes room for given number of bytes, flushing the buffer if needed. */
+	private void reserve(int length) {
+		if (length > bytes.length - position) {
+			flush();
+		}
+	}
+
+	/** Number of digits of given non-positive number. */
+	private static int digits(long negative) {
+		long bound = -10;
+		for (int digits = 1; digits < MAX_DIGITS; digits++) {
+			if (negative > bound) {
+				return digits;
+			}
+			bound *= 10;
+		}
+		return MAX_DIGITS;
+	}
+
+	private void flush() {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, position);
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new FeedWriterException(e);
+		}
+		position = 0;
+	}
+}
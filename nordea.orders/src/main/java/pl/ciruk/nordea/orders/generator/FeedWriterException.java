@@ -0,0 +1,18 @@
+package pl.ciruk.nordea.orders.generator;
+
+/**
+ * Indicates an error during the writing of a feed.
+ */
+public class FeedWriterException extends RuntimeException {
+	
+	/** */
+	private static final long serialVersionUID = 4622364918004613379L;
+
+	public FeedWriterException(String message) {
+		super(message);
+	}
+	
+	public FeedWriterException(Throwable cause) {
+		super(cause);
+	}
+}
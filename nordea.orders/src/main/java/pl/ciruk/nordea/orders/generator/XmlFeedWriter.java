@@ -0,0 +1,101 @@
+package pl.ciruk.nordea.orders.generator;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Writes orders as the XML document read by {@link pl.ciruk.nordea.orders.reader.OrderReader}, one element per line. <br/>
+ * Book ids are written as they are, so they must not contain characters to be escaped in XML.
+ */
+class XmlFeedWriter extends FeedWriter {
+	private static final byte[] HEADER = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Orders>\n");
+
+	private static final byte[] FOOTER = ascii("</Orders>\n");
+
+	private static final byte[] ADD_ORDER = ascii("<AddOrder book=\"");
+
+	private static final byte[] DELETE_ORDER = ascii("<DeleteOrder book=\"");
+
+	private static final byte[] MODIFY_ORDER = ascii("<ModifyOrder book=\"");
+
+	private static final byte[] BUY = ascii("\" operation=\"BUY");
+
+	private static final byte[] SELL = ascii("\" operation=\"SELL");
+
+	private static final byte[] PRICE = ascii("\" price=\"");
+
+	private static final byte[] VOLUME = ascii("\" volume=\"");
+
+	private static final byte[] ORDER_ID = ascii("\" orderId=\"");
+
+	private static final byte[] END = ascii("\" />\n");
+
+	private final int decimals;
+
+	/** Encoded book ids. */
+	private final Map<String, byte[]> bookIds = Maps.newHashMap();
+
+	XmlFeedWriter(WritableByteChannel channel, PriceScale priceScale, int bufferSize) {
+		super(channel, bufferSize);
+		this.decimals = priceScale.getDecimals();
+
+		put(HEADER);
+	}
+
+	@Override
+	public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+		switch (operationType) {
+			case BUY:
+			case SELL:
+				put(ADD_ORDER);
+				put(bookId(bookId));
+				put(operationType == OperationType.BUY ? BUY : SELL);
+				putPriceAndVolume(price, volume);
+				break;
+			case MODIFY:
+				put(MODIFY_ORDER);
+				put(bookId(bookId));
+				putPriceAndVolume(price, volume);
+				break;
+			case DELETE:
+			default:
+				put(DELETE_ORDER);
+				put(bookId(bookId));
+				break;
+		}
+		put(ORDER_ID);
+		putLong(orderId);
+		put(END);
+	}
+
+	@Override
+	protected void writeFooter() {
+		put(FOOTER);
+	}
+
+	private void putPriceAndVolume(long price, long volume) {
+		put(PRICE);
+		putDecimal(price, decimals);
+		put(VOLUME);
+		putLong(volume);
+	}
+
+	private byte[] bookId(String bookId) {
+		byte[] encoded = bookIds.get(bookId);
+		if (encoded == null) {
+			encoded = bookId.getBytes(StandardCharsets.UTF_8);
+			bookIds.put(bookId, encoded);
+		}
+		return encoded;
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,144 @@
+package pl.ciruk.nordea.orders.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Latencies and counters of a single order book, created by {@link OrderBookMetrics}. <br/>
+ * Three stages are timed for every order: time in queue, from dispatch until the book picks the order up;
+ * match time, spent by the book on the order; and end-to-end time, from dispatch until the book is done with it. <br/>
+ * Everything but {@link #dispatched()} is written only by the thread currently processing the book,
+ * which the schedulers guarantee to be a single one, so recording takes no locks and no atomic read-modify-writes.
+ * Readers, e.g. JMX or a periodic dump, see ordered writes and never stall the book.
+ */
+public final class BookMetrics implements BookMetricsMBean {
+	private final String bookId;
+
+	/** Orders handed over to the book; the only counter written by dispatching threads. */
+	private final AtomicLong posted = new AtomicLong();
+
+	private final AtomicLong messages = new AtomicLong();
+
+	private final AtomicLong fills = new AtomicLong();
+
+	private final AtomicLong cancels = new AtomicLong();
+
+	private final LatencyHistogram queueTime = new LatencyHistogram();
+
+	private final LatencyHistogram matchTime = new LatencyHistogram();
+
+	private final LatencyHistogram endToEndTime = new LatencyHistogram();
+
+	BookMetrics(String bookId) {
+		this.bookId = bookId;
+	}
+
+	/** Counts an order handed over to the book. Called by the dispatching thread before the hand-over. */
+	public void dispatched() {
+		posted.incrementAndGet();
+	}
+
+	/**
+	 * Records an order processed by the book. Called by the book's thread.
+	 * @param dispatched Time of the hand-over, by {@link System#nanoTime()}; <code>0</code> if unknown, so that only match time is recorded
+	 * @param started Time the book picked the order up
+	 * @param finished Time the book was done with the order
+	 * @param trades Number of trades executed by the book so far
+	 */
+	public void record(OperationType operationType, long dispatched, long started, long finished, long trades) {
+		messages.lazySet(messages.get() + 1);
+		fills.lazySet(trades);
+		if (operationType == OperationType.DELETE) {
+			cancels.lazySet(cancels.get() + 1);
+		}
+
+		matchTime.record(finished - started);
+		if (dispatched != 0L) {
+			queueTime.record(started - dispatched);
+			endToEndTime.record(finished - dispatched);
+		}
+	}
+
+	@Override
+	public String getBookId() {
+		return bookId;
+	}
+
+	@Override
+	public long getMessages() {
+		return messages.get();
+	}
+
+	@Override
+	public long getFills() {
+		return fills.get();
+	}
+
+	@Override
+	public long getCancels() {
+		return cancels.get();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return Math.max(posted.get() - messages.get(), 0L);
+	}
+
+	public LatencyHistogram getQueueTime() {
+		return queueTime;
+	}
+
+	public LatencyHistogram getMatchTime() {
+		return matchTime;
+	}
+
+	public LatencyHistogram getEndToEndTime() {
+		return endToEndTime;
+	}
+
+	@Override
+	public long getQueueTimeMedian() {
+		return queueTime.getValueAtPercentile(50.0);
+	}
+
+	@Override
+	public long getQueueTime99() {
+		return queueTime.getValueAtPercentile(99.0);
+	}
+
+	@Override
+	public long getQueueTimeMax() {
+		return queueTime.getMax();
+	}
+
+	@Override
+	public long getMatchTimeMedian() {
+		return matchTime.getValueAtPercentile(50.0);
+	}
+
+	@Override
+	public long getMatchTime99() {
+		return matchTime.getValueAtPercentile(99.0);
+	}
+
+	@Override
+	public long getMatchTimeMax() {
+		return matchTime.getMax();
+	}
+
+	@Override
+	public long getEndToEndTimeMedian() {
+		return endToEndTime.getValueAtPercentile(50.0);
+	}
+
+	@Override
+	public long getEndToEndTime99() {
+		return endToEndTime.getValueAtPercentile(99.0);
+	}
+
+	@Override
+	public long getEndToEndTimeMax() {
+		return endToEndTime.getMax();
+	}
+}
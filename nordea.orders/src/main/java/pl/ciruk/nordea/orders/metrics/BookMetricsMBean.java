@@ -0,0 +1,38 @@
+package pl.ciruk.nordea.orders.metrics;
+
+/**
+ * Management interface of {@link BookMetrics}, registered by {@link OrderBookMetrics}. All times are in nanoseconds.
+ */
+public interface BookMetricsMBean {
+	String getBookId();
+
+	/** Orders processed by the book. */
+	long getMessages();
+
+	/** Trades executed by the book. */
+	long getFills();
+
+	/** Delete orders processed by the book, including ones for orders which were no longer there. */
+	long getCancels();
+
+	/** Orders handed over to the book but not processed yet. */
+	long getQueueDepth();
+
+	long getQueueTimeMedian();
+
+	long getQueueTime99();
+
+	long getQueueTimeMax();
+
+	long getMatchTimeMedian();
+
+	long getMatchTime99();
+
+	long getMatchTimeMax();
+
+	long getEndToEndTimeMedian();
+
+	long getEndToEndTime99();
+
+	long getEndToEndTimeMax();
+}
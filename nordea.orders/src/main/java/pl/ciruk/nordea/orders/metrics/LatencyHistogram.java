@@ -0,0 +1,120 @@
+package pl.ciruk.nordea.orders.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with a bounded relative error, after HdrHistogram. <br/>
+ * Values below 128 are counted exactly. Above that, every power of two is split into 64 equal buckets,
+ * so a value is reported at most 1/64 (about 1.6%) above what was recorded. Values above about 68 seconds are
+ * counted as 68 seconds. The histogram takes 16 kB whatever it records. <br/>
+ * Recording is meant for a single thread at a time. It neither locks nor allocates;
+ * counters are updated with ordered writes only, so other threads can read them, e.g. to merge histograms, while recording goes on.
+ */
+public final class LatencyHistogram {
+	/** Values below it have a bucket each. */
+	private static final int EXACT = 128;
+
+	/** Buckets each power of two above {@link #EXACT} is split into. */
+	private static final int BUCKETS_PER_MAGNITUDE = EXACT / 2;
+
+	/** Largest power of two of tracked values, i.e. up to 2^36 ns. */
+	private static final int MAX_MAGNITUDE = 36;
+
+	private static final int MAX_SHIFT = MAX_MAGNITUDE - Integer.numberOfTrailingZeros(BUCKETS_PER_MAGNITUDE);
+
+	private static final int LENGTH = EXACT + MAX_SHIFT * BUCKETS_PER_MAGNITUDE;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/** Records a single duration. Negative values, e.g. from clocks of different cores, are counted as <code>0</code>. */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0L);
+		int index = index(value);
+		counts.lazySet(index, counts.get(index) + 1);
+		count.lazySet(count.get() + 1);
+		sum.lazySet(sum.get() + value);
+		if (value > max.get()) {
+			max.lazySet(value);
+		}
+	}
+
+	/** Adds everything recorded by given histogram to this one. Not to be called while this histogram records. */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < LENGTH; i++) {
+			long added = other.counts.get(i);
+			if (added > 0) {
+				counts.lazySet(i, counts.get(i) + added);
+			}
+		}
+		count.lazySet(count.get() + other.count.get());
+		sum.lazySet(sum.get() + other.sum.get());
+		max.lazySet(Math.max(max.get(), other.max.get()));
+	}
+
+	/** Number of recorded values. */
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/** Arithmetic mean of recorded values, or <code>0</code> if there are none. */
+	public double getMean() {
+		long recorded = count.get();
+		return recorded > 0 ? (double) sum.get() / recorded : 0.0;
+	}
+
+	/**
+	 * Returns a value that given percentage of recorded values does not exceed, e.g. <code>99.0</code> for the 99th percentile.
+	 * Values are rounded up to the end of their buckets, but never beyond {@link #getMax()}.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long recorded = count.get();
+		if (recorded == 0) {
+			return 0L;
+		}
+
+		long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * recorded));
+		long seen = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(lowestValue(i + 1) - 1, getMax());
+			}
+		}
+		return getMax();
+	}
+
+	private static int index(long value) {
+		if (value < EXACT) {
+			return (int) value;
+		}
+
+		// Number of low bits dropped, so that BUCKETS_PER_MAGNITUDE..EXACT-1 is left
+		int shift = 63 - Long.numberOfLeadingZeros(value) - Integer.numberOfTrailingZeros(BUCKETS_PER_MAGNITUDE);
+		if (shift > MAX_SHIFT) {
+			return LENGTH - 1;
+		}
+		return EXACT + (shift - 1) * BUCKETS_PER_MAGNITUDE + (int) (value >>> shift) - BUCKETS_PER_MAGNITUDE;
+	}
+
+	/** Smallest value counted in bucket with given index. */
+	private static long lowestValue(int index) {
+		if (index < EXACT) {
+			return index;
+		}
+
+		int shift = (index - EXACT) / BUCKETS_PER_MAGNITUDE + 1;
+		long bucket = (index - EXACT) % BUCKETS_PER_MAGNITUDE + BUCKETS_PER_MAGNITUDE;
+		return bucket << shift;
+	}
+}
@@ -0,0 +1,207 @@
+package pl.ciruk.nordea.orders.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Instrumentation of order books: a {@link BookMetrics} per book,
+ * optionally exposed as MBeans and dumped as text at a fixed rate. <br/>
+ * Books are instrumented only if their {@link pl.ciruk.nordea.orders.book.OrderBookContainer} is given an instance;
+ * otherwise nothing is timed or counted at all. Instances should be created with {@link OrderBookMetrics.Builder}
+ * and closed once no longer needed, which stops the dump and unregisters the MBeans.
+ */
+public class OrderBookMetrics implements Closeable {
+	/** Domain of registered MBeans, each named by its book's id. */
+	public static final String JMX_DOMAIN = "pl.ciruk.nordea.orders";
+
+	public static class Builder {
+		private boolean jmx;
+
+		private PrintStream dumpTo;
+
+		private long dumpPeriod;
+
+		private TimeUnit dumpUnit = TimeUnit.SECONDS;
+
+		public Builder() {
+		}
+
+		/** Registers metrics of every book with the platform MBean server. */
+		public OrderBookMetrics.Builder jmx(boolean jmx) {
+			this.jmx = jmx;
+			return this;
+		}
+
+		/** Prints metrics of all books to given stream every given period, from a daemon thread. */
+		public OrderBookMetrics.Builder dump(PrintStream out, long period, TimeUnit unit) {
+			this.dumpTo = out;
+			this.dumpPeriod = period;
+			this.dumpUnit = unit;
+			return this;
+		}
+
+		public OrderBookMetrics build() {
+			Preconditions.checkArgument(dumpTo == null || dumpPeriod > 0, "Dump period must be positive");
+			Preconditions.checkArgument(dumpUnit != null, "Dump period unit cannot be null");
+
+			return new OrderBookMetrics(this);
+		}
+	}
+
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	/** Metrics in order of registration. */
+	private final Queue<BookMetrics> books = new ConcurrentLinkedQueue<>();
+
+	private final MBeanServer server;
+
+	private final ScheduledExecutorService dumper;
+
+	private OrderBookMetrics(OrderBookMetrics.Builder builder) {
+		this.server = builder.jmx ? ManagementFactory.getPlatformMBeanServer() : null;
+		if (builder.dumpTo != null) {
+			final PrintStream out = builder.dumpTo;
+			dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("book-metrics")
+					.setDaemon(true)
+					.build());
+			dumper.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					dump(out);
+				}
+			}, builder.dumpPeriod, builder.dumpPeriod, builder.dumpUnit);
+		} else {
+			dumper = null;
+		}
+	}
+
+	/**
+	 * Creates metrics of a new book. Called once per book by its container.
+	 * @throws IllegalStateException if the book's MBean cannot be registered, e.g. another one has the same id
+	 */
+	public BookMetrics register(String bookId) {
+		BookMetrics metrics = new BookMetrics(bookId);
+		if (server != null) {
+			try {
+				server.registerMBean(metrics, objectName(bookId));
+			} catch (JMException e) {
+				throw new IllegalStateException("Cannot register metrics of book " + bookId, e);
+			}
+		}
+		books.add(metrics);
+		return metrics;
+	}
+
+	/** Returns metrics of all books in order of their registration. */
+	public Collection<BookMetrics> getBooks() {
+		return Collections.unmodifiableCollection(books);
+	}
+
+	/** Merges latencies of given stage of all books into a new histogram. */
+	public LatencyHistogram total(Stage stage) {
+		LatencyHistogram total = new LatencyHistogram();
+		for (BookMetrics book : books) {
+			total.add(stage.of(book));
+		}
+		return total;
+	}
+
+	/** Stages of processing of an order which are timed. */
+	public enum Stage {
+		QUEUE {
+			@Override
+			LatencyHistogram of(BookMetrics book) {
+				return book.getQueueTime();
+			}
+		},
+		MATCH {
+			@Override
+			LatencyHistogram of(BookMetrics book) {
+				return book.getMatchTime();
+			}
+		},
+		END_TO_END {
+			@Override
+			LatencyHistogram of(BookMetrics book) {
+				return book.getEndToEndTime();
+			}
+		};
+
+		abstract LatencyHistogram of(BookMetrics book);
+	}
+
+	/** Prints counters and latencies, in microseconds, of every book and of all books together. */
+	public void dump(PrintStream out) {
+		Preconditions.checkArgument(out != null, "OutputStream cannot be null");
+
+		StringBuilder text = new StringBuilder();
+		text.append(String.format("%-20s %12s %12s %12s %8s  %-26s  %-26s  %s%n",
+				"book", "messages", "fills", "cancels", "depth",
+				"queue us p50/p99/max", "match us p50/p99/max", "end-to-end us p50/p99/max"));
+
+		long messages = 0, fills = 0, cancels = 0, depth = 0;
+		for (BookMetrics book : books) {
+			appendRow(text, book.getBookId(), book.getMessages(), book.getFills(), book.getCancels(), book.getQueueDepth(),
+					book.getQueueTime(), book.getMatchTime(), book.getEndToEndTime());
+			messages += book.getMessages();
+			fills += book.getFills();
+			cancels += book.getCancels();
+			depth += book.getQueueDepth();
+		}
+		appendRow(text, "total", messages, fills, cancels, depth,
+				total(Stage.QUEUE), total(Stage.MATCH), total(Stage.END_TO_END));
+
+		out.print(text);
+		out.flush();
+	}
+
+	/** Stops the dump and unregisters MBeans of all books. */
+	@Override
+	public void close() {
+		if (dumper != null) {
+			dumper.shutdownNow();
+		}
+		if (server != null) {
+			for (BookMetrics book : books) {
+				try {
+					server.unregisterMBean(objectName(book.getBookId()));
+				} catch (JMException e) {
+					// Already gone
+				}
+			}
+		}
+	}
+
+	private static void appendRow(StringBuilder text, String name, long messages, long fills, long cancels, long depth,
+			LatencyHistogram queue, LatencyHistogram match, LatencyHistogram endToEnd) {
+		text.append(String.format("%-20s %12d %12d %12d %8d  %-26s  %-26s  %s%n",
+				name, messages, fills, cancels, depth, summary(queue), summary(match), summary(endToEnd)));
+	}
+
+	private static String summary(LatencyHistogram histogram) {
+		return String.format("%.1f/%.1f/%.1f",
+				histogram.getValueAtPercentile(50.0) / NANOS_PER_MICRO,
+				histogram.getValueAtPercentile(99.0) / NANOS_PER_MICRO,
+				histogram.getMax() / NANOS_PER_MICRO);
+	}
+
+	private static ObjectName objectName(String bookId) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=OrderBook,name=" + ObjectName.quote(bookId));
+	}
+}
@@ -1,12 +1,11 @@
 package pl.ciruk.nordea.orders.reader;
 
-import java.math.BigDecimal;
-
 public class AddOrderMessage extends OrderMessage {
 
 	private String operation;
 	
-	private BigDecimal price;
+	/** Price in ticks. */
+	private long price;
 	
 	private long volume;
 	
@@ -18,11 +17,11 @@ public class AddOrderMessage extends OrderMessage {
 		this.operation = operation;
 	}
 
-	public BigDecimal getPrice() {
+	public long getPrice() {
 		return price;
 	}
 
-	public void setPrice(BigDecimal price) {
+	public void setPrice(long price) {
 		this.price = price;
 	}
 
@@ -34,6 +33,14 @@ public class AddOrderMessage extends OrderMessage {
 		this.volume = volume;
 	}
 
+	@Override
+	void reset() {
+		super.reset();
+		operation = null;
+		price = 0L;
+		volume = 0L;
+	}
+
 	@Override
 	public boolean isAddMessage() {
 		return true;
@@ -44,4 +51,9 @@ public class AddOrderMessage extends OrderMessage {
 		return false;
 	}
 
+	@Override
+	public boolean isModifyMessage() {
+		return false;
+	}
+
 }
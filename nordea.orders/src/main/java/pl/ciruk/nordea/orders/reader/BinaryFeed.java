@@ -0,0 +1,69 @@
+package pl.ciruk.nordea.orders.reader;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Layout of binary order feeds, written by {@link pl.ciruk.nordea.orders.generator.FeedFormat#BINARY}
+ * and read by {@link BinaryOrderLoader}. <br/>
+ * A feed is a header followed by records, all of {@link #RECORD_SIZE} bytes; numbers are little-endian.
+ * The header holds {@link #MAGIC}, {@link #VERSION} and the number of decimal places of prices. <br/>
+ * An order record holds its type at {@link #TYPE}, index of its book at {@link #BOOK},
+ * and id, price in ticks and volume as <code>long</code>s at {@link #ORDER_ID}, {@link #PRICE} and {@link #VOLUME}.
+ * Price and volume are <code>0</code> for deletes. <br/>
+ * Books are referred to by indices, so that book ids are not repeated for every order.
+ * A {@link #BOOK_RECORD} assigns an index to a book id before its first order;
+ * it holds the id's length in bytes at {@link #BOOK_ID_LENGTH} and is followed by the id in UTF-8, padded with zeros to whole records.
+ */
+public final class BinaryFeed {
+	/** First bytes of every feed: <code>ORDERBIN</code> in ASCII. */
+	public static final long MAGIC = 0x4E4942524544524FL;
+
+	public static final int VERSION = 1;
+
+	/** Size of the header and of every record, in bytes. */
+	public static final int RECORD_SIZE = 32;
+
+	/** Offset of the version in the header. */
+	public static final int HEADER_VERSION = 8;
+
+	/** Offset of the number of decimal places of prices in the header. */
+	public static final int HEADER_DECIMALS = 12;
+
+	/** Offset of the record type, a single byte. */
+	public static final int TYPE = 0;
+
+	/** Offset of the book index, an <code>int</code>. */
+	public static final int BOOK = 4;
+
+	public static final int ORDER_ID = 8;
+
+	public static final int PRICE = 16;
+
+	public static final int VOLUME = 24;
+
+	/** Offset of the length of a book id in a {@link #BOOK_RECORD}, an <code>int</code>. */
+	public static final int BOOK_ID_LENGTH = 8;
+
+	/** Type of records assigning indices to book ids. Types of orders are their operations' ordinals plus one. */
+	public static final byte BOOK_RECORD = 0x10;
+
+	private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+	private BinaryFeed() {
+	}
+
+	/** Record type of orders of given operation. */
+	public static byte type(OperationType operationType) {
+		return (byte) (operationType.ordinal() + 1);
+	}
+
+	/** Operation of orders of given record type, or <code>null</code> if it is not an order's type. */
+	public static OperationType operationType(byte type) {
+		return type > 0 && type <= OPERATION_TYPES.length ? OPERATION_TYPES[type - 1] : null;
+	}
+
+	/** Number of records following a {@link #BOOK_RECORD} with an id of given length. */
+	public static int bookIdRecords(int length) {
+		return (length + RECORD_SIZE - 1) / RECORD_SIZE;
+	}
+}
@@ -0,0 +1,174 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Loads feeds in the {@link BinaryFeed} format. <br/>
+ * Fields of records are read in place from the memory-mapped file and passed to an {@link OrderEventHandler} as primitives,
+ * so nothing is parsed and nothing is allocated per order. A single mapping cannot exceed 2 GB, so the file is mapped in windows;
+ * a book's record cut off by the end of a window is read again from the start of the next one.
+ * Instances should be created with {@link BinaryOrderLoader.Builder}.
+ */
+public class BinaryOrderLoader implements OrderLoader {
+	/** Default size of a mapped window, in bytes. */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	public static class Builder {
+		private PriceScale priceScale = PriceScale.DEFAULT;
+
+		private int windowSize = DEFAULT_WINDOW_SIZE;
+
+		public Builder() {
+		}
+
+		/** Scale prices are expected in; the feed must have been written with the same one. */
+		public BinaryOrderLoader.Builder priceScale(PriceScale priceScale) {
+			this.priceScale = priceScale;
+			return this;
+		}
+
+		/** Number of bytes mapped at a time; a multiple of {@link BinaryFeed#RECORD_SIZE} which fits the longest book id. */
+		public BinaryOrderLoader.Builder windowSize(int windowSize) {
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		public BinaryOrderLoader build() {
+			Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
+			Preconditions.checkArgument(windowSize > 0 && windowSize % BinaryFeed.RECORD_SIZE == 0, "Window size must be a positive multiple of %s", BinaryFeed.RECORD_SIZE);
+
+			return new BinaryOrderLoader(this);
+		}
+	}
+
+	private final PriceScale priceScale;
+
+	private final int windowSize;
+
+	private BinaryOrderLoader(BinaryOrderLoader.Builder builder) {
+		this.priceScale = builder.priceScale;
+		this.windowSize = builder.windowSize;
+	}
+
+	/** Whether given file starts like a binary feed. */
+	public static boolean isBinary(File file) {
+		Preconditions.checkArgument(file != null, "File cannot be null");
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// Keep reading
+			}
+			return !magic.hasRemaining() && magic.getLong(0) == BinaryFeed.MAGIC;
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+
+	/**
+	 * Passes all orders of given file to given handler in file order.
+	 * @throws OrderReaderException if the file is not a binary feed of the expected price scale, or is corrupted
+	 */
+	@Override
+	public void process(File file, OrderEventHandler handler) {
+		Preconditions.checkArgument(file != null && file.isFile(), "Input file must point to an OS file");
+		Preconditions.checkArgument(handler != null, "Handler cannot be null");
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			checkHeader(channel, size);
+
+			String[] books = new String[16];
+			long position = BinaryFeed.RECORD_SIZE;
+			while (position < size) {
+				ByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, size - position))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				int limit = window.limit();
+				int offset = 0;
+				while (offset < limit) {
+					byte type = window.get(offset + BinaryFeed.TYPE);
+					if (type == BinaryFeed.BOOK_RECORD) {
+						int end = offset + BinaryFeed.RECORD_SIZE * (1 + BinaryFeed.bookIdRecords(window.getInt(offset + BinaryFeed.BOOK_ID_LENGTH)));
+						if (end > limit || end < offset) {
+							if (offset == 0) {
+								throw new OrderReaderException("Book at byte " + position + " is longer than a window of " + windowSize + " bytes");
+							}
+							break;
+						}
+						books = define(books, window, offset, position + offset);
+						offset = end;
+						continue;
+					}
+
+					OperationType operationType = BinaryFeed.operationType(type);
+					if (operationType == null) {
+						throw new OrderReaderException("Unknown record type " + type + " at byte " + (position + offset));
+					}
+					int book = window.getInt(offset + BinaryFeed.BOOK);
+					if (book < 0 || book >= books.length || books[book] == null) {
+						throw new OrderReaderException("Undefined book " + book + " at byte " + (position + offset));
+					}
+					handler.onOrder(books[book], operationType,
+							window.getLong(offset + BinaryFeed.ORDER_ID),
+							window.getLong(offset + BinaryFeed.PRICE),
+							window.getLong(offset + BinaryFeed.VOLUME));
+					offset += BinaryFeed.RECORD_SIZE;
+				}
+				position += offset;
+			}
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+
+	private void checkHeader(FileChannel channel, long size) throws IOException {
+		if (size < BinaryFeed.RECORD_SIZE || (size % BinaryFeed.RECORD_SIZE) != 0) {
+			throw new OrderReaderException("Binary feed of " + size + " bytes is truncated");
+		}
+
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, BinaryFeed.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getLong(0) != BinaryFeed.MAGIC) {
+			throw new OrderReaderException("Not a binary feed");
+		}
+		if (header.getInt(BinaryFeed.HEADER_VERSION) != BinaryFeed.VERSION) {
+			throw new OrderReaderException("Unsupported version of binary feed: " + header.getInt(BinaryFeed.HEADER_VERSION));
+		}
+		int decimals = header.getInt(BinaryFeed.HEADER_DECIMALS);
+		if (decimals != priceScale.getDecimals()) {
+			throw new OrderReaderException("Feed has prices with " + decimals + " decimal places, expected " + priceScale.getDecimals());
+		}
+	}
+
+	/** Reads a book's record at given offset of the window. Returns given array of books, grown if needed. */
+	private static String[] define(String[] books, ByteBuffer window, int offset, long filePosition) {
+		int book = window.getInt(offset + BinaryFeed.BOOK);
+		int length = window.getInt(offset + BinaryFeed.BOOK_ID_LENGTH);
+		// Indices are assigned in order, so a new one is at most the number of books defined so far
+		if (book < 0 || book > books.length || length < 0) {
+			throw new OrderReaderException("Malformed book record at byte " + filePosition);
+		}
+
+		byte[] bookId = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bookId[i] = window.get(offset + BinaryFeed.RECORD_SIZE + i);
+		}
+
+		String[] defined = book < books.length ? books : Arrays.copyOf(books, 2 * books.length);
+		// A single instance per book, like ids decoded from XML
+		defined[book] = new String(bookId, StandardCharsets.UTF_8);
+		return defined;
+	}
+}
@@ -0,0 +1,103 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Interns book ids read as bytes. <br/>
+ * Each distinct id is decoded to a {@link String} once; later occurrences return the same instance
+ * without allocating. The number of books is small compared to the number of orders,
+ * so the table only grows while new books show up.
+ * Not thread-safe.
+ */
+final class BookIdCache {
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Bytes of cached ids; open addressing with linear probing. */
+	private byte[][] keys = new byte[INITIAL_CAPACITY][];
+
+	private String[] values = new String[INITIAL_CAPACITY];
+
+	private int[] hashes = new int[INITIAL_CAPACITY];
+
+	private int size;
+
+	/** Returns id made of bytes <code>[start, end)</code> of given buffer. */
+	String intern(ByteBuffer buffer, int start, int end) {
+		int hash = hash(buffer, start, end);
+		int mask = keys.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			byte[] key = keys[slot];
+			if (key == null) {
+				return add(slot, hash, buffer, start, end);
+			}
+			if (hashes[slot] == hash && matches(key, buffer, start, end)) {
+				return values[slot];
+			}
+		}
+	}
+
+	/** Number of distinct ids seen so far. */
+	int size() {
+		return size;
+	}
+
+	private String add(int slot, int hash, ByteBuffer buffer, int start, int end) {
+		byte[] key = new byte[end - start];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = buffer.get(start + i);
+		}
+		String value = new String(key, StandardCharsets.UTF_8);
+
+		keys[slot] = key;
+		values[slot] = value;
+		hashes[slot] = hash;
+		if (++size > keys.length / 2) {
+			grow();
+		}
+		return value;
+	}
+
+	private void grow() {
+		byte[][] oldKeys = keys;
+		String[] oldValues = values;
+		int[] oldHashes = hashes;
+
+		keys = new byte[oldKeys.length * 2][];
+		values = new String[keys.length];
+		hashes = new int[keys.length];
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = oldHashes[i] & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+
+	private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+		if (key.length != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buffer.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(ByteBuffer buffer, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + buffer.get(i);
+		}
+		// Spread low bits, ids often differ only in their last characters
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,43 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight {@link CharSequence} over single-byte characters of a {@link ByteBuffer}. <br/>
+ * Indices are absolute positions in the buffer, so text can be parsed in place
+ * with methods taking a range, e.g. {@link pl.ciruk.nordea.orders.utils.PriceScale#parse(CharSequence, int, int)}.
+ */
+final class ByteSequence implements CharSequence {
+	private ByteBuffer buffer;
+
+	/** Makes this sequence a view of given buffer. */
+	ByteSequence wrap(ByteBuffer buffer) {
+		this.buffer = buffer;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return buffer.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (buffer.get(index) & 0xFF);
+	}
+
+	/** Copies given range; meant only for error messages. */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		StringBuilder copy = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			copy.append(charAt(i));
+		}
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+}
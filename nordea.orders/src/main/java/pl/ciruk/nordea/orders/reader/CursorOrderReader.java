@@ -0,0 +1,161 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * {@link OrderReader} built on StAX cursor API. <br/>
+ * Attributes are read by index straight from the parser, without event, attribute or iterator objects.
+ * A single add, delete and modify message are refilled for every order,
+ * so a returned message is valid only until the next call of {@link #next()}.
+ */
+class CursorOrderReader extends OrderReader {
+	private final XMLStreamReader streamReader;
+	
+	private final InputStream inputStream;
+	
+	private final AddOrderMessage addMessage = new AddOrderMessage();
+	
+	private final DeleteOrderMessage deleteMessage = new DeleteOrderMessage();
+	
+	private final ModifyOrderMessage modifyMessage = new ModifyOrderMessage();
+	
+	CursorOrderReader(InputStream inputStream, PriceScale priceScale) throws XMLStreamException {
+		super(priceScale);
+		
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		this.streamReader = factory.createXMLStreamReader(inputStream);
+		this.inputStream = inputStream;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		try {
+			return streamReader.hasNext();
+		} catch (XMLStreamException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+	
+	/** Skips to the next order element. Returns {@link OrderMessage#EMPTY} if the document ends first. */
+	@Override
+	public OrderMessage next() {
+		try {
+			while (streamReader.hasNext()) {
+				if (streamReader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				
+				String name = streamReader.getLocalName();
+				if (ElementNames.ADD_ORDER.equals(name)) {
+					addMessage.reset();
+					populateOrderMessage(addMessage);
+					return addMessage;
+				} else if (ElementNames.DELETE_ORDER.equals(name)) {
+					deleteMessage.reset();
+					populateOrderMessage(deleteMessage);
+					return deleteMessage;
+				} else if (ElementNames.MODIFY_ORDER.equals(name)) {
+					modifyMessage.reset();
+					populateOrderMessage(modifyMessage);
+					return modifyMessage;
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new OrderReaderException(e);
+		}
+		
+		return OrderMessage.EMPTY;
+	}
+	
+	@Override
+	public void close() {
+		try {
+			streamReader.close();
+			// Closing the parser does not close its source
+			inputStream.close();
+		} catch (XMLStreamException | IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+	
+	private void populateOrderMessage(DeleteOrderMessage message) {
+		for (int i = 0; i < streamReader.getAttributeCount(); i++) {
+			switch (streamReader.getAttributeLocalName(i)) {
+				case AttributesLocalParts.BOOK:
+					message.setBookId(streamReader.getAttributeValue(i));
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					String orderId = streamReader.getAttributeValue(i);
+					if (!orderId.isEmpty()) {
+						message.setOrderId(Long.parseLong(orderId));
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+	
+	private void populateOrderMessage(AddOrderMessage message) {
+		for (int i = 0; i < streamReader.getAttributeCount(); i++) {
+			String value = streamReader.getAttributeValue(i);
+			if (value.isEmpty()) {
+				continue;
+			}
+			
+			switch (streamReader.getAttributeLocalName(i)) {
+				case AttributesLocalParts.BOOK:
+					message.setBookId(value);
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					message.setOrderId(Long.parseLong(value));
+					break;
+				case AttributesLocalParts.OPERATION:
+					message.setOperation(value);
+					break;
+				case AttributesLocalParts.PRICE:
+					message.setPrice(priceScale.parse(value));
+					break;
+				case AttributesLocalParts.VOLUME:
+					message.setVolume(Long.parseLong(value));
+					break;
+				default:
+					throw new OrderReaderException();
+			}
+		}
+	}
+	
+	private void populateOrderMessage(ModifyOrderMessage message) {
+		for (int i = 0; i < streamReader.getAttributeCount(); i++) {
+			String value = streamReader.getAttributeValue(i);
+			if (value.isEmpty()) {
+				continue;
+			}
+			
+			switch (streamReader.getAttributeLocalName(i)) {
+				case AttributesLocalParts.BOOK:
+					message.setBookId(value);
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					message.setOrderId(Long.parseLong(value));
+					break;
+				case AttributesLocalParts.PRICE:
+					message.setPrice(priceScale.parse(value));
+					break;
+				case AttributesLocalParts.VOLUME:
+					message.setVolume(Long.parseLong(value));
+					break;
+				default:
+					throw new OrderReaderException();
+			}
+		}
+	}
+}
@@ -12,4 +12,9 @@ public class DeleteOrderMessage extends OrderMessage {
 		return true;
 	}
 
+	@Override
+	public boolean isModifyMessage() {
+		return false;
+	}
+
 }
@@ -0,0 +1,153 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.Reader;
+import java.util.Iterator;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Strings;
+
+/**
+ * {@link OrderReader} built on StAX event API. <br/>
+ * Every order message is a new instance.
+ */
+class EventOrderReader extends OrderReader {
+	private XMLEventReader eventReader;
+	
+	EventOrderReader(Reader reader, PriceScale priceScale) throws XMLStreamException {
+		super(priceScale);
+		
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		eventReader = factory.createXMLEventReader(reader);
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return eventReader.hasNext();
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public OrderMessage next() {
+		OrderMessage message = OrderMessage.EMPTY;
+		
+		try {
+			XMLEvent event = null;
+			
+			// Read first XML start element
+			do {
+				event = eventReader.nextEvent();
+			} while (eventReader.hasNext() && !event.isStartElement());
+				
+			if (event.isStartElement()) {
+				StartElement startElement = event.asStartElement();
+				if (ElementNames.ADD_ORDER.equals(startElement.getName().getLocalPart())) {
+					message = new AddOrderMessage();
+					
+					populateOrderMessage(message.asAddMessage(), startElement.getAttributes());
+				} else if (ElementNames.DELETE_ORDER.equals(startElement.getName().getLocalPart())) {
+					message = new DeleteOrderMessage();
+					
+					populateOrderMessage(message, startElement.getAttributes());
+				} else if (ElementNames.MODIFY_ORDER.equals(startElement.getName().getLocalPart())) {
+					message = new ModifyOrderMessage();
+					
+					populateOrderMessage(message.asModifyMessage(), startElement.getAttributes());
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new OrderReaderException(e);
+		}
+		
+		return message;
+	}
+	
+	@Override
+	public void close() {
+		try {
+			eventReader.close();
+		} catch (XMLStreamException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+	
+	private void populateOrderMessage(OrderMessage message, Iterator<Attribute> attributes) {
+		while (attributes.hasNext()) {
+			Attribute attribute = attributes.next();
+			switch (attribute.getName().getLocalPart()) {
+				case AttributesLocalParts.BOOK :
+					message.setBookId(attribute.getValue());
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					if (!Strings.isNullOrEmpty(attribute.getValue())) {
+						message.setOrderId(Long.parseLong(attribute.getValue()));
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+	
+	private void populateOrderMessage(AddOrderMessage message, Iterator<Attribute> attributes) {
+		while (attributes.hasNext()) {
+			Attribute attribute = attributes.next();
+			if (Strings.isNullOrEmpty(attribute.getValue())) {
+				continue;
+			}
+			
+			switch (attribute.getName().getLocalPart()) {
+				case AttributesLocalParts.BOOK :
+					message.setBookId(attribute.getValue());
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					message.setOrderId(Long.parseLong(attribute.getValue()));
+					break;
+				case AttributesLocalParts.OPERATION:
+					message.setOperation(attribute.getValue());
+					break;
+				case AttributesLocalParts.PRICE:
+					message.setPrice(priceScale.parse(attribute.getValue()));
+					break;
+				case AttributesLocalParts.VOLUME:
+					message.setVolume(Long.parseLong(attribute.getValue()));
+					break;
+				default:
+					throw new OrderReaderException();
+			}
+		}
+	}
+	
+	private void populateOrderMessage(ModifyOrderMessage message, Iterator<Attribute> attributes) {
+		while (attributes.hasNext()) {
+			Attribute attribute = attributes.next();
+			if (Strings.isNullOrEmpty(attribute.getValue())) {
+				continue;
+			}
+			
+			switch (attribute.getName().getLocalPart()) {
+				case AttributesLocalParts.BOOK :
+					message.setBookId(attribute.getValue());
+					break;
+				case AttributesLocalParts.ORDER_ID:
+					message.setOrderId(Long.parseLong(attribute.getValue()));
+					break;
+				case AttributesLocalParts.PRICE:
+					message.setPrice(priceScale.parse(attribute.getValue()));
+					break;
+				case AttributesLocalParts.VOLUME:
+					message.setVolume(Long.parseLong(attribute.getValue()));
+					break;
+				default:
+					throw new OrderReaderException();
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * {@link OrderReader} scanning a memory-mapped file with {@link OrderDecoder}. <br/>
+ * A single mapping cannot exceed 2 GB, so the file is mapped in windows.
+ * When the decoder reaches an element cut off by the end of a window,
+ * the next window is mapped from that element's first byte.
+ * Previous windows are unmapped by the garbage collector.
+ * A returned message is valid only until the next call of {@link #next()}.
+ */
+class MappedOrderReader extends OrderReader {
+	/** Default size of a mapped window. */
+	static final int WINDOW_SIZE = 1 << 28;
+
+	private final FileChannel channel;
+
+	private final long fileSize;
+
+	private final int windowSize;
+
+	private final OrderDecoder decoder;
+
+	private MappedByteBuffer window;
+
+	/** Offset of the current window in the file. */
+	private long windowStart;
+
+	MappedOrderReader(File file, PriceScale priceScale) throws IOException {
+		this(file, priceScale, WINDOW_SIZE);
+	}
+
+	/** Creates a reader mapping given number of bytes at a time; a window must fit the longest element. */
+	MappedOrderReader(File file, PriceScale priceScale, int windowSize) throws IOException {
+		super(priceScale);
+
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		this.windowSize = windowSize;
+		this.decoder = new OrderDecoder(priceScale);
+		map(0);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return windowStart + window.position() < fileSize;
+	}
+
+	/** Decodes the next order. Returns {@link OrderMessage#EMPTY} if the file ends first. */
+	@Override
+	public OrderMessage next() {
+		while (true) {
+			OrderMessage message = decoder.decode(window);
+			if (message != OrderMessage.EMPTY) {
+				return message;
+			}
+
+			long remainder = windowStart + window.position();
+			if (windowStart + window.limit() == fileSize) {
+				if (window.hasRemaining()) {
+					throw new OrderReaderException("Element at byte " + remainder + " is not terminated");
+				}
+				return OrderMessage.EMPTY;
+			}
+			if (window.position() == 0) {
+				throw new OrderReaderException("Element at byte " + remainder + " is longer than a window of " + windowSize + " bytes");
+			}
+			map(remainder);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+
+	private void map(long start) {
+		try {
+			window = channel.map(MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+			windowStart = start;
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package pl.ciruk.nordea.orders.reader;
+
+/**
+ * Amends a resting order in place. <br/>
+ * Carries the new price and volume of the order; its side cannot be changed.
+ */
+public class ModifyOrderMessage extends OrderMessage {
+
+	/** Price in ticks. */
+	private long price;
+	
+	private long volume;
+	
+	public long getPrice() {
+		return price;
+	}
+
+	public void setPrice(long price) {
+		this.price = price;
+	}
+
+	public long getVolume() {
+		return volume;
+	}
+
+	public void setVolume(long volume) {
+		this.volume = volume;
+	}
+
+	@Override
+	void reset() {
+		super.reset();
+		price = 0L;
+		volume = 0L;
+	}
+
+	@Override
+	public boolean isAddMessage() {
+		return false;
+	}
+
+	@Override
+	public boolean isDeleteMessage() {
+		return false;
+	}
+
+	@Override
+	public boolean isModifyMessage() {
+		return true;
+	}
+
+}
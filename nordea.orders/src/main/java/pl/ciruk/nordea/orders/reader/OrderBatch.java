@@ -0,0 +1,54 @@
+package pl.ciruk.nordea.orders.reader;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Decoded orders handed from the decoding stage of {@link OrderPipeline} to the dispatching one. <br/>
+ * Orders are stored column-wise in preallocated arrays and batches are recycled, so passing orders between
+ * threads allocates nothing and costs one queue operation per batch rather than per order.
+ */
+final class OrderBatch {
+	/** Marks the end of input. */
+	static final OrderBatch END = new OrderBatch(0);
+
+	final String[] bookIds;
+
+	final OperationType[] operationTypes;
+
+	final long[] orderIds;
+
+	final long[] prices;
+
+	final long[] volumes;
+
+	int size;
+
+	OrderBatch(int capacity) {
+		bookIds = new String[capacity];
+		operationTypes = new OperationType[capacity];
+		orderIds = new long[capacity];
+		prices = new long[capacity];
+		volumes = new long[capacity];
+	}
+
+	boolean isFull() {
+		return size == bookIds.length;
+	}
+
+	void add(String bookId, OperationType operationType, long orderId, long price, long volume) {
+		bookIds[size] = bookId;
+		operationTypes[size] = operationType;
+		orderIds[size] = orderId;
+		prices[size] = price;
+		volumes[size] = volume;
+		size++;
+	}
+
+	/** Passes all orders to given handler and empties this batch. */
+	void drainTo(OrderEventHandler handler) {
+		for (int i = 0; i < size; i++) {
+			handler.onOrder(bookIds[i], operationTypes[i], orderIds[i], prices[i], volumes[i]);
+		}
+		size = 0;
+	}
+}
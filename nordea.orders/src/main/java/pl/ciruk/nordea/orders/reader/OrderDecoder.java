@@ -0,0 +1,315 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * Decodes <code>AddOrder</code>, <code>DeleteOrder</code> and <code>ModifyOrder</code> elements straight from bytes. <br/>
+ * The feed is a flat list of empty elements, so instead of a generic XML parser the bytes are scanned
+ * for element names and attribute values, and numbers are parsed in place.
+ * Book ids are interned and operations are matched to constants, so decoding an order allocates nothing.
+ * Other elements, comments and the prolog are skipped. Entity references are not expanded,
+ * and text is expected in UTF-8 or another ASCII-compatible encoding. <br/>
+ * A single add, delete and modify message are refilled for every order,
+ * so a decoded message is valid only until the next call of {@link #decode(ByteBuffer)}. Not thread-safe.
+ */
+final class OrderDecoder {
+	private static final byte[] ADD_ORDER = ascii(OrderReader.ElementNames.ADD_ORDER);
+
+	private static final byte[] DELETE_ORDER = ascii(OrderReader.ElementNames.DELETE_ORDER);
+
+	private static final byte[] MODIFY_ORDER = ascii(OrderReader.ElementNames.MODIFY_ORDER);
+
+	private static final byte[] BOOK = ascii(OrderReader.AttributesLocalParts.BOOK);
+
+	private static final byte[] ORDER_ID = ascii(OrderReader.AttributesLocalParts.ORDER_ID);
+
+	private static final byte[] OPERATION = ascii(OrderReader.AttributesLocalParts.OPERATION);
+
+	private static final byte[] PRICE = ascii(OrderReader.AttributesLocalParts.PRICE);
+
+	private static final byte[] VOLUME = ascii(OrderReader.AttributesLocalParts.VOLUME);
+
+	private static final byte[] BUY = ascii(OperationType.BUY.name());
+
+	private static final byte[] SELL = ascii(OperationType.SELL.name());
+
+	private static final byte[] COMMENT_START = ascii("!--");
+
+	private final PriceScale priceScale;
+
+	private final BookIdCache bookIds = new BookIdCache();
+
+	private final ByteSequence text = new ByteSequence();
+
+	private final AddOrderMessage addMessage = new AddOrderMessage();
+
+	private final DeleteOrderMessage deleteMessage = new DeleteOrderMessage();
+
+	private final ModifyOrderMessage modifyMessage = new ModifyOrderMessage();
+
+	OrderDecoder(PriceScale priceScale) {
+		this.priceScale = priceScale;
+	}
+
+	/**
+	 * Decodes the first order found between position and limit of given buffer. <br/>
+	 * On success the position is moved past the order's element.
+	 * Otherwise {@link OrderMessage#EMPTY} is returned and the position is left at the start of an element
+	 * cut off by the limit, or at the limit if there is none, so that decoding can resume once more bytes are available.
+	 * @throws OrderReaderException if an order element is malformed
+	 * @throws NumberFormatException if a number or price cannot be parsed
+	 */
+	OrderMessage decode(ByteBuffer buffer) {
+		text.wrap(buffer);
+		int limit = buffer.limit();
+		int position = buffer.position();
+		while (true) {
+			int open = indexOf(buffer, '<', position, limit);
+			if (open < 0) {
+				buffer.position(limit);
+				return OrderMessage.EMPTY;
+			}
+
+			int end = elementEnd(buffer, open + 1, limit);
+			if (end < 0) {
+				buffer.position(open);
+				return OrderMessage.EMPTY;
+			}
+
+			OrderMessage message = decodeElement(buffer, open, end);
+			position = end;
+			if (message != null) {
+				buffer.position(end);
+				return message;
+			}
+		}
+	}
+
+	/** Number of distinct book ids decoded so far. */
+	int bookCount() {
+		return bookIds.size();
+	}
+
+	/** Returns index just past the element starting after <code>&lt;</code> at <code>from</code>, or <code>-1</code> if the element is cut off. */
+	private static int elementEnd(ByteBuffer buffer, int from, int limit) {
+		if (startsWith(buffer, from, limit, COMMENT_START)) {
+			for (int i = from + COMMENT_START.length; i + 2 < limit; i++) {
+				if (buffer.get(i) == '-' && buffer.get(i + 1) == '-' && buffer.get(i + 2) == '>') {
+					return i + 3;
+				}
+			}
+			return -1;
+		}
+
+		// '>' is allowed inside attribute values
+		byte quote = 0;
+		for (int i = from; i < limit; i++) {
+			byte b = buffer.get(i);
+			if (quote != 0) {
+				if (b == quote) {
+					quote = 0;
+				}
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			} else if (b == '>') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/** Decodes element <code>[open, end)</code>; returns <code>null</code> if it is not an order. */
+	private OrderMessage decodeElement(ByteBuffer buffer, int open, int end) {
+		int nameStart = open + 1;
+		if (isName(buffer, nameStart, end, ADD_ORDER)) {
+			addMessage.reset();
+			decodeAttributes(addMessage, buffer, nameStart + ADD_ORDER.length, open, end);
+			return addMessage;
+		} else if (isName(buffer, nameStart, end, DELETE_ORDER)) {
+			deleteMessage.reset();
+			decodeAttributes(deleteMessage, buffer, nameStart + DELETE_ORDER.length, open, end);
+			return deleteMessage;
+		} else if (isName(buffer, nameStart, end, MODIFY_ORDER)) {
+			modifyMessage.reset();
+			decodeAttributes(modifyMessage, buffer, nameStart + MODIFY_ORDER.length, open, end);
+			return modifyMessage;
+		}
+		return null;
+	}
+
+	private void decodeAttributes(OrderMessage message, ByteBuffer buffer, int from, int open, int end) {
+		// Attributes end at '>' or "/>"
+		int stop = end - 1;
+		int i = from;
+		while (true) {
+			i = skipWhitespace(buffer, i, stop);
+			if (i >= stop || buffer.get(i) == '/') {
+				return;
+			}
+
+			int nameStart = i;
+			while (i < stop && buffer.get(i) != '=' && !isWhitespace(buffer.get(i))) {
+				i++;
+			}
+			int nameEnd = i;
+
+			i = skipWhitespace(buffer, i, stop);
+			if (i >= stop || buffer.get(i) != '=') {
+				throw malformed(open, end);
+			}
+			i = skipWhitespace(buffer, i + 1, stop);
+			if (i >= stop || (buffer.get(i) != '"' && buffer.get(i) != '\'')) {
+				throw malformed(open, end);
+			}
+			int valueStart = i + 1;
+			int valueEnd = indexOf(buffer, buffer.get(i), valueStart, stop);
+			if (valueEnd < 0) {
+				throw malformed(open, end);
+			}
+			i = valueEnd + 1;
+
+			if (valueStart == valueEnd) {
+				continue;
+			}
+			if (message == addMessage) {
+				decodeAttribute(addMessage, buffer, nameStart, nameEnd, valueStart, valueEnd, open, end);
+			} else if (message == modifyMessage) {
+				decodeAttribute(modifyMessage, buffer, nameStart, nameEnd, valueStart, valueEnd, open, end);
+			} else {
+				decodeAttribute(deleteMessage, buffer, nameStart, nameEnd, valueStart, valueEnd);
+			}
+		}
+	}
+
+	private void decodeAttribute(DeleteOrderMessage message, ByteBuffer buffer, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+		if (equals(buffer, nameStart, nameEnd, BOOK)) {
+			message.setBookId(bookIds.intern(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, ORDER_ID)) {
+			message.setOrderId(parseLong(buffer, valueStart, valueEnd));
+		}
+	}
+
+	private void decodeAttribute(AddOrderMessage message, ByteBuffer buffer, int nameStart, int nameEnd, int valueStart, int valueEnd, int open, int end) {
+		if (equals(buffer, nameStart, nameEnd, BOOK)) {
+			message.setBookId(bookIds.intern(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, ORDER_ID)) {
+			message.setOrderId(parseLong(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, OPERATION)) {
+			message.setOperation(operation(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, PRICE)) {
+			message.setPrice(priceScale.parse(text, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, VOLUME)) {
+			message.setVolume(parseLong(buffer, valueStart, valueEnd));
+		} else {
+			throw malformed(open, end);
+		}
+	}
+
+	private void decodeAttribute(ModifyOrderMessage message, ByteBuffer buffer, int nameStart, int nameEnd, int valueStart, int valueEnd, int open, int end) {
+		if (equals(buffer, nameStart, nameEnd, BOOK)) {
+			message.setBookId(bookIds.intern(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, ORDER_ID)) {
+			message.setOrderId(parseLong(buffer, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, PRICE)) {
+			message.setPrice(priceScale.parse(text, valueStart, valueEnd));
+		} else if (equals(buffer, nameStart, nameEnd, VOLUME)) {
+			message.setVolume(parseLong(buffer, valueStart, valueEnd));
+		} else {
+			throw malformed(open, end);
+		}
+	}
+
+	/** Known operations are mapped to constants; anything else is copied, to be rejected by the consumer. */
+	private String operation(ByteBuffer buffer, int start, int end) {
+		if (equals(buffer, start, end, BUY)) {
+			return OperationType.BUY.name();
+		} else if (equals(buffer, start, end, SELL)) {
+			return OperationType.SELL.name();
+		}
+		return text.subSequence(start, end).toString();
+	}
+
+	private long parseLong(ByteBuffer buffer, int start, int end) {
+		boolean negative = buffer.get(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end) {
+			throw invalidNumber(start, end);
+		}
+
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+				throw invalidNumber(start, end);
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/** Whether element name at <code>from</code> is given one, i.e. it is not just its prefix. */
+	private static boolean isName(ByteBuffer buffer, int from, int end, byte[] name) {
+		if (!startsWith(buffer, from, end, name)) {
+			return false;
+		}
+		int after = from + name.length;
+		if (after >= end) {
+			return false;
+		}
+		byte b = buffer.get(after);
+		return b == '/' || b == '>' || isWhitespace(b);
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int from, int limit, byte[] prefix) {
+		if (limit - from < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(from + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals(ByteBuffer buffer, int start, int end, byte[] expected) {
+		return end - start == expected.length && startsWith(buffer, start, end, expected);
+	}
+
+	private static int indexOf(ByteBuffer buffer, int b, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (buffer.get(i) == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(ByteBuffer buffer, int from, int limit) {
+		int i = from;
+		while (i < limit && isWhitespace(buffer.get(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	private OrderReaderException malformed(int open, int end) {
+		return new OrderReaderException("Malformed order element: " + text.subSequence(open, end));
+	}
+
+	private NumberFormatException invalidNumber(int start, int end) {
+		return new NumberFormatException("Invalid number: \"" + text.subSequence(start, end) + "\"");
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,16 @@
+package pl.ciruk.nordea.orders.reader;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+/**
+ * Receiver of orders pushed by an {@link OrderLoader}. <br/>
+ * Orders are passed as primitives, so that no message object has to outlive the call.
+ */
+public interface OrderEventHandler {
+	/**
+	 * Called once per order, in the order of the input.
+	 * Price and volume are <code>0</code> for {@link OperationType#DELETE}
+	 * and the new price and volume of the order for {@link OperationType#MODIFY}.
+	 */
+	void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume);
+}
@@ -0,0 +1,12 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+
+/**
+ * Source of orders that pushes a whole file to an {@link OrderEventHandler}. <br/>
+ * Implementations differ in how they read and decode the file, not in what the handler receives.
+ */
+public interface OrderLoader {
+	/** Passes all orders of given file to given handler in file order. Returns once the handler received the last one. */
+	void process(File file, OrderEventHandler handler) throws InterruptedException;
+}
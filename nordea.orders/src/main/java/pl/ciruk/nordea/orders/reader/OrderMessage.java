@@ -21,6 +21,11 @@ public abstract class OrderMessage {
 			return false;
 		}
 		
+		@Override
+		public boolean isModifyMessage() {
+			return false;
+		}
+		
 		public String toString() {
 			return "EMPTY";
 		}
@@ -35,10 +40,18 @@ public abstract class OrderMessage {
 		return ToStringBuilder.reflectionToString(this);
 	}
 
+	/** Clears all fields, so that the instance can be refilled with another order. */
+	void reset() {
+		bookId = null;
+		orderId = 0L;
+	}
+
 	public abstract boolean isAddMessage();
 	
 	public abstract boolean isDeleteMessage();
 	
+	public abstract boolean isModifyMessage();
+	
 	public AddOrderMessage asAddMessage() {
 		Preconditions.checkState(this instanceof AddOrderMessage, "This message is not an instance of AddOrderMessage");
 		return (AddOrderMessage) this;
@@ -49,6 +62,11 @@ public abstract class OrderMessage {
 		return (DeleteOrderMessage) this;
 	}
 	
+	public ModifyOrderMessage asModifyMessage() {
+		Preconditions.checkState(this instanceof ModifyOrderMessage, "This message is not an instance of ModifyOrderMessage");
+		return (ModifyOrderMessage) this;
+	}
+	
 	public void setBookId(String bookId) {
 		this.bookId = bookId;
 	}
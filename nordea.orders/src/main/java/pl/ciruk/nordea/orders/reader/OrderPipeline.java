@@ -0,0 +1,327 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads orders in three overlapping stages, each on its own thread: <br/>
+ * <ol>
+ * <li>reading fills chunks of raw bytes from the input,</li>
+ * <li>decoding turns chunks into {@link OrderBatch batches} of orders with {@link OrderDecoder},</li>
+ * <li>dispatching passes orders to an {@link OrderEventHandler} on the calling thread.</li>
+ * </ol>
+ * Stages hand off through bounded queues and recycle chunks and batches, so a slow stage blocks the ones before it
+ * instead of letting them buffer the whole input, and throughput is set by the slowest stage
+ * rather than by the sum of all of them. <br/>
+ * Instances should be created with {@link OrderPipeline.Builder} and can run one input at a time.
+ */
+public class OrderPipeline implements OrderLoader {
+	/** Default number of bytes read at once. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/** Default number of orders handed to the dispatching stage at once. */
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+
+	/** Default number of chunks or batches waiting between two stages. */
+	public static final int DEFAULT_QUEUE_DEPTH = 4;
+
+	private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+	public static class Builder {
+		private PriceScale priceScale = PriceScale.DEFAULT;
+
+		private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+		private int chunkQueueDepth = DEFAULT_QUEUE_DEPTH;
+
+		private int batchSize = DEFAULT_BATCH_SIZE;
+
+		private int batchQueueDepth = DEFAULT_QUEUE_DEPTH;
+
+		public Builder() {
+		}
+
+		/** Scale prices are converted to. */
+		public OrderPipeline.Builder priceScale(PriceScale priceScale) {
+			this.priceScale = priceScale;
+			return this;
+		}
+
+		/** Number of bytes read at once; has to exceed the longest element. */
+		public OrderPipeline.Builder chunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+			return this;
+		}
+
+		/** Number of read chunks that may wait for decoding before reading blocks. */
+		public OrderPipeline.Builder chunkQueueDepth(int chunkQueueDepth) {
+			this.chunkQueueDepth = chunkQueueDepth;
+			return this;
+		}
+
+		/** Number of orders handed to the dispatching stage at once. */
+		public OrderPipeline.Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/** Number of decoded batches that may wait for dispatching before decoding blocks. */
+		public OrderPipeline.Builder batchQueueDepth(int batchQueueDepth) {
+			this.batchQueueDepth = batchQueueDepth;
+			return this;
+		}
+
+		public OrderPipeline build() {
+			Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
+			Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+			Preconditions.checkArgument(chunkQueueDepth > 0, "Chunk queue depth must be positive");
+			Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+			Preconditions.checkArgument(batchQueueDepth > 0, "Batch queue depth must be positive");
+
+			return new OrderPipeline(this);
+		}
+	}
+
+	private final PriceScale priceScale;
+
+	private final int chunkSize;
+
+	private final int chunkQueueDepth;
+
+	private final int batchSize;
+
+	private final int batchQueueDepth;
+
+	private OrderPipeline(OrderPipeline.Builder builder) {
+		this.priceScale = builder.priceScale;
+		this.chunkSize = builder.chunkSize;
+		this.chunkQueueDepth = builder.chunkQueueDepth;
+		this.batchSize = builder.batchSize;
+		this.batchQueueDepth = builder.batchQueueDepth;
+	}
+
+	/** Passes all orders of given file to given handler. Returns once the handler received the last one. */
+	@Override
+	public void process(File file, OrderEventHandler handler) throws InterruptedException {
+		Preconditions.checkArgument(file != null && file.isFile(), "Input file must point to an OS file");
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			process(channel, handler);
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		}
+	}
+
+	/** Passes all orders of given stream to given handler. Returns once the handler received the last one. */
+	public void process(InputStream inputStream, OrderEventHandler handler) throws InterruptedException {
+		Preconditions.checkArgument(inputStream != null, "InputStream cannot be null");
+
+		process(Channels.newChannel(inputStream), handler);
+	}
+
+	private void process(ReadableByteChannel channel, OrderEventHandler handler) throws InterruptedException {
+		Preconditions.checkArgument(handler != null, "Handler cannot be null");
+
+		Run run = new Run(channel);
+		run.start();
+		try {
+			run.dispatch(handler);
+		} finally {
+			run.stop();
+		}
+		run.rethrowFailure();
+	}
+
+	/** Queues and state of processing a single input. */
+	private class Run {
+		private final ReadableByteChannel channel;
+
+		private final BlockingQueue<ByteBuffer> filledChunks = new ArrayBlockingQueue<>(chunkQueueDepth + 1);
+
+		private final BlockingQueue<ByteBuffer> freeChunks = new ArrayBlockingQueue<>(chunkQueueDepth + 1);
+
+		private final BlockingQueue<OrderBatch> filledBatches = new ArrayBlockingQueue<>(batchQueueDepth + 1);
+
+		private final BlockingQueue<OrderBatch> freeBatches = new ArrayBlockingQueue<>(batchQueueDepth + 1);
+
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		private final Thread[] threads = new Thread[2];
+
+		Run(ReadableByteChannel channel) {
+			this.channel = channel;
+			// One more than queued, so that the producing stage can fill one while the queue is full
+			for (int i = 0; i <= chunkQueueDepth; i++) {
+				freeChunks.add(ByteBuffer.allocateDirect(chunkSize));
+			}
+			for (int i = 0; i <= batchQueueDepth; i++) {
+				freeBatches.add(new OrderBatch(batchSize));
+			}
+		}
+
+		void start() {
+			threads[0] = start(new Reading(), "order-pipeline-reading");
+			threads[1] = start(new Decoding(), "order-pipeline-decoding");
+		}
+
+		/** Waits for stage threads, interrupting those still blocked on a dispatcher which gave up. */
+		void stop() throws InterruptedException {
+			for (Thread thread : threads) {
+				thread.interrupt();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		private Thread start(final Stage stage, String name) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						stage.run();
+					} catch (InterruptedException e) {
+						// Dispatching stopped, nobody waits for the rest
+					} catch (RuntimeException | IOException | Error e) {
+						failure.compareAndSet(null, e);
+						stage.abort();
+					}
+				}
+			}, name);
+			thread.setDaemon(true);
+			thread.start();
+			return thread;
+		}
+
+		void dispatch(OrderEventHandler handler) throws InterruptedException {
+			OrderBatch batch;
+			while ((batch = filledBatches.take()) != OrderBatch.END) {
+				batch.drainTo(handler);
+				freeBatches.put(batch);
+			}
+		}
+
+		void rethrowFailure() {
+			Throwable cause = failure.get();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else if (cause != null) {
+				throw new OrderReaderException(cause);
+			}
+		}
+
+		/** Fills chunks from the channel until it is exhausted. */
+		class Reading implements Stage {
+			@Override
+			public void run() throws InterruptedException, IOException {
+				while (true) {
+					ByteBuffer chunk = freeChunks.take();
+					chunk.clear();
+					int read;
+					do {
+						read = channel.read(chunk);
+					} while (read >= 0 && chunk.hasRemaining());
+					chunk.flip();
+					if (chunk.hasRemaining()) {
+						filledChunks.put(chunk);
+					}
+					if (read < 0) {
+						filledChunks.put(END_OF_INPUT);
+						return;
+					}
+				}
+			}
+
+			@Override
+			public void abort() {
+				filledChunks.offer(END_OF_INPUT);
+			}
+		}
+
+		/** Decodes chunks into batches. An element split between chunks is carried over to the next one. */
+		class Decoding implements Stage {
+			private final OrderDecoder decoder = new OrderDecoder(priceScale);
+
+			/** Undecoded bytes: the tail of the previous chunk followed by the current one. */
+			private final ByteBuffer pending = ByteBuffer.allocate(2 * chunkSize);
+
+			private OrderBatch batch;
+
+			@Override
+			public void run() throws InterruptedException {
+				pending.flip();
+				batch = freeBatches.take();
+				ByteBuffer chunk;
+				while ((chunk = filledChunks.take()) != END_OF_INPUT) {
+					pending.compact();
+					if (pending.position() > chunkSize) {
+						throw new OrderReaderException("Element is longer than a chunk of " + chunkSize + " bytes");
+					}
+					pending.put(chunk);
+					pending.flip();
+					freeChunks.put(chunk);
+
+					decodeAll();
+				}
+
+				if (pending.hasRemaining()) {
+					throw new OrderReaderException("Last element is not terminated");
+				}
+				if (batch.size > 0) {
+					filledBatches.put(batch);
+				}
+				filledBatches.put(OrderBatch.END);
+			}
+
+			@Override
+			public void abort() {
+				filledBatches.clear();
+				filledBatches.offer(OrderBatch.END);
+			}
+
+			private void decodeAll() throws InterruptedException {
+				OrderMessage message;
+				while ((message = decoder.decode(pending)) != OrderMessage.EMPTY) {
+					if (message.isAddMessage()) {
+						AddOrderMessage add = message.asAddMessage();
+						batch.add(add.getBookId(), OperationType.valueOf(add.getOperation()), add.getOrderId(), add.getPrice(), add.getVolume());
+					} else if (message.isModifyMessage()) {
+						ModifyOrderMessage modify = message.asModifyMessage();
+						batch.add(modify.getBookId(), OperationType.MODIFY, modify.getOrderId(), modify.getPrice(), modify.getVolume());
+					} else {
+						batch.add(message.getBookId(), OperationType.DELETE, message.getOrderId(), 0L, 0L);
+					}
+
+					if (batch.isFull()) {
+						filledBatches.put(batch);
+						batch = freeBatches.take();
+					}
+				}
+			}
+		}
+	}
+
+	/** Body of a stage thread. */
+	private interface Stage {
+		void run() throws InterruptedException, IOException;
+
+		/** Lets the following stage finish after this one failed. */
+		void abort();
+	}
+}
@@ -1,43 +1,56 @@
 package pl.ciruk.nordea.orders.reader;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.math.BigDecimal;
-import java.util.Iterator;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Strings;
 
 /**
  * Serialized orders processor. <br/>
- * Reads an input file using streaming API.
+ * Reads an input file using streaming API. 
+ * Implementation is chosen with {@link Mode}; {@link Mode#CURSOR} is used unless stated otherwise.
  * 
  * @author piotr.ciruk
  * 
  */
-public class OrderReader implements Closeable, AutoCloseable {
-	private XMLEventReader eventReader;
+public abstract class OrderReader implements Closeable, AutoCloseable {
+	/** Available ways of reading orders. */
+	public enum Mode {
+		/** 
+		 * StAX event API. Creates a new message and several XML event objects per order. 
+		 * Kept as a fallback for parsers with a poor cursor implementation. 
+		 */
+		EVENT,
+		/** StAX cursor API. Reads attributes by index and reuses messages. */
+		CURSOR,
+		/** 
+		 * Hand-rolled scanner of a memory-mapped file, see {@link OrderDecoder}. Files only. 
+		 * Reuses messages and interns book ids, so reading allocates nothing per order. 
+		 */
+		MAPPED;
+	}
 	
 	/** Names of XML nodes. */
-	class ElementNames {
+	static class ElementNames {
 		static final String ADD_ORDER = "AddOrder";
 		
 		static final String DELETE_ORDER = "DeleteOrder";
+		
+		static final String MODIFY_ORDER = "ModifyOrder";
 	}
 	
 	/** XML Attributes' names. */
-	class AttributesLocalParts {
+	static class AttributesLocalParts {
 		static final String BOOK = "book";
 		
 		static final String ORDER_ID = "orderId";
@@ -49,134 +62,86 @@ public class OrderReader implements Closeable, AutoCloseable {
 		static final String VOLUME = "volume";
 	}
 	
+	protected final PriceScale priceScale;
+	
 	/** Creates a reader to get data from given file. */
 	public static OrderReader from(File file) {
+		return from(file, PriceScale.DEFAULT);
+	}
+	
+	/** Creates a reader to get data from given file. Prices are converted to ticks of given scale. */
+	public static OrderReader from(File file, PriceScale priceScale) {
+		return from(file, Mode.CURSOR, priceScale);
+	}
+	
+	/** Creates a reader of given kind to get data from given file. Prices are converted to ticks of given scale. */
+	public static OrderReader from(File file, Mode mode, PriceScale priceScale) {
 		Preconditions.checkArgument(file != null, "Input file cannot be null");
 		Preconditions.checkArgument(file.isFile(), "Input file must point to an OS file");
+		Preconditions.checkArgument(mode != null, "Mode cannot be null");
+		Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
 
 		try {
-			return new OrderReader(file);
-		} catch (FileNotFoundException | XMLStreamException e) {
+			switch (mode) {
+				case EVENT:
+					return new EventOrderReader(new FileReader(file), priceScale);
+				case MAPPED:
+					return new MappedOrderReader(file, priceScale);
+				case CURSOR:
+				default:
+					return new CursorOrderReader(new BufferedInputStream(new FileInputStream(file)), priceScale);
+			}
+		} catch (IOException | XMLStreamException e) {
 			throw new OrderReaderException(e);
 		}
 	}
 	
 	/** Creates a reader to get data from given stream. */
 	public static OrderReader from(InputStream inputStream) {
+		return from(inputStream, PriceScale.DEFAULT);
+	}
+	
+	/** Creates a reader to get data from given stream. Prices are converted to ticks of given scale. */
+	public static OrderReader from(InputStream inputStream, PriceScale priceScale) {
+		return from(inputStream, Mode.CURSOR, priceScale);
+	}
+	
+	/** Creates a reader of given kind to get data from given stream. Prices are converted to ticks of given scale. */
+	public static OrderReader from(InputStream inputStream, Mode mode, PriceScale priceScale) {
 		Preconditions.checkArgument(inputStream != null, "InputStream cannot be null");
+		Preconditions.checkArgument(mode != null, "Mode cannot be null");
+		Preconditions.checkArgument(mode != Mode.MAPPED, "Only files can be memory-mapped");
+		Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
 		
 		try {
-			return new OrderReader(inputStream);
+			switch (mode) {
+				case EVENT:
+					return new EventOrderReader(new InputStreamReader(inputStream), priceScale);
+				case CURSOR:
+				default:
+					return new CursorOrderReader(inputStream, priceScale);
+			}
 		} catch (XMLStreamException e) {
 			throw new OrderReaderException(e);
 		}
 	}
 	
-	private OrderReader(File file) throws FileNotFoundException, XMLStreamException {
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		eventReader = factory.createXMLEventReader(new FileReader(file));
-	}
-	
-	private OrderReader(InputStream inputStream) throws XMLStreamException {
-		XMLInputFactory factory = XMLInputFactory.newInstance();
-		eventReader = factory.createXMLEventReader(new InputStreamReader(inputStream));
+	protected OrderReader(PriceScale priceScale) {
+		this.priceScale = priceScale;
 	}
 	
 	/** Indicates whether there are orders left for reading. */
-	public boolean hasNext() {
-		return eventReader.hasNext();
-	}
+	public abstract boolean hasNext();
 	
 	/** 
 	 * Reads next {@link OrderMessage}. <br/>
 	 * Should be called along with {@link #hasNext()} method.
+	 * Depending on the {@link Mode}, returned message might be reused by subsequent calls,
+	 * so it should be consumed before the next one is read.
 	 */
-	@SuppressWarnings("unchecked")
-	public OrderMessage next() {
-		OrderMessage message = OrderMessage.EMPTY;
-		
-		try {
-			XMLEvent event = null;
-			
-			// Read first XML start element
-			do {
-				event = eventReader.nextEvent();
-			} while (eventReader.hasNext() && !event.isStartElement());
-				
-			if (event.isStartElement()) {
-				StartElement startElement = event.asStartElement();
-				if (ElementNames.ADD_ORDER.equals(startElement.getName().getLocalPart())) {
-					message = new AddOrderMessage();
-					
-					populateOrderMessage(message.asAddMessage(), startElement.getAttributes());
-				} else if (ElementNames.DELETE_ORDER.equals(startElement.getName().getLocalPart())) {
-					message = new DeleteOrderMessage();
-					
-					populateOrderMessage(message, startElement.getAttributes());
-				}
-			}
-		} catch (XMLStreamException e) {
-			throw new OrderReaderException(e);
-		}
-		
-		return message;
-	}
+	public abstract OrderMessage next();
 	
 	/** Closes this reader and frees associated resources. */
-	public void close() {
-		try {
-			eventReader.close();
-		} catch (XMLStreamException e) {
-			throw new OrderReaderException(e);
-		}
-	}
-	
-	private void populateOrderMessage(OrderMessage message, Iterator<Attribute> attributes) {
-		while (attributes.hasNext()) {
-			Attribute attribute = attributes.next();
-			switch (attribute.getName().getLocalPart()) {
-				case AttributesLocalParts.BOOK :
-					message.setBookId(attribute.getValue());
-					break;
-				case AttributesLocalParts.ORDER_ID:
-					if (!Strings.isNullOrEmpty(attribute.getValue())) {
-						message.setOrderId(Long.valueOf(attribute.getValue()));
-					}
-					break;
-				default:
-					break;
-			}
-		}
-	}
-	
-	private void populateOrderMessage(AddOrderMessage message, Iterator<Attribute> attributes) {
-		while (attributes.hasNext()) {
-			Attribute attribute = attributes.next();
-			if (Strings.isNullOrEmpty(attribute.getValue())) {
-				continue;
-			}
-			
-			switch (attribute.getName().getLocalPart()) {
-				case AttributesLocalParts.BOOK :
-					message.setBookId(attribute.getValue());
-					break;
-				case AttributesLocalParts.ORDER_ID:
-					message.setOrderId(Long.valueOf(attribute.getValue()));
-					break;
-				case AttributesLocalParts.OPERATION:
-					message.setOperation(attribute.getValue());
-					break;
-				case AttributesLocalParts.PRICE:
-					BigDecimal price = BigDecimal.valueOf(Double.valueOf(attribute.getValue()));
-					message.setPrice(price);
-					break;
-				case AttributesLocalParts.VOLUME:
-					Long volume = Long.valueOf(attribute.getValue());
-					message.setVolume(volume);
-					break;
-				default:
-					throw new OrderReaderException();
-			}
-		}
-	}
+	@Override
+	public abstract void close();
 }
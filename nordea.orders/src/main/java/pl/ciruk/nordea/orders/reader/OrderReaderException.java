@@ -14,6 +14,10 @@ public class OrderReaderException extends RuntimeException {
 		
 	}
 	
+	public OrderReaderException(String message) {
+		super(message);
+	}
+	
 	public OrderReaderException(Throwable cause) {
 		super(cause);
 	}
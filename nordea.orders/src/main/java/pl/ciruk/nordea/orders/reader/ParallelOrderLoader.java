@@ -0,0 +1,258 @@
+package pl.ciruk.nordea.orders.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Parses a file of orders in parallel. <br/>
+ * The file is split into chunks at element boundaries, i.e. just before <code>&lt;AddOrder</code>, <code>&lt;DeleteOrder</code> or <code>&lt;ModifyOrder</code>,
+ * which is safe since <code>&lt;</code> cannot appear in attribute values; order elements must not be commented out, though.
+ * Chunks are memory-mapped and decoded concurrently on a {@link ForkJoinPool}, each worker with its own {@link OrderDecoder}.
+ * Decoded chunks are then passed to an {@link OrderEventHandler} on the calling thread strictly in file order,
+ * so every book sees its orders in the same order as with a sequential reader. <br/>
+ * To bound memory, only <code>2 * parallelism</code> chunks are parsed ahead of the one being dispatched.
+ * Instances should be created with {@link ParallelOrderLoader.Builder} and can load one file at a time.
+ */
+public class ParallelOrderLoader implements OrderLoader {
+	/** Default number of bytes parsed by a single task. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+	/** Number of bytes inspected at once while looking for a boundary between chunks. */
+	private static final int BOUNDARY_PROBE_SIZE = 1 << 16;
+
+	private static final byte[][] ORDER_ELEMENTS = {
+		("<" + OrderReader.ElementNames.ADD_ORDER).getBytes(StandardCharsets.US_ASCII),
+		("<" + OrderReader.ElementNames.DELETE_ORDER).getBytes(StandardCharsets.US_ASCII),
+		("<" + OrderReader.ElementNames.MODIFY_ORDER).getBytes(StandardCharsets.US_ASCII)
+	};
+
+	public static class Builder {
+		private PriceScale priceScale = PriceScale.DEFAULT;
+
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+
+		private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+		private int batchSize = OrderPipeline.DEFAULT_BATCH_SIZE;
+
+		public Builder() {
+		}
+
+		/** Scale prices are converted to. */
+		public ParallelOrderLoader.Builder priceScale(PriceScale priceScale) {
+			this.priceScale = priceScale;
+			return this;
+		}
+
+		/** Number of threads parsing chunks; by default the number of available processors. */
+		public ParallelOrderLoader.Builder parallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/** Approximate number of bytes parsed by a single task. */
+		public ParallelOrderLoader.Builder chunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+			return this;
+		}
+
+		/** Number of orders in each of the batches a chunk is decoded to. */
+		public ParallelOrderLoader.Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public ParallelOrderLoader build() {
+			Preconditions.checkArgument(priceScale != null, "PriceScale cannot be null");
+			Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive");
+			Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+			Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+
+			return new ParallelOrderLoader(this);
+		}
+	}
+
+	private final PriceScale priceScale;
+
+	private final int parallelism;
+
+	private final int chunkSize;
+
+	private final int batchSize;
+
+	/** Batches already dispatched, shared by all tasks. */
+	private final Queue<OrderBatch> freeBatches = new ConcurrentLinkedQueue<>();
+
+	private final ThreadLocal<OrderDecoder> decoders = new ThreadLocal<OrderDecoder>() {
+		@Override
+		protected OrderDecoder initialValue() {
+			return new OrderDecoder(priceScale);
+		}
+	};
+
+	private ParallelOrderLoader(ParallelOrderLoader.Builder builder) {
+		this.priceScale = builder.priceScale;
+		this.parallelism = builder.parallelism;
+		this.chunkSize = builder.chunkSize;
+		this.batchSize = builder.batchSize;
+	}
+
+	/** Passes all orders of given file to given handler in file order. Returns once the handler received the last one. */
+	@Override
+	public void process(File file, OrderEventHandler handler) throws InterruptedException {
+		Preconditions.checkArgument(file != null && file.isFile(), "Input file must point to an OS file");
+		Preconditions.checkArgument(handler != null, "Handler cannot be null");
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ArrayDeque<ForkJoinTask<List<OrderBatch>>> parsed = new ArrayDeque<>();
+			long start = 0;
+			while (start < size || !parsed.isEmpty()) {
+				while (start < size && parsed.size() < 2 * parallelism) {
+					long end = boundary(channel, Math.min(start + chunkSize, size), size);
+					parsed.add(pool.submit(new ChunkTask(channel, start, end)));
+					start = end;
+				}
+
+				for (OrderBatch batch : parsed.poll().get()) {
+					batch.drainTo(handler);
+					freeBatches.add(batch);
+				}
+			}
+		} catch (IOException e) {
+			throw new OrderReaderException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new OrderReaderException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/** Returns offset of the first order element at or after <code>from</code>, or <code>size</code> if there is none. */
+	private static long boundary(FileChannel channel, long from, long size) throws IOException {
+		// Probes overlap, so that an element name cut off by the end of one is found by the next one
+		int overlap = 0;
+		for (byte[] element : ORDER_ELEMENTS) {
+			overlap = Math.max(overlap, element.length);
+		}
+		for (long probeStart = from; probeStart < size; probeStart += BOUNDARY_PROBE_SIZE - overlap) {
+			ByteBuffer probe = channel.map(MapMode.READ_ONLY, probeStart, Math.min(BOUNDARY_PROBE_SIZE, size - probeStart));
+			for (int i = 0; i < probe.limit(); i++) {
+				if (probe.get(i) == '<' && isOrderElement(probe, i)) {
+					return probeStart + i;
+				}
+			}
+			if (probeStart + probe.limit() == size) {
+				break;
+			}
+		}
+		return size;
+	}
+
+	private static boolean isOrderElement(ByteBuffer buffer, int from) {
+		for (byte[] element : ORDER_ELEMENTS) {
+			if (startsWith(buffer, from, element)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int from, byte[] prefix) {
+		if (buffer.limit() - from < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(from + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Decodes bytes <code>[start, end)</code> of the file into batches. */
+	private class ChunkTask extends RecursiveTask<List<OrderBatch>> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+
+		private final long start;
+
+		private final long end;
+
+		ChunkTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected List<OrderBatch> compute() {
+			if (end - start > Integer.MAX_VALUE) {
+				throw new OrderReaderException("No element boundary within 2 GB after byte " + start);
+			}
+
+			ByteBuffer chunk;
+			try {
+				chunk = channel.map(MapMode.READ_ONLY, start, end - start);
+			} catch (IOException e) {
+				throw new OrderReaderException(e);
+			}
+
+			OrderDecoder decoder = decoders.get();
+			List<OrderBatch> batches = Lists.newArrayList();
+			OrderBatch batch = null;
+			OrderMessage message;
+			while ((message = decoder.decode(chunk)) != OrderMessage.EMPTY) {
+				if (batch == null || batch.isFull()) {
+					batch = freeBatch();
+					batches.add(batch);
+				}
+
+				if (message.isAddMessage()) {
+					AddOrderMessage add = message.asAddMessage();
+					batch.add(add.getBookId(), OperationType.valueOf(add.getOperation()), add.getOrderId(), add.getPrice(), add.getVolume());
+				} else if (message.isModifyMessage()) {
+					ModifyOrderMessage modify = message.asModifyMessage();
+					batch.add(modify.getBookId(), OperationType.MODIFY, modify.getOrderId(), modify.getPrice(), modify.getVolume());
+				} else {
+					batch.add(message.getBookId(), OperationType.DELETE, message.getOrderId(), 0L, 0L);
+				}
+			}
+
+			if (chunk.hasRemaining()) {
+				// Chunks end where the next order element starts, so only the last one may hold an unfinished element
+				throw new OrderReaderException("Element at byte " + (start + chunk.position()) + " is not terminated");
+			}
+			return batches;
+		}
+
+		private OrderBatch freeBatch() {
+			OrderBatch batch = freeBatches.poll();
+			return batch != null ? batch : new OrderBatch(batchSize);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package pl.ciruk.nordea.orders.utils;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Hash map from <code>long</code> keys to non-negative <code>int</code> values, e.g. indices, without boxing. <br/>
+ * Entries live in two parallel arrays with open addressing and linear probing.
+ * Removal shifts the following entries of the probe sequence back instead of leaving tombstones,
+ * so lookups never slow down however many entries were removed.
+ * The table is kept at most half full and doubles when needed. Not thread-safe.
+ */
+public final class LongIntMap {
+	/** Returned for missing keys. */
+	public static final int NO_VALUE = -1;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] keys;
+
+	/** Values of entries; {@link #NO_VALUE} marks a free cell. */
+	private int[] values;
+
+	private int mask;
+
+	private int size;
+
+	/** Creates a map able to hold given number of entries without resizing. */
+	public LongIntMap(int expectedSize) {
+		Preconditions.checkArgument(expectedSize >= 0, "Expected size cannot be negative");
+
+		allocate(capacityFor(expectedSize));
+	}
+
+	/** Returns value of given key or {@link #NO_VALUE} if there is none. */
+	public int get(long key) {
+		for (int i = index(key); ; i = (i + 1) & mask) {
+			int value = values[i];
+			if (value == NO_VALUE || keys[i] == key) {
+				return value;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != NO_VALUE;
+	}
+
+	/**
+	 * Associates given value with given key.
+	 * @return Previous value of the key or {@link #NO_VALUE} if there was none
+	 */
+	public int put(long key, int value) {
+		Preconditions.checkArgument(value >= 0, "Value cannot be negative");
+
+		int i = index(key);
+		for (; values[i] != NO_VALUE; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int previous = values[i];
+				values[i] = value;
+				return previous;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size > (mask + 1) / 2) {
+			resize((mask + 1) * 2);
+		}
+		return NO_VALUE;
+	}
+
+	/**
+	 * Removes entry of given key, looking it up only once.
+	 * @return Removed value or {@link #NO_VALUE} if there was no such key
+	 */
+	public int remove(long key) {
+		for (int i = index(key); values[i] != NO_VALUE; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int removed = values[i];
+				shiftBack(i);
+				size--;
+				return removed;
+			}
+		}
+		return NO_VALUE;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Closes the gap at given cell: every following entry of the probe sequence which would not be found
+	 * past the gap is moved into it, leaving a new gap behind, until a free cell is reached.
+	 */
+	private void shiftBack(int gap) {
+		for (int i = (gap + 1) & mask; values[i] != NO_VALUE; i = (i + 1) & mask) {
+			int home = index(keys[i]);
+			// The entry may move if the gap lies between its home cell and its current one
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		values[gap] = NO_VALUE;
+	}
+
+	private void resize(int capacity) {
+		Preconditions.checkState(capacity <= MAX_CAPACITY, "Map is too large");
+
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != NO_VALUE) {
+				int j = index(oldKeys[i]);
+				while (values[j] != NO_VALUE) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+		mask = capacity - 1;
+	}
+
+	/** Home cell of given key. Ids are often sequential, so bits are mixed before masking. */
+	private int index(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		long capacity = MIN_CAPACITY;
+		while (capacity < 2L * expectedSize) {
+			capacity <<= 1;
+		}
+		Preconditions.checkArgument(capacity <= MAX_CAPACITY, "Expected size is too large");
+		return (int) capacity;
+	}
+}
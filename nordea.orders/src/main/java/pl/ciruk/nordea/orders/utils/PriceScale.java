@@ -0,0 +1,117 @@
+package pl.ciruk.nordea.orders.utils;
+
+import java.math.BigDecimal;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Fixed-point representation of prices. <br/>
+ * A price is kept as a <code>long</code> number of ticks, where a tick is <code>10^-decimals</code>,
+ * e.g. with 2 decimals price 101.5 is stored as 10150.
+ * {@link BigDecimal} is meant only for the edges, i.e. tests and printing.
+ */
+public final class PriceScale {
+	/** Four decimal places, i.e. a tick of 0.0001. */
+	public static final PriceScale DEFAULT = new PriceScale(4);
+
+	private static final int MAX_DECIMALS = 18;
+
+	private final int decimals;
+
+	public PriceScale(int decimals) {
+		Preconditions.checkArgument(decimals >= 0 && decimals <= MAX_DECIMALS, "Number of decimals must be between 0 and %s", MAX_DECIMALS);
+
+		this.decimals = decimals;
+	}
+
+	/**
+	 * Converts given price to ticks.
+	 * @throws ArithmeticException if price has more significant decimals than this scale allows
+	 */
+	public long toTicks(BigDecimal price) {
+		return price.movePointRight(decimals).longValueExact();
+	}
+
+	/** Converts given number of ticks back to a decimal price. */
+	public BigDecimal toDecimal(long ticks) {
+		return BigDecimal.valueOf(ticks, decimals);
+	}
+
+	/** Parses given decimal text to ticks. */
+	public long parse(CharSequence text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses decimal text from the given range of characters straight to ticks. <br/>
+	 * Accepts an optional minus sign, digits and an optional decimal point.
+	 * Trailing decimal zeros beyond the scale are allowed, so "101.0" and "101.00" give the same value.
+	 * @throws NumberFormatException if text is not a decimal number or does not fit the scale
+	 */
+	public long parse(CharSequence text, int start, int end) {
+		if (start >= end) {
+			throw new NumberFormatException("Empty price");
+		}
+
+		boolean negative = text.charAt(start) == '-';
+		int position = negative ? start + 1 : start;
+
+		long ticks = 0;
+		int fractionDigits = -1;
+		boolean anyDigit = false;
+		for (; position < end; position++) {
+			char c = text.charAt(position);
+			if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+				continue;
+			}
+			if (c < '0' || c > '9') {
+				throw invalid(text, start, end);
+			}
+			anyDigit = true;
+
+			int digit = c - '0';
+			if (fractionDigits >= 0) {
+				if (fractionDigits == decimals) {
+					// Only zeros may exceed the scale
+					if (digit != 0) {
+						throw invalid(text, start, end);
+					}
+					continue;
+				}
+				fractionDigits++;
+			}
+			ticks = accumulate(ticks, digit, text, start, end);
+		}
+
+		if (!anyDigit) {
+			throw invalid(text, start, end);
+		}
+
+		for (int i = Math.max(fractionDigits, 0); i < decimals; i++) {
+			ticks = accumulate(ticks, 0, text, start, end);
+		}
+
+		return negative ? -ticks : ticks;
+	}
+
+	public int getDecimals() {
+		return decimals;
+	}
+
+	private static long accumulate(long ticks, int digit, CharSequence text, int start, int end) {
+		if (ticks > (Long.MAX_VALUE - digit) / 10) {
+			throw invalid(text, start, end);
+		}
+		return ticks * 10 + digit;
+	}
+
+	private static NumberFormatException invalid(CharSequence text, int start, int end) {
+		return new NumberFormatException("Invalid price: \"" + text.subSequence(start, end) + "\"");
+	}
+
+	@Override
+	public String toString() {
+		return "PriceScale[" + decimals + "]";
+	}
+}
@@ -0,0 +1,138 @@
+package pl.ciruk.nordea.orders.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+public class BookDepthTest {
+	@Test
+	public void shouldCaptureTopLevels() {
+		OrderBook book = new OrderBook("book", null, new OrderBookOptions.Builder().publishDepth(true).depth(2).build());
+		BookDepth empty = book.getDepth();
+		assertEquals(0, empty.getBidLevels());
+		assertEquals(0, empty.getAskLevels());
+
+		process(book, OperationType.BUY, 1, 99, 1);
+		process(book, OperationType.BUY, 2, 99, 2);
+		process(book, OperationType.BUY, 3, 98, 3);
+		process(book, OperationType.BUY, 4, 97, 4);
+		process(book, OperationType.SELL, 5, 101, 5);
+		BookDepth depth = book.getDepth();
+
+		assertEquals(2, depth.getBidLevels());
+		assertEquals(99, depth.getBidPrice(0));
+		assertEquals(3, depth.getBidVolume(0));
+		assertEquals(2, depth.getBidOrders(0));
+		assertEquals(98, depth.getBidPrice(1));
+		assertEquals(1, depth.getAskLevels());
+		assertEquals(5, depth.getAskVolume(0));
+		assertTrue(depth.getVersion() > empty.getVersion());
+
+		// Changes below the top do not publish, changes within it leave earlier views intact
+		process(book, OperationType.BUY, 6, 96, 6);
+		assertSame(depth, book.getDepth());
+		process(book, OperationType.SELL, 7, 99, 2);
+		assertEquals(1, book.getDepth().getBidVolume(0));
+		assertEquals(3, depth.getBidVolume(0));
+	}
+
+	@Test
+	public void shouldNotPublishByDefault() {
+		OrderBook book = new OrderBook("book", null);
+		process(book, OperationType.BUY, 1, 99, 1);
+
+		assertNull(book.getDepth());
+		assertNull(book.marketData);
+	}
+
+	@Test
+	public void shouldGiveConsistentViewsWhileMatching() throws Exception {
+		final OrderBookContainer container = new OrderBookContainer.Builder()
+				.options(new OrderBookOptions.Builder().publishDepth(true).depth(5).build())
+				.shards(1)
+				.build();
+		container.register(Collections.singleton("book"));
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicLong views = new AtomicLong();
+		final AtomicReference<String> failure = new AtomicReference<>();
+
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long lastVersion = -1;
+				while (!done.get() && failure.get() == null) {
+					BookDepth depth = container.getDepth("book");
+					String problem = check(depth, lastVersion);
+					if (problem != null) {
+						failure.set(problem + ": " + depth);
+					}
+					lastVersion = depth.getVersion();
+					views.incrementAndGet();
+				}
+			}
+		});
+		reader.start();
+
+		Random random = new Random(3);
+		for (int i = 1; i <= 200000; i++) {
+			OperationType operationType = random.nextInt(4) == 0 ? OperationType.DELETE : (random.nextBoolean() ? OperationType.BUY : OperationType.SELL);
+			long orderId = operationType == OperationType.DELETE ? 1 + random.nextInt(i) : i;
+			container.process("book", operationType, orderId, 90 + random.nextInt(20), 1 + random.nextInt(10));
+		}
+		container.finishProcessing();
+		done.set(true);
+		reader.join();
+
+		assertNull(failure.get());
+		assertTrue(views.get() > 0);
+		assertNotNull(container.getDepth("book"));
+		assertNull(container.getDepth("unknown"));
+	}
+
+	/** Returns what is wrong with given view, or <code>null</code>. A view of a book is never crossed, since crossing orders match. */
+	private static String check(BookDepth depth, long lastVersion) {
+		if (depth.getVersion() < lastVersion) {
+			return "Older view";
+		}
+		for (int i = 1; i < depth.getBidLevels(); i++) {
+			if (depth.getBidPrice(i) >= depth.getBidPrice(i - 1)) {
+				return "Bids out of order";
+			}
+		}
+		for (int i = 1; i < depth.getAskLevels(); i++) {
+			if (depth.getAskPrice(i) <= depth.getAskPrice(i - 1)) {
+				return "Asks out of order";
+			}
+		}
+		if (depth.getBidLevels() > 0 && depth.getAskLevels() > 0 && depth.getBidPrice(0) >= depth.getAskPrice(0)) {
+			return "Crossed";
+		}
+		for (int i = 0; i < depth.getBidLevels(); i++) {
+			if (depth.getBidVolume(i) < depth.getBidOrders(i) || depth.getBidOrders(i) <= 0) {
+				return "Bid level without volume";
+			}
+		}
+		for (int i = 0; i < depth.getAskLevels(); i++) {
+			if (depth.getAskVolume(i) < depth.getAskOrders(i) || depth.getAskOrders(i) <= 0) {
+				return "Ask level without volume";
+			}
+		}
+		return null;
+	}
+
+	private static void process(OrderBook book, OperationType operationType, long orderId, long price, long volume) {
+		book.process(operationType, orderId, price, volume, 0L);
+	}
+}
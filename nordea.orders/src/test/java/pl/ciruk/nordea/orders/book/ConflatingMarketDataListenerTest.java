@@ -0,0 +1,70 @@
+package pl.ciruk.nordea.orders.book;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.collect.Lists;
+
+public class ConflatingMarketDataListenerTest {
+	private final ConflatingMarketDataListener conflater = new ConflatingMarketDataListener();
+
+	private final OrderBook book = new OrderBook("book", null, new OrderBookOptions.Builder().marketDataListener(conflater).build());
+
+	@Test
+	public void shouldPassNetChangesOnly() {
+		process(OperationType.SELL, 1, 101, 5);
+		process(OperationType.SELL, 2, 102, 5);
+		drain();
+
+		process(OperationType.SELL, 3, 101, 1);
+		process(OperationType.SELL, 4, 101, 1);
+		process(OperationType.BUY, 5, 102, 12);
+		process(OperationType.SELL, 6, 102, 3);
+		process(OperationType.SELL, 7, 103, 1);
+		process(OperationType.DELETE, 7, 0, 0);
+		process(OperationType.BUY, 8, 99, 1);
+
+		// 101 emptied, 102 emptied and refilled, 103 came and went, 99 is new
+		assertEquals(Arrays.asList(
+				"DELETE SELL 0@101",
+				"UPDATE SELL 3@102",
+				"ADD BUY 1@99",
+				"TOP 1@99 / 3@102"),
+				drain());
+		assertEquals(Arrays.<String>asList(), drain());
+	}
+
+	@Test
+	public void shouldKeepLevelUnknownToConsumer() {
+		process(OperationType.BUY, 1, 99, 1);
+		process(OperationType.BUY, 2, 99, 1);
+
+		assertEquals(Arrays.asList("ADD BUY 2@99", "TOP 2@99 / 0@0"), drain());
+	}
+
+	private void process(OperationType operationType, long orderId, long price, long volume) {
+		book.process(operationType, orderId, price, volume, 0L);
+	}
+
+	private List<String> drain() {
+		final List<String> drained = Lists.newArrayList();
+		conflater.drainTo(new MarketDataListener() {
+			@Override
+			public void onLevel(LevelUpdate update) {
+				drained.add(update.getAction() + " " + update.getSide() + " " + update.getVolume() + "@" + update.getPrice());
+			}
+
+			@Override
+			public void onTopOfBook(TopOfBook top) {
+				drained.add("TOP " + top.getBidVolume() + "@" + top.getBidPrice() + " / " + top.getAskVolume() + "@" + top.getAskPrice());
+			}
+		});
+		return drained;
+	}
+}
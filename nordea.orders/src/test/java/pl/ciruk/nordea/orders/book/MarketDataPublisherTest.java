@@ -0,0 +1,198 @@
+package pl.ciruk.nordea.orders.book;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.LevelUpdate.Action;
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+public class MarketDataPublisherTest {
+	private final List<String> updates = Lists.newArrayList();
+
+	private final MarketDataListener recorder = new MarketDataListener() {
+		@Override
+		public void onLevel(LevelUpdate update) {
+			updates.add(update.getAction() + " " + update.getSide() + " " + update.getOrders() + " x " + update.getVolume() + "@" + update.getPrice());
+		}
+
+		@Override
+		public void onTopOfBook(TopOfBook top) {
+			updates.add("TOP " + top.getBidVolume() + "@" + top.getBidPrice() + " / " + top.getAskVolume() + "@" + top.getAskPrice());
+		}
+	};
+
+	@Test
+	public void shouldPublishAggregatedLevels() {
+		OrderBook book = book(recorder, 10);
+
+		process(book, OperationType.SELL, 1, 101, 5);
+		assertUpdates("ADD SELL 1 x 5@101", "TOP 0@0 / 5@101");
+
+		process(book, OperationType.SELL, 2, 101, 7);
+		assertUpdates("UPDATE SELL 2 x 12@101", "TOP 0@0 / 12@101");
+
+		process(book, OperationType.SELL, 3, 102, 4);
+		assertUpdates("ADD SELL 1 x 4@102");
+
+		// Sweeps both orders of the best level and a part of the next one, reported once per level
+		process(book, OperationType.BUY, 4, 102, 13);
+		assertUpdates("DELETE SELL 0 x 0@101", "UPDATE SELL 1 x 3@102", "TOP 0@0 / 3@102");
+
+		process(book, OperationType.MODIFY, 3, 102, 1);
+		assertUpdates("UPDATE SELL 1 x 1@102", "TOP 0@0 / 1@102");
+
+		process(book, OperationType.BUY, 5, 100, 2);
+		assertUpdates("ADD BUY 1 x 2@100", "TOP 2@100 / 1@102");
+
+		process(book, OperationType.DELETE, 3, 0, 0);
+		assertUpdates("DELETE SELL 0 x 0@102", "TOP 2@100 / 0@0");
+
+		// Nothing changes
+		process(book, OperationType.DELETE, 3, 0, 0);
+		assertUpdates();
+	}
+
+	@Test
+	public void shouldPublishOnlyTopLevels() {
+		OrderBook book = book(recorder, 2);
+		process(book, OperationType.BUY, 1, 98, 1);
+		process(book, OperationType.BUY, 2, 99, 2);
+		updates.clear();
+
+		process(book, OperationType.BUY, 3, 97, 3);
+		assertUpdates();
+
+		process(book, OperationType.BUY, 4, 100, 4);
+		assertUpdates("ADD BUY 1 x 4@100", "DELETE BUY 0 x 0@98", "TOP 4@100 / 0@0");
+
+		process(book, OperationType.BUY, 5, 98, 5);
+		assertUpdates();
+
+		// Clears two levels, so two move up
+		process(book, OperationType.SELL, 6, 99, 6);
+		assertUpdates("DELETE BUY 0 x 0@100", "DELETE BUY 0 x 0@99", "ADD BUY 2 x 6@98", "ADD BUY 1 x 3@97", "TOP 6@98 / 0@0");
+	}
+
+	@Test
+	public void shouldPublishTopOfBookOnly() {
+		OrderBook book = book(recorder, 0);
+		process(book, OperationType.BUY, 1, 99, 1);
+		process(book, OperationType.BUY, 2, 98, 2);
+		process(book, OperationType.SELL, 3, 100, 3);
+
+		assertUpdates("TOP 1@99 / 0@0", "TOP 1@99 / 3@100");
+	}
+
+	@Test
+	public void shouldKeepSubscribersInSyncWithBook() {
+		final int depth = 5;
+		final Map<OperationType, Map<Long, Long>> view = Maps.newEnumMap(OperationType.class);
+		view.put(OperationType.BUY, Maps.<Long, Long>newHashMap());
+		view.put(OperationType.SELL, Maps.<Long, Long>newHashMap());
+		final TopOfBook[] top = { null };
+		OrderBook book = book(new MarketDataListener() {
+			@Override
+			public void onLevel(LevelUpdate update) {
+				Map<Long, Long> side = view.get(update.getSide());
+				if (update.getAction() == Action.DELETE) {
+					assertEquals(update.toString(), true, side.remove(update.getPrice()) != null);
+				} else {
+					assertEquals(update.toString(), update.getAction() == Action.UPDATE, side.containsKey(update.getPrice()));
+					side.put(update.getPrice(), update.getVolume());
+				}
+			}
+
+			@Override
+			public void onTopOfBook(TopOfBook update) {
+				top[0] = update;
+			}
+		}, depth);
+
+		Random random = new Random(5);
+		for (int i = 1; i <= 20000; i++) {
+			OperationType operationType = OperationType.values()[random.nextInt(OperationType.values().length)];
+			long orderId = operationType == OperationType.BUY || operationType == OperationType.SELL ? i : 1 + random.nextInt(i);
+			process(book, operationType, orderId, 90 + random.nextInt(20), 1 + random.nextInt(10));
+
+			assertEquals(topLevels(book.getBuys(), depth, Ordering.<Long>natural().reverse()), new TreeMap<>(view.get(OperationType.BUY)));
+			assertEquals(topLevels(book.getSells(), depth, Ordering.<Long>natural()), new TreeMap<>(view.get(OperationType.SELL)));
+			if (top[0] != null) {
+				assertEquals(book.getBuys().isEmpty() ? 0L : book.buyLevels.best().getVolume(), top[0].getBidVolume());
+				assertEquals(book.getSells().isEmpty() ? 0L : book.sellLevels.best().getPrice(), top[0].getAskPrice());
+			}
+		}
+	}
+
+	@Test
+	public void shouldPublishRecoveredBookAsNew() {
+		OrderBook book = book(recorder, 1);
+		// Replayed the way a journal is
+		book.suspendReports();
+		book.process(OperationType.BUY, 1, 99, 1);
+		book.process(OperationType.SELL, 2, 101, 2);
+		assertUpdates();
+
+		book.resumeReports();
+		process(book, OperationType.SELL, 3, 102, 3);
+		assertUpdates("ADD BUY 1 x 1@99", "ADD SELL 1 x 2@101", "TOP 1@99 / 2@101");
+	}
+
+	@Test
+	public void shouldPublishOncePerBatchOfQueuedOrders() throws InterruptedException {
+		BlockingQueue<Order> queue = new ArrayBlockingQueue<>(10);
+		OrderBook book = new OrderBook("book", queue, new OrderBookOptions.Builder().marketDataListener(recorder).batchSize(10).build());
+		queue.put(order(OperationType.SELL, 1, 101, 5));
+		queue.put(order(OperationType.SELL, 2, 101, 7));
+		queue.put(order(OperationType.SELL, 3, 102, 4));
+		queue.put(order(OperationType.BUY, 4, 102, 13));
+		queue.put(Order.EMPTY);
+
+		book.run();
+
+		// Level 101 came and went within the batch, so subscribers never learn about it
+		assertUpdates("ADD SELL 1 x 3@102", "TOP 0@0 / 3@102");
+	}
+
+	private static OrderBook book(MarketDataListener listener, int depth) {
+		return new OrderBook("book", null, new OrderBookOptions.Builder().marketDataListener(listener).depth(depth).build());
+	}
+
+	private static void process(OrderBook book, OperationType operationType, long orderId, long price, long volume) {
+		book.process(operationType, orderId, price, volume, 0L);
+	}
+
+	private static Order order(OperationType operationType, long orderId, long price, long volume) {
+		return new Order.Builder().id(orderId).operationType(operationType).price(price).volume(volume).build();
+	}
+
+	/** Volume by price of given number of best levels of a side given in priority order. */
+	private static Map<Long, Long> topLevels(List<Order> orders, int depth, Ordering<Long> priority) {
+		Map<Long, Long> levels = new TreeMap<>(priority);
+		for (Order order : orders) {
+			Long volume = levels.get(order.getPrice());
+			if (volume == null && levels.size() == depth) {
+				break;
+			}
+			levels.put(order.getPrice(), (volume != null ? volume : 0L) + order.getVolume());
+		}
+		return new TreeMap<>(levels);
+	}
+
+	private void assertUpdates(String... expected) {
+		assertEquals(Arrays.asList(expected), updates);
+		updates.clear();
+	}
+}
@@ -0,0 +1,248 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.metrics.BookMetrics;
+import pl.ciruk.nordea.orders.metrics.OrderBookMetrics;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+/**
+ * Guards the matching loop against per-match allocation. <br/>
+ * Uses HotSpot's per-thread allocation counter, so it is skipped on JVMs that do not provide it.
+ */
+public class OrderBookAllocationTest {
+	private static final int LEVELS = 100;
+
+	private static final int ORDERS_PER_LEVEL = 50;
+
+	/** Upper bound for bytes allocated by the measurement itself. */
+	private static final long TOLERANCE = 1024;
+
+	private com.sun.management.ThreadMXBean threads;
+
+	private long id = 1;
+
+	@Before
+	public void setUp() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	@Test
+	public void shouldNotAllocateWhileMatching() {
+		// Warm up, so that class loading and lazy initialization are not measured
+		matchWholeBook(OrderBookOptions.DEFAULT);
+
+		long allocated = matchWholeBook(OrderBookOptions.DEFAULT);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while matching", allocated < TOLERANCE);
+	}
+
+	@Test
+	public void shouldNotAllocateWhileReportingTrades() {
+		final long[] tradedVolume = {0};
+		OrderBookOptions options = new OrderBookOptions.Builder()
+				.tradeListener(new TradeListener() {
+					@Override
+					public void onTrade(TradeEvent trade) {
+						tradedVolume[0] += trade.getVolume();
+					}
+				})
+				.build();
+		matchWholeBook(options);
+
+		long allocated = matchWholeBook(options);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while matching", allocated < TOLERANCE);
+		Assert.assertEquals(2 * LEVELS * ORDERS_PER_LEVEL * 10, tradedVolume[0]);
+	}
+
+	@Test
+	public void shouldNotAllocateWhilePublishingMarketData() {
+		final long[] updates = {0, 0};
+		OrderBookOptions options = new OrderBookOptions.Builder()
+				.marketDataListener(new MarketDataListener() {
+					@Override
+					public void onLevel(LevelUpdate update) {
+						updates[0]++;
+					}
+
+					@Override
+					public void onTopOfBook(TopOfBook top) {
+						updates[1]++;
+					}
+				})
+				.build();
+		matchWholeBook(options);
+		updates[0] = 0;
+		updates[1] = 0;
+
+		long allocated = matchWholeBook(options);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while matching", allocated < TOLERANCE);
+		// Filling the book reports the top levels and the best one; then every buy updates or deletes its level,
+		// each deletion brings a level into the top, and every buy changes the best ask
+		int depth = OrderBookOptions.DEFAULT_DEPTH;
+		Assert.assertEquals(depth * ORDERS_PER_LEVEL + LEVELS * ORDERS_PER_LEVEL + (LEVELS - depth), updates[0]);
+		Assert.assertEquals(ORDERS_PER_LEVEL + LEVELS * ORDERS_PER_LEVEL, updates[1]);
+	}
+
+	@Test
+	public void shouldNotAllocateWhileInstrumented() {
+		OrderBookMetrics metrics = new OrderBookMetrics.Builder().build();
+		BookMetrics bookMetrics = metrics.register("ID");
+		matchWholeBook(OrderBookOptions.DEFAULT, bookMetrics);
+
+		long allocated = matchWholeBook(OrderBookOptions.DEFAULT, bookMetrics);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while matching", allocated < TOLERANCE);
+		Assert.assertEquals(4 * LEVELS * ORDERS_PER_LEVEL, bookMetrics.getMessages());
+		Assert.assertEquals(4 * LEVELS * ORDERS_PER_LEVEL, bookMetrics.getMatchTime().getCount());
+	}
+
+	@Test
+	public void shouldNotAllocateWhileDispatchingToActor() {
+		dispatchToActor(OrderBookOptions.DEFAULT);
+
+		long allocated = dispatchToActor(OrderBookOptions.DEFAULT);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while dispatching", allocated < TOLERANCE);
+	}
+
+	@Test
+	public void shouldNotAllocateWhileDeleting() {
+		OrderBookOptions options = new OrderBookOptions.Builder().expectedOrders(LEVELS * ORDERS_PER_LEVEL).build();
+		deleteWholeBook(options);
+
+		long allocated = deleteWholeBook(options);
+
+		Assert.assertTrue("Allocated " + allocated + " bytes while deleting", allocated < TOLERANCE);
+	}
+
+	/**
+	 * Fills a book with resting orders of both sides and deletes them in arrival order.
+	 * @return Bytes allocated by deletes
+	 */
+	private long deleteWholeBook(OrderBookOptions options) {
+		OrderBook book = new OrderBook("ID", new ArrayBlockingQueue<Order>(1), options);
+		long firstId = id;
+		for (int level = 0; level < LEVELS; level++) {
+			long price = PriceScale.DEFAULT.toTicks(BigDecimal.valueOf(100 + level));
+			for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+				book.process(i % 2 == 0 ? OperationType.BUY : OperationType.SELL, id++, i % 2 == 0 ? price : price + 1000000, 10);
+			}
+		}
+		long lastId = id;
+
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (long orderId = firstId; orderId < lastId; orderId++) {
+			book.process(OperationType.DELETE, orderId, 0L, 0L);
+		}
+		long after = threads.getThreadAllocatedBytes(threadId);
+
+		Assert.assertTrue(book.getBuys().isEmpty());
+		Assert.assertTrue(book.getSells().isEmpty());
+		return after - before;
+	}
+
+	/**
+	 * Fills a book run by a {@link BookActor} with resting sells and sweeps it with buys, posted as fields in bursts of a batch,
+	 * the way {@link OrderBookContainer} dispatches them. The actor runs on the calling thread, so both posting and processing are measured.
+	 * @return Bytes allocated during the sweep
+	 */
+	private long dispatchToActor(OrderBookOptions options) {
+		final Runnable[] scheduled = {null};
+		Executor caller = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				scheduled[0] = command;
+			}
+		};
+		int batchSize = OrderBookContainer.DEFAULT_BATCH_SIZE;
+		BookActor actor = new BookActor(new OrderBook("ID", null, options), caller, batchSize);
+
+		long[] prices = new long[LEVELS * ORDERS_PER_LEVEL];
+		for (int order = 0; order < prices.length; order++) {
+			prices[order] = PriceScale.DEFAULT.toTicks(BigDecimal.valueOf(100 + order / ORDERS_PER_LEVEL));
+		}
+		long firstBuy = id + prices.length;
+		for (int order = 0; order < prices.length; order++) {
+			actor.post(OperationType.SELL, id++, prices[order], 10, 0L);
+			if (order % batchSize == batchSize - 1) {
+				runScheduled(scheduled);
+			}
+		}
+		runScheduled(scheduled);
+
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int order = 0; order < prices.length; order++) {
+			actor.post(OperationType.BUY, firstBuy + order, prices[order], 10, 0L);
+			if (order % batchSize == batchSize - 1) {
+				runScheduled(scheduled);
+			}
+		}
+		runScheduled(scheduled);
+		long after = threads.getThreadAllocatedBytes(threadId);
+		id += prices.length;
+
+		Assert.assertTrue(actor.getBook().getBuys().isEmpty());
+		Assert.assertTrue(actor.getBook().getSells().isEmpty());
+		return after - before;
+	}
+
+	/** Runs the actor scheduled on the calling thread until it stops rescheduling itself. */
+	private static void runScheduled(Runnable[] scheduled) {
+		while (scheduled[0] != null) {
+			Runnable actor = scheduled[0];
+			scheduled[0] = null;
+			actor.run();
+		}
+	}
+
+	/**
+	 * Fills a book with resting sells and sweeps it with single-order buys.
+	 * @return Bytes allocated during the sweep
+	 */
+	private long matchWholeBook(OrderBookOptions options) {
+		return matchWholeBook(options, null);
+	}
+
+	private long matchWholeBook(OrderBookOptions options, BookMetrics metrics) {
+		OrderBook book = new OrderBook("ID", new ArrayBlockingQueue<Order>(1), options, metrics);
+		Order[] buys = new Order[LEVELS * ORDERS_PER_LEVEL];
+
+		for (int level = 0; level < LEVELS; level++) {
+			long price = PriceScale.DEFAULT.toTicks(BigDecimal.valueOf(100 + level));
+			for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+				book.process(new Order.Builder().id(id++).operationType(OperationType.SELL).price(price).volume(10).build());
+				buys[level * ORDERS_PER_LEVEL + i] = new Order.Builder().id(id++).operationType(OperationType.BUY).price(price).volume(10).build();
+			}
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (Order buy : buys) {
+			book.process(buy);
+		}
+		long after = threads.getThreadAllocatedBytes(threadId);
+
+		Assert.assertTrue(book.getBuys().isEmpty());
+		Assert.assertTrue(book.getSells().isEmpty());
+		return after - before;
+	}
+}
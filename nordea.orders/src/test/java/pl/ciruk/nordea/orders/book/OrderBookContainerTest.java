@@ -0,0 +1,275 @@
+package pl.ciruk.nordea.orders.book;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class OrderBookContainerTest {
+
+	private long id = 1;
+
+	@Test
+	public void shouldProcessMoreBooksThanWorkers() throws InterruptedException {
+		OrderBookContainer container = new OrderBookContainer.Builder()
+				.workers(2)
+				.batchSize(8)
+				.build();
+
+		shouldProcessAllBooks(container);
+	}
+
+	@Test
+	public void shouldProcessShardedBooks() throws InterruptedException {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			OrderBookContainer container = new OrderBookContainer.Builder()
+					.shards(3)
+					.ringSize(64)
+					.waitStrategy(waitStrategy)
+					.build();
+
+			shouldProcessAllBooks(container);
+		}
+	}
+
+	@Test
+	public void shouldCreateOneBookPerIdWithManyProducers() throws Exception {
+		final int producers = 8;
+		final int numberOfBooks = 200;
+		final int ordersPerProducer = 20000;
+		final OrderBookContainer container = new OrderBookContainer.Builder()
+				.workers(4)
+				.build();
+		final CyclicBarrier start = new CyclicBarrier(producers);
+		final AtomicLong ids = new AtomicLong();
+
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		List<Future<?>> results = Lists.newArrayList();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					for (int i = 0; i < ordersPerProducer; i++) {
+						// Producers walk the ids in different orders, so that they race on creating books
+						int book = (i * (producer + 1)) % numberOfBooks;
+						container.process("book-" + book, OperationType.SELL, ids.incrementAndGet(), 100, 1);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+		container.finishProcessing();
+
+		Set<String> bookIds = Sets.newHashSet();
+		long restingOrders = 0;
+		for (OrderBook book : container.getBooks()) {
+			Assert.assertTrue("Duplicated book " + book.id, bookIds.add(book.id));
+			Assert.assertSame(book, container.getBook(book.id));
+			restingOrders += book.getSells().size();
+		}
+		Assert.assertEquals(numberOfBooks, bookIds.size());
+		Assert.assertEquals((long) producers * ordersPerProducer, restingOrders);
+	}
+
+	@Test
+	public void shouldRegisterBooksUpFront() throws InterruptedException {
+		OrderBookContainer container = new OrderBookContainer();
+		container.register(Arrays.asList("book-1", "book-2", "book-1"));
+
+		Assert.assertEquals(2, container.getBooks().size());
+		OrderBook registered = container.getBook("book-2");
+
+		container.process("book-2", sell(100));
+		container.finishProcessing();
+
+		Assert.assertEquals(2, container.getBooks().size());
+		Assert.assertSame(registered, container.getBook("book-2"));
+		Assert.assertEquals(1, registered.getSells().size());
+	}
+
+	@Test
+	public void shouldPublishFinalLevelsOfBatchedBooks() throws InterruptedException {
+		List<OrderBookContainer.Builder> builders = Lists.newArrayList(
+				new OrderBookContainer.Builder().workers(2).batchSize(8),
+				new OrderBookContainer.Builder().shards(2).ringSize(64));
+		for (OrderBookContainer.Builder builder : builders) {
+			final Map<String, Long> published = Maps.newHashMap();
+			OrderBookContainer container = builder
+					.options(new OrderBookOptions.Builder()
+							.marketDataListener(new MarketDataListener() {
+								@Override
+								public void onLevel(LevelUpdate update) {
+									String level = update.getBookId() + " " + update.getSide() + " " + update.getPrice();
+									synchronized (published) {
+										if (update.getAction() == LevelUpdate.Action.DELETE) {
+											published.remove(level);
+										} else {
+											published.put(level, update.getVolume());
+										}
+									}
+								}
+
+								@Override
+								public void onTopOfBook(TopOfBook top) {
+									// Follows from levels
+								}
+							})
+							.build())
+					.build();
+
+			int numberOfBooks = 20;
+			for (int i = 0; i < 2000; i++) {
+				// Sells rest on five levels, every fourth order is a buy taking some of them or resting below
+				OperationType operationType = i % 4 == 3 ? OperationType.BUY : OperationType.SELL;
+				container.process("book-" + i % numberOfBooks, operationType, id++, 100 + i % 5, 1 + i % 3);
+			}
+			container.finishProcessing();
+
+			Map<String, Long> expected = Maps.newHashMap();
+			for (OrderBook book : container.getBooks()) {
+				addLevels(expected, book.id, OperationType.BUY, book.getBuys());
+				addLevels(expected, book.id, OperationType.SELL, book.getSells());
+			}
+			synchronized (published) {
+				Assert.assertEquals(expected, published);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void shouldReportFailedBookOnFinish() throws InterruptedException {
+		shouldReportFailedBook(new OrderBookContainer.Builder().workers(2));
+	}
+
+	@Test(timeout = 10000)
+	public void shouldReportFailedShardOnFinish() throws InterruptedException {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			shouldReportFailedBook(new OrderBookContainer.Builder().shards(2).waitStrategy(waitStrategy));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void shouldRejectOrdersOfFailedShardInsteadOfWaiting() throws InterruptedException {
+		OrderBookContainer container = new OrderBookContainer.Builder()
+				.options(new OrderBookOptions.Builder()
+						.tradeListener(new TradeListener() {
+							@Override
+							public void onTrade(TradeEvent trade) {
+								throw new IllegalStateException("Listener failed");
+							}
+						})
+						.build())
+				.shards(1)
+				.ringSize(16)
+				.waitStrategy(WaitStrategy.BUSY_SPIN)
+				.build();
+		container.process("book", sell(100));
+		container.process("book", OperationType.BUY, id++, 100, 10);
+
+		// The ring fills up soon after the shard stops, so dispatching must fail rather than spin
+		try {
+			while (true) {
+				container.process("book", sell(200));
+			}
+		} catch (OrderBookException e) {
+			Assert.assertEquals("Listener failed", e.getCause().getMessage());
+		}
+	}
+
+	private void shouldProcessAllBooks(OrderBookContainer container) throws InterruptedException {
+		int numberOfBooks = 500;
+		int ordersPerBook = 100;
+		for (int i = 0; i < ordersPerBook; i++) {
+			for (int book = 0; book < numberOfBooks; book++) {
+				container.process("book-" + book, sell(100 + i));
+			}
+		}
+		container.finishProcessing();
+
+		for (int book = 0; book < numberOfBooks; book++) {
+			OrderBook orderBook = container.getBook("book-" + book);
+			Assert.assertEquals(ordersPerBook, orderBook.getSells().size());
+			assertArrivalOrder(orderBook);
+		}
+	}
+
+	/** Adds volume of given orders by level, keyed the same way as published levels. */
+	private static void addLevels(Map<String, Long> levels, String bookId, OperationType side, List<Order> orders) {
+		for (Order order : orders) {
+			String level = bookId + " " + side + " " + order.getPrice();
+			Long volume = levels.get(level);
+			levels.put(level, (volume != null ? volume : 0L) + order.getVolume());
+		}
+	}
+
+	/** Lets the trade listener of one book throw and expects finishing to report it rather than wait for the book. */
+	private void shouldReportFailedBook(OrderBookContainer.Builder builder) throws InterruptedException {
+		final IllegalStateException listenerFailure = new IllegalStateException("Listener failed");
+		OrderBookContainer container = builder
+				.options(new OrderBookOptions.Builder()
+						.tradeListener(new TradeListener() {
+							@Override
+							public void onTrade(TradeEvent trade) {
+								throw listenerFailure;
+							}
+						})
+						.build())
+				.build();
+
+		container.process("book-1", sell(100));
+		container.process("book-2", sell(100));
+		container.process("book-1", OperationType.BUY, id++, 100, 10);
+		try {
+			container.finishProcessing();
+			Assert.fail("Failure of the book was not reported");
+		} catch (OrderBookException e) {
+			Assert.assertSame(listenerFailure, e.getCause());
+			Assert.assertEquals(0, e.getSuppressed().length);
+		}
+		Assert.assertEquals(1, container.getBook("book-2").getSells().size());
+
+		try {
+			container.process("book-1", sell(100));
+			Assert.fail("Order was dispatched to a failed book");
+		} catch (OrderBookException e) {
+			Assert.assertSame(listenerFailure, e.getCause());
+		}
+	}
+
+	/** Orders were dispatched with ascending ids, so a book must have sequenced them the same way. */
+	private void assertArrivalOrder(OrderBook book) {
+		long previousId = 0;
+		long previousSequence = 0;
+		for (Order sell : book.getSells()) {
+			Assert.assertTrue(sell.getId() > previousId);
+			Assert.assertTrue(sell.getSequence() > previousSequence);
+			previousId = sell.getId();
+			previousSequence = sell.getSequence();
+		}
+	}
+
+	private Order sell(long price) {
+		return new Order.Builder().id(id++).operationType(OperationType.SELL).price(price).volume(10).build();
+	}
+}
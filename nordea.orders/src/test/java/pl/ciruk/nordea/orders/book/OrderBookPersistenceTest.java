@@ -0,0 +1,210 @@
+package pl.ciruk.nordea.orders.book;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.BinaryFeed;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class OrderBookPersistenceTest {
+	private static final List<String> BOOK_IDS = Arrays.asList("book-1", "book/2", "księga 3");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(17);
+
+	private long nextId = 1;
+
+	@Test
+	public void shouldContinueFromRecoveredBooks() throws InterruptedException, IOException {
+		File directory = folder.newFolder();
+		Map<String, OrderBook> expected = Maps.newHashMap();
+		for (String bookId : BOOK_IDS) {
+			expected.put(bookId, new OrderBook(bookId, null));
+		}
+
+		for (int run = 0; run < 3; run++) {
+			// Snapshots are taken in the middle of runs, so that every run replays a part of the journal
+			OrderBookContainer container = new OrderBookContainer.Builder()
+					.workers(2)
+					.persistence(persistence(directory).snapshotInterval(700).build())
+					.build();
+			assertEquals(run > 0 ? BOOK_IDS.size() : 0, container.getBooks().size());
+			assertSameBooks(expected, container);
+
+			for (int i = 0; i < 2000; i++) {
+				dispatchRandomOrder(expected, container);
+			}
+			container.finishProcessing();
+			assertSameBooks(expected, container);
+		}
+	}
+
+	@Test
+	public void shouldRecoverFromJournalAlone() throws IOException {
+		File directory = folder.newFolder();
+		OrderBookPersistence persistence = persistence(directory).build();
+		OrderBook expected = new OrderBook("book", null);
+		OrderBook crashed = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		for (int i = 0; i < 5000; i++) {
+			processRandomOrder(expected, crashed);
+		}
+
+		// Never closed, so there is no snapshot and the rest of the mapped chunk is zeros
+		OrderBook recovered = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		assertFalse(new File(directory, "book" + OrderBookPersistence.SNAPSHOT_SUFFIX).exists());
+		assertSameOrders(expected, recovered);
+		assertEquals(5000, recovered.journal.getPosition());
+		assertEquals(expected.tradeCount, recovered.tradeCount);
+	}
+
+	@Test
+	public void shouldIgnoreTornRecords() throws IOException {
+		File directory = folder.newFolder();
+		OrderBookPersistence persistence = persistence(directory).snapshotInterval(Long.MAX_VALUE).build();
+		OrderBook book = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		book.process(OperationType.BUY, 1, 100, 10, 0L);
+		book.process(OperationType.SELL, 2, 200, 10, 0L);
+		book.journal.close();
+		new File(directory, "book" + OrderBookPersistence.SNAPSHOT_SUFFIX).delete();
+
+		// A record cut off before its type was written, followed by a part of one
+		File journal = new File(directory, "book" + OrderBookPersistence.JOURNAL_SUFFIX);
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+			file.seek(file.length() + BinaryFeed.ORDER_ID);
+			file.writeLong(Long.reverseBytes(3));
+			file.writeLong(Long.reverseBytes(200));
+			file.writeLong(Long.reverseBytes(5));
+			file.write(new byte[BinaryFeed.RECORD_SIZE - 1]);
+		}
+
+		OrderBook recovered = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		assertEquals(2, recovered.journal.getPosition());
+		assertEquals("[[BUY] 1; 100; 10]", recovered.getBuys().toString());
+		assertEquals("[[SELL] 2; 200; 10]", recovered.getSells().toString());
+
+		// Torn records get overwritten by the next ones
+		recovered.process(OperationType.SELL, 4, 100, 4, 0L);
+		recovered.journal.close();
+		OrderBook reopened = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		assertEquals("[[BUY] 1; 100; 6]", reopened.getBuys().toString());
+		assertEquals(3, reopened.journal.getPosition());
+	}
+
+	@Test
+	public void shouldNotReportTradesAgain() throws IOException {
+		File directory = folder.newFolder();
+		OrderBookPersistence persistence = persistence(directory).snapshotInterval(3).build();
+		final AtomicLong trades = new AtomicLong();
+		OrderBookOptions options = new OrderBookOptions.Builder()
+				.tradeListener(new TradeListener() {
+					@Override
+					public void onTrade(TradeEvent trade) {
+						trades.incrementAndGet();
+					}
+				})
+				.build();
+		OrderBook book = persistence.open("book", null, options, null);
+		for (int i = 1; i <= 10; i++) {
+			book.process(OperationType.BUY, 2 * i, 100, 1, 0L);
+			book.process(OperationType.SELL, 2 * i + 1, 100, 1, 0L);
+		}
+		assertEquals(10, trades.get());
+
+		// Neither closed nor snapshotted after the last orders, so some trades are replayed
+		OrderBook recovered = persistence.open("book", null, options, null);
+		assertEquals(10, trades.get());
+		assertEquals(10, recovered.tradeCount);
+		assertTrue(recovered.reportTrades);
+		recovered.process(OperationType.BUY, 100, 100, 1, 0L);
+		recovered.process(OperationType.SELL, 101, 100, 1, 0L);
+		assertEquals(11, trades.get());
+	}
+
+	@Test(expected = JournalException.class)
+	public void shouldRejectJournalOfOtherPriceScale() throws IOException {
+		OrderBookPersistence persistence = persistence(folder.newFolder()).build();
+		OrderBook book = persistence.open("book", null, OrderBookOptions.DEFAULT, null);
+		book.process(OperationType.BUY, 1, 100, 10, 0L);
+		book.journal.close();
+
+		persistence.open("book", null, new OrderBookOptions.Builder().priceScale(new PriceScale(2)).build(), null);
+	}
+
+	@Test(expected = JournalException.class)
+	public void shouldRejectJournalOfOtherBook() throws IOException {
+		File directory = folder.newFolder();
+		OrderBookPersistence persistence = persistence(directory).build();
+		persistence.open("book", null, OrderBookOptions.DEFAULT, null).journal.close();
+		new File(directory, "book" + OrderBookPersistence.JOURNAL_SUFFIX).renameTo(new File(directory, "koob" + OrderBookPersistence.JOURNAL_SUFFIX));
+
+		persistence.open("koob", null, OrderBookOptions.DEFAULT, null);
+	}
+
+	private static OrderBookPersistence.Builder persistence(File directory) {
+		return new OrderBookPersistence.Builder()
+				.directory(directory)
+				.fsyncPolicy(FsyncPolicy.NEVER)
+				.groupCommit(16);
+	}
+
+	/** Applies the same order, buying, selling, deleting or modifying, to a reference book and dispatches it to the container. */
+	private void dispatchRandomOrder(Map<String, OrderBook> expected, OrderBookContainer container) {
+		String bookId = BOOK_IDS.get(random.nextInt(BOOK_IDS.size()));
+		OperationType operationType = OperationType.values()[random.nextInt(OperationType.values().length)];
+		long orderId = operationType == OperationType.BUY || operationType == OperationType.SELL ? nextId++ : 1 + random.nextInt((int) nextId);
+		long price = 95 + random.nextInt(10);
+		long volume = 1 + random.nextInt(20);
+		expected.get(bookId).process(operationType, orderId, price, volume, 0L);
+		container.process(bookId, operationType, orderId, price, volume);
+	}
+
+	private void processRandomOrder(OrderBook first, OrderBook second) {
+		OperationType operationType = OperationType.values()[random.nextInt(OperationType.values().length)];
+		long orderId = operationType == OperationType.BUY || operationType == OperationType.SELL ? nextId++ : 1 + random.nextInt((int) nextId);
+		long price = 95 + random.nextInt(10);
+		long volume = 1 + random.nextInt(20);
+		first.process(operationType, orderId, price, volume, 0L);
+		second.process(operationType, orderId, price, volume, 0L);
+	}
+
+	private static void assertSameBooks(Map<String, OrderBook> expected, OrderBookContainer actual) {
+		for (OrderBook book : actual.getBooks()) {
+			assertSameOrders(expected.get(book.id), book);
+			assertEquals(expected.get(book.id).tradeCount, book.tradeCount);
+		}
+	}
+
+	private static void assertSameOrders(OrderBook expected, OrderBook actual) {
+		assertEquals(describe(expected.getBuys()), describe(actual.getBuys()));
+		assertEquals(describe(expected.getSells()), describe(actual.getSells()));
+	}
+
+	/** Orders with their sequence numbers, so that time priority is compared too. */
+	private static List<String> describe(List<Order> orders) {
+		List<String> described = Lists.newArrayList();
+		for (Order order : orders) {
+			described.add(order + " #" + order.getSequence());
+		}
+		return described;
+	}
+}
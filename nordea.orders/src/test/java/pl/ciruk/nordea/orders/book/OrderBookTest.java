@@ -1,6 +1,5 @@
 package pl.ciruk.nordea.orders.book;
 
-import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -11,6 +10,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
@@ -27,19 +27,51 @@ public class OrderBookTest {
 	@Before
 	public void setUp() throws Exception {
 		book = new OrderBook("ID", queue);
-		new Thread(book).start();
+	}
+	
+	/** Converts decimal price to ticks of the default scale. */
+	private static long price(String price) {
+		return PriceScale.DEFAULT.parse(price);
+	}
+	
+	/** Runs the book on the calling thread until all queued orders are processed. */
+	private void processQueued() throws InterruptedException {
+		queue.put(Order.EMPTY);
+		book.run();
+	}
+
+	@Test
+	public void shouldProcessOrdersTakenAfterEndOfProcessingOnNextRun() throws InterruptedException {
+		queue.put(new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100")).volume(10).build());
+		queue.put(Order.EMPTY);
+		queue.put(new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("101")).volume(20).build());
+		queue.put(Order.EMPTY);
+		queue.put(new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100")).volume(5).build());
+		
+		// Takes all orders at once, but processes them only up to the first end of processing
+		book.run();
+		Assert.assertEquals(1, book.getSells().size());
+		
+		book.run();
+		Assert.assertEquals(2, book.getSells().size());
+		Assert.assertEquals(10, book.getOrder(1L).getVolume());
+		
+		processQueued();
+		Assert.assertEquals(2, book.getSells().size());
+		Assert.assertEquals(5, book.getOrder(1L).getVolume());
+		Assert.assertTrue(book.getBuys().isEmpty());
 	}
 
 	@Test
 	public void shouldBeOrderedAsBuys() {
 		List<Order> orders = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(100.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(101.5)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(100.25)).volume(30).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(99.5)).volume(45).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(99.75)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(100.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(99.5)).volume(60).build());
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("101.5")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100.25")).volume(30).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("99.5")).volume(45).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("99.75")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("99.5")).volume(60).build());
 		for (Order order : orders) {
 			try {
 				queue.put(order);
@@ -48,7 +80,7 @@ public class OrderBookTest {
 			}
 		}
 		try {
-			queue.put(Order.EMPTY);
+			processQueued();
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
@@ -57,12 +89,12 @@ public class OrderBookTest {
 			Order first = book.buys.get(i-1);
 			Order second = book.buys.get(i);
 			
-			boolean ascendingPrices = first.getPrice().compareTo(second.getPrice()) < 0;
+			boolean ascendingPrices = first.getPrice() < second.getPrice();
 			Assert.assertFalse(ascendingPrices);
 			
-			if (first.getPrice().equals(second.getPrice())) {
-				boolean descendingTimestamps = first.getTimestamp().after(second.getTimestamp());
-				Assert.assertFalse(descendingTimestamps);
+			if (first.getPrice() == second.getPrice()) {
+				boolean descendingSequences = first.getSequence() > second.getSequence();
+				Assert.assertFalse(descendingSequences);
 			}
 		}
 	}
@@ -70,28 +102,28 @@ public class OrderBookTest {
 	@Test
 	public void shouldBeOrderedAsSells() throws InterruptedException {
 		List<Order> orders = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(101.5)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.25)).volume(30).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(99.5)).volume(45).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(99.75)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(99.5)).volume(60).build());
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("101.5")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.25")).volume(30).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("99.5")).volume(45).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("99.75")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("99.5")).volume(60).build());
 		for (Order order : orders) {
 			queue.put(order);
 		}
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		for (int i = 1; i < book.sells.size(); i++) {
 			Order first = book.sells.get(i-1);
 			Order second = book.sells.get(i);
 			
-			boolean descendingPrices = first.getPrice().compareTo(second.getPrice()) > 0;
+			boolean descendingPrices = first.getPrice() > second.getPrice();
 			Assert.assertFalse(descendingPrices);
 			
-			if (first.getPrice().equals(second.getPrice())) {
-				boolean ascendingTimestamps = first.getTimestamp().before(second.getTimestamp());
-				Assert.assertFalse(ascendingTimestamps);
+			if (first.getPrice() == second.getPrice()) {
+				boolean descendingSequences = first.getSequence() > second.getSequence();
+				Assert.assertFalse(descendingSequences);
 			}
 		}
 	}
@@ -99,20 +131,20 @@ public class OrderBookTest {
 	@Test
 	public void shouldMatchBuyWithAllSells() throws InterruptedException {
 		List<Order> sells = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(101.5)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(60).build());
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("101.5")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(60).build());
 		long totalSellVolume = 0;
-		BigDecimal maxSellPrice = BigDecimal.ZERO;
+		long maxSellPrice = 0;
 		for (Order sell : sells) {
 			queue.put(Order.copyOf(sell));
 			totalSellVolume += sell.getVolume();
-			maxSellPrice  = maxSellPrice.max(sell.getPrice());
+			maxSellPrice  = Math.max(maxSellPrice, sell.getPrice());
 		}
 		
 		Order buy = new Order.Builder().id(id++).operationType(OperationType.BUY).price(maxSellPrice).volume(totalSellVolume).build();
 		queue.put(buy);
 		
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		Assert.assertTrue(book.buys.isEmpty());
 		Assert.assertTrue(book.sells.isEmpty());
@@ -123,22 +155,26 @@ public class OrderBookTest {
 	@Test
 	public void shouldMatchBuyWithFirstSell() throws InterruptedException {
 		List<Order> sells = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(200.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(60).build());
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("200.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(60).build());
 		for (Order sell : sells) {
 			queue.put(Order.copyOf(sell));
 		}
 		
+		processQueued();
+		
 		// Create a buy order to match first sell (greater price, greater volume)
 		Order firstSell = book.sells.get(0);
 		Order buy = new Order.Builder()
 				.id(id++)
 				.operationType(OperationType.BUY)
-				.price(firstSell.getPrice().add(BigDecimal.ONE))
+				.price(firstSell.getPrice() + price("1"))
 				.volume(firstSell.getVolume()*5/4)
 				.build();
 		queue.put(buy);
 		
+		processQueued();
+		
 		Assert.assertFalse(book.buys.isEmpty());
 		Assert.assertFalse(book.sells.isEmpty());
 		
@@ -148,30 +184,32 @@ public class OrderBookTest {
 		// Ensure that first sell from the book has price greater than first buy
 		Order firstBuy = book.buys.get(0);
 		firstSell = book.sells.get(0);
-		Assert.assertTrue(firstSell.getPrice().compareTo(firstBuy.getPrice()) > 0);
+		Assert.assertTrue(firstSell.getPrice() > firstBuy.getPrice());
 	}
 	
 	@Test
 	public void shouldMatchBuyWithLastSell() throws InterruptedException {
 		List<Order> sells = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(200.0)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(150.0)).volume(30).build());
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("200.0")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("150.0")).volume(30).build());
 		for (Order sell : sells) {
 			queue.put(Order.copyOf(sell));
 		}
 		
+		processQueued();
+		
 		// Create a buy order to match first sell (greater price, greater volume)
 		Order lastSell = book.sells.get(book.sells.size() - 1);
 		Order buy = new Order.Builder()
 				.id(id++)
 				.operationType(OperationType.BUY)
-				.price(lastSell.getPrice().add(BigDecimal.ONE))
+				.price(lastSell.getPrice() + price("1"))
 				.volume(lastSell.getVolume()*4/5)
 				.build();
 		queue.put(buy);
 		
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		Assert.assertTrue(book.buys.isEmpty());
 		Assert.assertFalse(book.sells.isEmpty());
@@ -180,26 +218,26 @@ public class OrderBookTest {
 	@Test
 	public void shouldMatchSellWithAllBuys() throws InterruptedException {
 		List<Order> buys = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(201.5)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(100.0)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(150.0)).volume(65).build());
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("201.5")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100.0")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("150.0")).volume(65).build());
 		long totalBuyVolume = 0;
-		BigDecimal minBuyPrice = BigDecimal.ZERO;
+		long minBuyPrice = 0;
 		for (Order buy : buys) {
 			queue.put(Order.copyOf(buy));
 			totalBuyVolume += buy.getVolume();
-			minBuyPrice  = minBuyPrice.min(buy.getPrice());
+			minBuyPrice  = Math.min(minBuyPrice, buy.getPrice());
 		}
 		
 		Order sell = new Order.Builder()
 				.id(id++)
 				.operationType(OperationType.SELL)
-				.price(minBuyPrice.subtract(BigDecimal.valueOf(0.1)))
+				.price(minBuyPrice - price("0.1"))
 				.volume(totalBuyVolume)
 				.build();
 		queue.put(sell);
 		
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		Assert.assertTrue(book.buys.isEmpty());
 		Assert.assertTrue(book.sells.isEmpty());
@@ -208,24 +246,26 @@ public class OrderBookTest {
 	@Test
 	public void shouldMatchSellWithFirstBuy() throws InterruptedException {
 		List<Order> buys = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(201.5)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(100.0)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(150.0)).volume(65).build());
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("201.5")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("100.0")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("150.0")).volume(65).build());
 
 		for (Order buy : buys) {
 			queue.put(Order.copyOf(buy));
 		}
 		
+		processQueued();
+		
 		Order firstBuy = book.buys.get(0);
 		Order sell = new Order.Builder()
 				.id(id++)
 				.operationType(OperationType.SELL)
-				.price(firstBuy.getPrice().subtract(BigDecimal.ONE))
+				.price(firstBuy.getPrice() - price("1"))
 				.volume(firstBuy.getVolume()*5/4)
 				.build();
 		queue.put(sell);
 
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		Assert.assertFalse(book.buys.isEmpty());
 		Assert.assertFalse(book.sells.isEmpty());
@@ -233,25 +273,75 @@ public class OrderBookTest {
 		// Ensure that first sell from the book has price greater than first buy
 		firstBuy = book.buys.get(0);
 		Order firstSell = book.sells.get(0);
-		Assert.assertTrue(firstSell.getPrice().compareTo(firstBuy.getPrice()) > 0);
+		Assert.assertTrue(firstSell.getPrice() > firstBuy.getPrice());
 	}
 
+	@Test
+	public void shouldKeepArrivalOrderWithinPriceLevel() throws InterruptedException {
+		for (int i = 0; i < 1000; i++) {
+			queue.put(new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100")).volume(1).build());
+			if (queue.remainingCapacity() == 1) {
+				processQueued();
+			}
+		}
+		processQueued();
+		
+		long previousId = 0;
+		long previousSequence = 0;
+		for (Order sell : book.sells) {
+			Assert.assertTrue(sell.getId() > previousId);
+			Assert.assertTrue(sell.getSequence() > previousSequence);
+			previousId = sell.getId();
+			previousSequence = sell.getSequence();
+		}
+	}
+	
+	@Test
+	public void shouldReportTrades() throws InterruptedException {
+		final List<String> trades = Lists.newArrayList();
+		book = new OrderBook("ID", queue, new OrderBookOptions.Builder()
+				.tradeListener(new TradeListener() {
+					@Override
+					public void onTrade(TradeEvent trade) {
+						trades.add(trade.getSequence() + ":" + trade.getAggressorId() + "/" + trade.getPassiveId() 
+								+ ":" + trade.getVolume() + "@" + trade.getPrice());
+					}
+				})
+				.build());
+		
+		queue.put(new Order.Builder().id(1).operationType(OperationType.SELL).price(price("100.5")).volume(30).build());
+		queue.put(new Order.Builder().id(2).operationType(OperationType.SELL).price(price("100")).volume(20).build());
+		queue.put(new Order.Builder().id(3).operationType(OperationType.SELL).price(price("100")).volume(20).build());
+		queue.put(new Order.Builder().id(4).operationType(OperationType.BUY).price(price("100.5")).volume(50).build());
+		processQueued();
+		
+		Assert.assertEquals(
+				Lists.newArrayList(
+						"1:4/2:20@" + price("100"), 
+						"2:4/3:20@" + price("100"), 
+						"3:4/1:10@" + price("100.5")), 
+				trades);
+		Assert.assertEquals(20, book.getOrder(1L).getVolume());
+	}
+	
 	@Test
 	public void testRemove() throws InterruptedException {
 		List<Order> orders = Lists.newArrayList(
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(10)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(20)).volume(30).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(30)).volume(45).build(),
-				new Order.Builder().id(id++).operationType(OperationType.BUY).price(BigDecimal.valueOf(40)).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("10")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("20")).volume(30).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("30")).volume(45).build(),
+				new Order.Builder().id(id++).operationType(OperationType.BUY).price(price("40")).volume(60).build(),
 				
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(400)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(300)).volume(50).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(200)).volume(60).build(),
-				new Order.Builder().id(id++).operationType(OperationType.SELL).price(BigDecimal.valueOf(100.0)).volume(50).build());
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("400")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("300")).volume(50).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("200")).volume(60).build(),
+				new Order.Builder().id(id++).operationType(OperationType.SELL).price(price("100.0")).volume(50).build());
 		for (Order order : orders) {
 			queue.put(order);
 		}
 		
+		processQueued();
+		
 		// Ensure that no match was performed
 		Assert.assertEquals(orders.size(), book.buys.size() + book.sells.size());
 		
@@ -268,9 +358,127 @@ public class OrderBookTest {
 			Assert.assertNull(book.getOrder(order.getId()));
 		}
 		
-		queue.put(Order.EMPTY);
+		processQueued();
 		
 		Assert.assertEquals(orders.size() - toBeRemoved.size(), book.sells.size() + book.buys.size());
 	}
 
+	@Test
+	public void shouldFreeSlotsOfFilledAndDeletedOrders() {
+		for (OrderStorage storage : OrderStorage.values()) {
+			book = new OrderBook("ID", queue, new OrderBookOptions.Builder().orderStorage(storage).build());
+			
+			book.process(OperationType.SELL, 1L, price("100"), 10);
+			book.process(OperationType.BUY, 2L, price("100"), 10);
+			Assert.assertEquals(0, book.store.size());
+			
+			book.process(OperationType.SELL, 3L, price("101"), 5);
+			book.process(OperationType.SELL, 4L, price("101"), 7);
+			book.process(OperationType.DELETE, 3L, 0L, 0L);
+			Assert.assertEquals(1, book.store.size());
+			
+			Order sell = book.getOrder(4L);
+			Assert.assertEquals(OperationType.SELL, sell.getOperationType());
+			Assert.assertEquals(price("101"), sell.getPrice());
+			Assert.assertEquals(7L, sell.getVolume());
+			Assert.assertEquals(4L, sell.getSequence());
+			Assert.assertNull(book.getOrder(3L));
+		}
+	}
+	
+	@Test
+	public void shouldKeepLevelLinkedAfterCancellingAnywhereInIt() {
+		for (long orderId = 1; orderId <= 5; orderId++) {
+			book.process(OperationType.BUY, orderId, price("100"), 1);
+		}
+		book.process(OperationType.BUY, 6L, price("99"), 1);
+		
+		// Middle, head and tail of the level
+		book.remove(3L);
+		book.remove(1L);
+		book.remove(5L);
+		
+		Assert.assertEquals(3, book.buys.size());
+		Assert.assertEquals(2L, book.buys.get(0).getId());
+		Assert.assertEquals(4L, book.buys.get(1).getId());
+		Assert.assertEquals(6L, book.buys.get(2).getId());
+		
+		// The emptied level is dropped and a new one at the same price starts from scratch
+		book.remove(2L);
+		book.remove(4L);
+		book.process(OperationType.BUY, 7L, price("100"), 1);
+		book.process(OperationType.SELL, 8L, price("99"), 2);
+		Assert.assertTrue(book.buys.isEmpty());
+	}
+	
+	@Test
+	public void shouldKeepPriorityWhenDecreasingVolume() {
+		book.process(OperationType.SELL, 1L, price("100"), 10);
+		book.process(OperationType.SELL, 2L, price("100"), 10);
+		
+		book.process(OperationType.MODIFY, 1L, price("100"), 4);
+		Assert.assertEquals(1L, book.sells.get(0).getId());
+		Assert.assertEquals(1L, book.sells.get(0).getSequence());
+		
+		book.process(OperationType.BUY, 3L, price("100"), 5);
+		Assert.assertNull(book.getOrder(1L));
+		Assert.assertEquals(9L, book.getOrder(2L).getVolume());
+	}
+	
+	@Test
+	public void shouldRequeueWhenIncreasingVolumeOrChangingPrice() {
+		book.process(OperationType.SELL, 1L, price("100"), 10);
+		book.process(OperationType.SELL, 2L, price("100"), 10);
+		
+		book.process(OperationType.MODIFY, 1L, price("100"), 12);
+		Assert.assertEquals(2L, book.sells.get(0).getId());
+		Assert.assertEquals(1L, book.sells.get(1).getId());
+		Assert.assertEquals(12L, book.sells.get(1).getVolume());
+		Assert.assertEquals(3L, book.sells.get(1).getSequence());
+		
+		book.process(OperationType.MODIFY, 2L, price("101"), 5);
+		Assert.assertEquals(1L, book.sells.get(0).getId());
+		Assert.assertEquals(2L, book.sells.get(1).getId());
+		Assert.assertEquals(price("101"), book.sells.get(1).getPrice());
+		Assert.assertEquals(2, book.store.size());
+	}
+	
+	@Test
+	public void shouldMatchWhenModifiedPriceCrossesSpread() {
+		book.process(OperationType.SELL, 1L, price("100"), 10);
+		book.process(OperationType.BUY, 2L, price("99"), 15);
+		
+		book.process(OperationType.MODIFY, 2L, price("100"), 15);
+		
+		Assert.assertTrue(book.sells.isEmpty());
+		Assert.assertEquals(1, book.buys.size());
+		Assert.assertEquals(5L, book.getOrder(2L).getVolume());
+		Assert.assertEquals(price("100"), book.getOrder(2L).getPrice());
+	}
+	
+	@Test
+	public void shouldCancelWhenModifiedToZeroVolumeAndIgnoreUnknownOrders() {
+		book.process(OperationType.BUY, 1L, price("100"), 10);
+		
+		book.process(OperationType.MODIFY, 7L, price("100"), 10);
+		Assert.assertNull(book.getOrder(7L));
+		Assert.assertEquals(1, book.buys.size());
+		
+		book.process(OperationType.MODIFY, 1L, price("100"), 0);
+		Assert.assertTrue(book.buys.isEmpty());
+		Assert.assertEquals(0, book.store.size());
+	}
+	
+	@Test
+	public void shouldCopyOrdersPassedByCaller() {
+		Order sell = new Order.Builder().id(1L).operationType(OperationType.SELL).price(price("100")).volume(10).build();
+		
+		book.process(sell);
+		book.process(OperationType.BUY, 2L, price("100"), 4);
+		
+		Assert.assertEquals(10L, sell.getVolume());
+		Assert.assertEquals(6L, book.getOrder(1L).getVolume());
+		Assert.assertNotSame(book.getOrder(1L), book.getOrder(1L));
+	}
+
 }
@@ -0,0 +1,81 @@
+package pl.ciruk.nordea.orders.book;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+public class OrderEventRingTest {
+
+	private OrderBook book = new OrderBook("ID", null);
+
+	@Test
+	public void shouldRejectOfferWhenFull() {
+		OrderEventRing ring = new OrderEventRing(4);
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(ring.offer(book, OperationType.BUY, i, 100, 10, 0L));
+		}
+
+		Assert.assertFalse(ring.offer(book, OperationType.BUY, 4, 100, 10, 0L));
+	}
+
+	@Test
+	public void shouldDrainInPublishingOrderAcrossWrapAround() {
+		OrderEventRing ring = new OrderEventRing(4);
+		final long[] expected = {0};
+		OrderEventRing.Handler handler = new OrderEventRing.Handler() {
+			@Override
+			public void onEvent(OrderBook target, OperationType operationType, long orderId, long price, long volume, long dispatched) {
+				Assert.assertSame(book, target);
+				Assert.assertEquals(OperationType.SELL, operationType);
+				Assert.assertEquals(expected[0]++, orderId);
+				Assert.assertEquals(orderId * 10, price);
+				Assert.assertEquals(orderId * 100, volume);
+			}
+		};
+
+		long id = 0;
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 3; i++, id++) {
+				Assert.assertTrue(ring.offer(book, OperationType.SELL, id, id * 10, id * 100, 0L));
+			}
+			Assert.assertEquals(2, ring.drain(handler, 2));
+			Assert.assertEquals(1, ring.drain(handler, 2));
+			Assert.assertEquals(0, ring.drain(handler, 2));
+		}
+		Assert.assertEquals(id, expected[0]);
+	}
+
+	@Test
+	public void shouldPassEventsBetweenThreads() throws InterruptedException {
+		final int events = 1000000;
+		final OrderEventRing ring = new OrderEventRing(1024);
+		final long[] sum = {0};
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				final int[] consumed = {0};
+				OrderEventRing.Handler handler = new OrderEventRing.Handler() {
+					@Override
+					public void onEvent(OrderBook target, OperationType operationType, long orderId, long price, long volume, long dispatched) {
+						sum[0] += orderId;
+						consumed[0]++;
+					}
+				};
+				while (consumed[0] < events) {
+					ring.drain(handler, 64);
+				}
+			}
+		};
+		consumer.start();
+
+		for (long id = 0; id < events; id++) {
+			while (!ring.offer(book, OperationType.BUY, id, 0, 0, 0L)) {
+				Thread.yield();
+			}
+		}
+		consumer.join();
+
+		Assert.assertEquals((long) events * (events - 1) / 2, sum[0]);
+	}
+}
@@ -0,0 +1,98 @@
+package pl.ciruk.nordea.orders.book;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+public class OrderMailboxTest {
+
+	@Test
+	public void shouldDrainInPostingOrderWhileGrowing() {
+		OrderMailbox mailbox = new OrderMailbox(2);
+		final long[] expected = {0};
+		OrderMailbox.Handler handler = new OrderMailbox.Handler() {
+			@Override
+			public void onOrder(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+				Assert.assertEquals(OperationType.BUY, operationType);
+				Assert.assertEquals(expected[0]++, orderId);
+				Assert.assertEquals(orderId * 10, price);
+				Assert.assertEquals(orderId * 100, volume);
+				Assert.assertEquals(orderId + 1, dispatched);
+			}
+		};
+		Assert.assertTrue(mailbox.isEmpty());
+
+		long id = 0;
+		for (int round = 1; round <= 10; round++) {
+			// Events posted while the previous ones are being drained are kept behind them
+			for (int i = 0; i < round; i++, id++) {
+				mailbox.offer(OperationType.BUY, id, id * 10, id * 100, id + 1);
+			}
+			Assert.assertFalse(mailbox.isEmpty());
+			mailbox.drain(handler, 3);
+		}
+		while (mailbox.drain(handler, 3) > 0) {
+			// Drains the rest
+		}
+
+		Assert.assertTrue(mailbox.isEmpty());
+		Assert.assertEquals(id, expected[0]);
+	}
+
+	@Test
+	public void shouldPassEndOfProcessing() {
+		OrderMailbox mailbox = new OrderMailbox(4);
+		final OperationType[] received = {OperationType.BUY};
+		mailbox.offer(null, 0L, 0L, 0L, 0L);
+
+		Assert.assertEquals(1, mailbox.drain(new OrderMailbox.Handler() {
+			@Override
+			public void onOrder(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+				received[0] = operationType;
+			}
+		}, 4));
+		Assert.assertNull(received[0]);
+	}
+
+	@Test
+	public void shouldCollectEventsOfManyProducers() throws InterruptedException {
+		final int producers = 4;
+		final int eventsPerProducer = 200000;
+		final OrderMailbox mailbox = new OrderMailbox(16);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < eventsPerProducer; i++) {
+						mailbox.offer(OperationType.SELL, producer, i, 1, 0L);
+					}
+				}
+			};
+			threads[p].start();
+		}
+
+		// Every producer's events must arrive in its own order
+		final long[] next = new long[producers];
+		OrderMailbox.Handler handler = new OrderMailbox.Handler() {
+			@Override
+			public void onOrder(OperationType operationType, long orderId, long price, long volume, long dispatched) {
+				Assert.assertEquals(next[(int) orderId]++, price);
+			}
+		};
+		long consumed = 0;
+		while (consumed < (long) producers * eventsPerProducer) {
+			consumed += mailbox.drain(handler, 64);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertTrue(mailbox.isEmpty());
+		for (int p = 0; p < producers; p++) {
+			Assert.assertEquals(eventsPerProducer, next[p]);
+		}
+	}
+}
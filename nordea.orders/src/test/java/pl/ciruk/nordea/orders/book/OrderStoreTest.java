@@ -0,0 +1,53 @@
+package pl.ciruk.nordea.orders.book;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+
+public class OrderStoreTest {
+
+	@Test
+	public void shouldKeepOrdersWhileGrowing() {
+		for (OrderStorage storage : OrderStorage.values()) {
+			OrderStore store = storage.create(0);
+			int count = 1000;
+			int[] slots = new int[count];
+			for (int i = 0; i < count; i++) {
+				OperationType operationType = i % 2 == 0 ? OperationType.BUY : OperationType.SELL;
+				slots[i] = store.add(i, operationType, 100 + i, 10 * i, i + 1, -i);
+			}
+
+			Assert.assertEquals(count, store.size());
+			for (int i = 0; i < count; i++) {
+				Order order = store.toOrder(slots[i]);
+				Assert.assertEquals(storage.name(), i, order.getId());
+				Assert.assertEquals(i % 2 == 0 ? OperationType.BUY : OperationType.SELL, order.getOperationType());
+				Assert.assertEquals(100 + i, order.getPrice());
+				Assert.assertEquals(10 * i, order.getVolume());
+				Assert.assertEquals(i + 1, order.getSequence());
+				Assert.assertEquals(-i, order.getTimestamp());
+			}
+		}
+	}
+
+	@Test
+	public void shouldReuseRemovedSlotsBeforeGrowing() {
+		for (OrderStorage storage : OrderStorage.values()) {
+			OrderStore store = storage.create(16);
+			int[] slots = new int[16];
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = store.add(i, OperationType.BUY, 1, 1, i, 0);
+			}
+			store.remove(slots[3]);
+			store.remove(slots[7]);
+
+			// Most recently freed first
+			Assert.assertEquals(slots[7], store.add(100, OperationType.SELL, 2, 2, 100, 0));
+			Assert.assertEquals(slots[3], store.add(101, OperationType.SELL, 2, 2, 101, 0));
+			Assert.assertEquals(16, store.capacity());
+			Assert.assertEquals(16, store.size());
+			Assert.assertEquals(100, store.getId(slots[7]));
+		}
+	}
+}
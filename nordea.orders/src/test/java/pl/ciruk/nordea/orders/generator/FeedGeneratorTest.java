@@ -0,0 +1,123 @@
+package pl.ciruk.nordea.orders.generator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.reader.OrderEventHandler;
+import pl.ciruk.nordea.orders.reader.OrderReader;
+import pl.ciruk.nordea.orders.reader.ParallelOrderLoader;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class FeedGeneratorTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldWriteFeedReadBackAsGenerated() throws Exception {
+		FeedGenerator generator = new FeedGenerator.Builder().orders(20000).books(7).build();
+		List<String> generated = Lists.newArrayList();
+		generator.generate(collector(generated));
+
+		File file = folder.newFile();
+		try (FeedWriter writer = FeedFormat.XML.writer(FileChannel.open(file.toPath(), StandardOpenOption.WRITE), PriceScale.DEFAULT, 4096)) {
+			generator.generate(writer);
+		}
+
+		List<String> read = Lists.newArrayList();
+		new ParallelOrderLoader.Builder().chunkSize(1 << 16).build().process(file, collector(read));
+		assertEquals(generated, read);
+	}
+
+	@Test
+	public void shouldWritePricesOfAnyMagnitude() throws Exception {
+		long[] prices = { 1, 5, 99, 100, 1005000, 123456789012L };
+		File file = folder.newFile();
+		try (FeedWriter writer = FeedFormat.XML.writer(FileChannel.open(file.toPath(), StandardOpenOption.WRITE), PriceScale.DEFAULT, 64)) {
+			for (int i = 0; i < prices.length; i++) {
+				writer.onOrder("book", OperationType.SELL, i, prices[i], Long.MAX_VALUE - i);
+			}
+		}
+
+		try (OrderReader reader = OrderReader.from(file, OrderReader.Mode.CURSOR, PriceScale.DEFAULT)) {
+			for (int i = 0; i < prices.length; i++) {
+				assertTrue(reader.hasNext());
+				assertEquals(prices[i], reader.next().asAddMessage().getPrice());
+			}
+		}
+	}
+
+	@Test
+	public void shouldGenerateSameFeedForSameSeed() throws IOException {
+		assertArrayEquals(xml(new FeedGenerator.Builder().orders(5000).seed(7).build()), xml(new FeedGenerator.Builder().orders(5000).seed(7).build()));
+		assertFalse(Arrays.equals(xml(new FeedGenerator.Builder().orders(5000).seed(7).build()), xml(new FeedGenerator.Builder().orders(5000).seed(8).build())));
+	}
+
+	@Test
+	public void shouldCancelOnlyOrdersAddedToSameBook() {
+		final Map<Long, String> added = Maps.newHashMap();
+		final Set<Long> cancelled = Sets.newHashSet();
+		final long[] counts = new long[OperationType.values().length];
+		final long[] crossing = new long[1];
+		new FeedGenerator.Builder().orders(100000).books(3).cancelRatio(0.4).crossingRatio(0.1).volatility(0).build().generate(new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				counts[operationType.ordinal()]++;
+				if (operationType == OperationType.DELETE) {
+					assertEquals(bookId, added.get(orderId));
+					assertTrue(cancelled.add(orderId));
+				} else {
+					assertTrue(volume > 0);
+					added.put(orderId, bookId);
+					// Without volatility mids stay at 100.00
+					if (operationType == OperationType.BUY ? price > 1000000 : price < 1000000) {
+						crossing[0]++;
+					}
+				}
+			}
+		});
+
+		long adds = counts[OperationType.BUY.ordinal()] + counts[OperationType.SELL.ordinal()];
+		assertEquals(100000, adds + counts[OperationType.DELETE.ordinal()]);
+		assertEquals(0.4, counts[OperationType.DELETE.ordinal()] / 100000.0, 0.01);
+		assertEquals(0.1, crossing[0] / (double) adds, 0.01);
+	}
+
+	private static byte[] xml(FeedGenerator generator) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FeedWriter writer = FeedFormat.XML.writer(Channels.newChannel(out), PriceScale.DEFAULT, 1024)) {
+			generator.generate(writer);
+		}
+		return out.toByteArray();
+	}
+
+	private static OrderEventHandler collector(final List<String> orders) {
+		return new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				orders.add(bookId + " " + operationType + " " + orderId + " " + volume + "@" + price);
+			}
+		};
+	}
+}
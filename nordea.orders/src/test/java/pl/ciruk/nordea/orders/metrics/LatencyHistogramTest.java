@@ -0,0 +1,67 @@
+package pl.ciruk.nordea.orders.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void shouldCountSmallValuesExactly() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(50, histogram.getValueAtPercentile(50.0));
+		Assert.assertEquals(99, histogram.getValueAtPercentile(99.0));
+		Assert.assertEquals(100, histogram.getValueAtPercentile(100.0));
+		Assert.assertEquals(50.5, histogram.getMean(), 1e-9);
+	}
+
+	@Test
+	public void shouldKeepRelativeErrorBounded() {
+		long[] values = { 128, 1000, 12345, 999999, 123456789L, 10000000000L };
+		for (long value : values) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(value);
+			histogram.record(Long.MAX_VALUE / 2);
+
+			long reported = histogram.getValueAtPercentile(50.0);
+			Assert.assertTrue("Reported " + reported + " for " + value, reported >= value);
+			Assert.assertTrue("Reported " + reported + " for " + value, reported <= value + value / 64);
+		}
+	}
+
+	@Test
+	public void shouldClampValuesOutOfRange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE / 2);
+
+		Assert.assertEquals(0, histogram.getValueAtPercentile(50.0));
+		Assert.assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+		Assert.assertTrue(histogram.getValueAtPercentile(100.0) <= histogram.getMax());
+	}
+
+	@Test
+	public void shouldMergeHistograms() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			first.record(10);
+		}
+		for (int i = 0; i < 10; i++) {
+			second.record(5000);
+		}
+
+		LatencyHistogram total = new LatencyHistogram();
+		total.add(first);
+		total.add(second);
+
+		Assert.assertEquals(100, total.getCount());
+		Assert.assertEquals(10, total.getValueAtPercentile(90.0));
+		Assert.assertEquals(5000, total.getMax());
+		Assert.assertTrue(total.getValueAtPercentile(91.0) >= 5000);
+	}
+}
@@ -0,0 +1,96 @@
+package pl.ciruk.nordea.orders.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.book.OrderBookContainer;
+
+public class OrderBookMetricsTest {
+
+	@Test
+	public void shouldCountOrdersOfPooledBooks() throws InterruptedException {
+		try (OrderBookMetrics metrics = new OrderBookMetrics.Builder().build()) {
+			process(new OrderBookContainer.Builder().workers(2).metrics(metrics).build());
+
+			assertCounters(metrics);
+		}
+	}
+
+	@Test
+	public void shouldCountOrdersOfShardedBooks() throws InterruptedException {
+		try (OrderBookMetrics metrics = new OrderBookMetrics.Builder().build()) {
+			process(new OrderBookContainer.Builder().shards(2).ringSize(64).metrics(metrics).build());
+
+			assertCounters(metrics);
+		}
+	}
+
+	@Test
+	public void shouldExposeBooksThroughJmx() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OrderBookMetrics.JMX_DOMAIN + ":type=OrderBook,name=" + ObjectName.quote("jmx-book"));
+
+		try (OrderBookMetrics metrics = new OrderBookMetrics.Builder().jmx(true).build()) {
+			OrderBookContainer container = new OrderBookContainer.Builder().metrics(metrics).build();
+			container.process("jmx-book", OperationType.BUY, 1L, 100L, 10L);
+			container.process("jmx-book", OperationType.DELETE, 1L, 0L, 0L);
+			container.finishProcessing();
+
+			Assert.assertEquals(2L, server.getAttribute(name, "Messages"));
+			Assert.assertEquals(1L, server.getAttribute(name, "Cancels"));
+		}
+
+		Assert.assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void shouldDumpEveryBookAndTotal() throws InterruptedException {
+		try (OrderBookMetrics metrics = new OrderBookMetrics.Builder().build()) {
+			process(new OrderBookContainer.Builder().metrics(metrics).build());
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			metrics.dump(new PrintStream(bytes, true));
+			String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n");
+
+			Assert.assertEquals(4, lines.length);
+			Assert.assertTrue(lines[1].startsWith("A "));
+			Assert.assertTrue(lines[2].startsWith("B "));
+			Assert.assertTrue(lines[3].matches("total\\s+8\\s+2\\s+2\\s+0\\s.*"));
+		}
+	}
+
+	/** Both books get a crossing pair of orders and an order which is then cancelled. */
+	private static void process(OrderBookContainer container) throws InterruptedException {
+		for (String bookId : new String[] { "A", "B" }) {
+			container.process(bookId, OperationType.SELL, 1L, 100L, 10L);
+			container.process(bookId, OperationType.BUY, 2L, 100L, 10L);
+			container.process(bookId, OperationType.BUY, 3L, 90L, 10L);
+			container.process(bookId, OperationType.DELETE, 3L, 0L, 0L);
+		}
+		container.finishProcessing();
+	}
+
+	private static void assertCounters(OrderBookMetrics metrics) {
+		Assert.assertEquals(2, metrics.getBooks().size());
+		for (BookMetrics book : metrics.getBooks()) {
+			Assert.assertEquals(4, book.getMessages());
+			Assert.assertEquals(1, book.getFills());
+			Assert.assertEquals(1, book.getCancels());
+			Assert.assertEquals(0, book.getQueueDepth());
+			Assert.assertEquals(4, book.getQueueTime().getCount());
+			Assert.assertEquals(4, book.getMatchTime().getCount());
+			Assert.assertEquals(4, book.getEndToEndTime().getCount());
+			Assert.assertTrue(book.getEndToEndTime().getMax() >= book.getMatchTime().getMax());
+		}
+		Assert.assertEquals(8, metrics.total(OrderBookMetrics.Stage.END_TO_END).getCount());
+	}
+}
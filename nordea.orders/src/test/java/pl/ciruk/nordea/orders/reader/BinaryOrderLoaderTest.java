@@ -0,0 +1,123 @@
+package pl.ciruk.nordea.orders.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.generator.FeedFormat;
+import pl.ciruk.nordea.orders.generator.FeedGenerator;
+import pl.ciruk.nordea.orders.generator.FeedWriter;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+
+public class BinaryOrderLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldLoadFeedAsGenerated() throws IOException {
+		FeedGenerator generator = new FeedGenerator.Builder().orders(20000).books(7).build();
+		List<String> generated = Lists.newArrayList();
+		generator.generate(collector(generated));
+
+		File file = folder.newFile();
+		try (FeedWriter writer = binaryWriter(file, PriceScale.DEFAULT)) {
+			generator.generate(writer);
+		}
+
+		List<String> loaded = Lists.newArrayList();
+		new BinaryOrderLoader.Builder().windowSize(4096).build().process(file, collector(loaded));
+		assertEquals(generated, loaded);
+		assertEquals(BinaryFeed.RECORD_SIZE * (1 + 20000 + 7 * 2), file.length());
+	}
+
+	@Test
+	public void shouldLoadBooksCutOffByWindows() throws IOException {
+		// Each book's record takes 4 records, so some of them straddle windows of 7 records
+		String prefix = "księga-" + new String(new char[60]).replace('\0', 'x');
+		List<String> written = Lists.newArrayList();
+		File file = folder.newFile();
+		try (FeedWriter writer = binaryWriter(file, PriceScale.DEFAULT)) {
+			for (int i = 0; i < 50; i++) {
+				String bookId = prefix + (i % 10);
+				OperationType operationType = OperationType.values()[i % OperationType.values().length];
+				writer.onOrder(bookId, operationType, i, -i * 100L, Long.MAX_VALUE - i);
+				written.add(bookId + " " + operationType + " " + i + " " + (Long.MAX_VALUE - i) + "@" + (-i * 100L));
+			}
+		}
+
+		List<String> loaded = Lists.newArrayList();
+		new BinaryOrderLoader.Builder().windowSize(7 * BinaryFeed.RECORD_SIZE).build().process(file, collector(loaded));
+		assertEquals(written, loaded);
+	}
+
+	@Test
+	public void shouldLoadConvertedXmlFeed() throws IOException, InterruptedException, URISyntaxException {
+		File xml = new File(getClass().getResource("/simple_orders.xml").toURI());
+		OrderPipeline pipeline = new OrderPipeline.Builder().build();
+		List<String> parsed = Lists.newArrayList();
+		pipeline.process(xml, collector(parsed));
+
+		File file = folder.newFile();
+		try (FeedWriter writer = binaryWriter(file, PriceScale.DEFAULT)) {
+			pipeline.process(xml, writer);
+		}
+
+		List<String> loaded = Lists.newArrayList();
+		new BinaryOrderLoader.Builder().build().process(file, collector(loaded));
+		assertFalse(parsed.isEmpty());
+		assertEquals(parsed, loaded);
+		assertTrue(BinaryOrderLoader.isBinary(file));
+		assertFalse(BinaryOrderLoader.isBinary(xml));
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldRejectFeedOfOtherPriceScale() throws IOException {
+		File file = folder.newFile();
+		try (FeedWriter writer = binaryWriter(file, new PriceScale(2))) {
+			writer.onOrder("book", OperationType.BUY, 1, 100, 10);
+		}
+
+		new BinaryOrderLoader.Builder().build().process(file, collector(Lists.<String>newArrayList()));
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldRejectTruncatedFeed() throws IOException {
+		File file = folder.newFile();
+		try (FeedWriter writer = binaryWriter(file, PriceScale.DEFAULT)) {
+			writer.onOrder("book", OperationType.BUY, 1, 100, 10);
+		}
+		try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+			truncated.setLength(file.length() - 1);
+		}
+
+		new BinaryOrderLoader.Builder().build().process(file, collector(Lists.<String>newArrayList()));
+	}
+
+	private static FeedWriter binaryWriter(File file, PriceScale priceScale) throws IOException {
+		return FeedFormat.BINARY.writer(FileChannel.open(file.toPath(), StandardOpenOption.WRITE), priceScale, 256);
+	}
+
+	private static OrderEventHandler collector(final List<String> orders) {
+		return new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				orders.add(bookId + " " + operationType + " " + orderId + " " + volume + "@" + price);
+			}
+		};
+	}
+}
@@ -0,0 +1,120 @@
+package pl.ciruk.nordea.orders.reader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+
+public class MappedOrderReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldReadOrdersAcrossWindows() throws IOException {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<all>\n");
+		for (int i = 1; i <= 100; i++) {
+			xml.append("<AddOrder book=\"book-").append(i % 3).append("\" operation=\"BUY\" price=\"100.5\" volume=\"")
+					.append(i).append("\" orderId=\"").append(i).append("\" />\n");
+			xml.append("<DeleteOrder book=\"book-").append(i % 3).append("\" orderId=\"").append(i).append("\" />\n");
+		}
+		xml.append("</all>\n");
+		File file = write(xml.toString());
+
+		// Windows shorter than two elements force remapping on nearly every order
+		for (int windowSize : new int[] { 100, 128, 1000, MappedOrderReader.WINDOW_SIZE }) {
+			List<OrderMessage> messages = Lists.newArrayList();
+			long volume = 0;
+			try (MappedOrderReader reader = new MappedOrderReader(file, PriceScale.DEFAULT, windowSize)) {
+				while (reader.hasNext()) {
+					OrderMessage message = reader.next();
+					if (message.isAddMessage()) {
+						assertEquals(message.getOrderId(), message.asAddMessage().getVolume());
+						assertEquals(1005000, message.asAddMessage().getPrice());
+						volume += message.asAddMessage().getVolume();
+						messages.add(message);
+					} else if (message.isDeleteMessage()) {
+						messages.add(message);
+					}
+				}
+			}
+			assertEquals(200, messages.size());
+			assertEquals(5050, volume);
+		}
+	}
+
+	@Test
+	public void shouldToleratePrologCommentsQuotesAndWhitespace() throws IOException {
+		File file = write("<?xml version='1.0' encoding='UTF-8'?>\n"
+				+ "<!-- <AddOrder book=\"commented\" /> -->\n"
+				+ "<all>\n"
+				+ "\t<AddOrder\n\t\tbook='b>1' operation = 'SELL' price='-2' volume='7' orderId='42'/>"
+				+ "<Other attribute=\"x\"/><DeleteOrder orderId=\"42\" book=\"b>1\"></DeleteOrder>\n"
+				+ "</all>");
+
+		try (MappedOrderReader reader = new MappedOrderReader(file, new PriceScale(2), 128)) {
+			AddOrderMessage add = reader.next().asAddMessage();
+			assertEquals("b>1", add.getBookId());
+			assertEquals("SELL", add.getOperation());
+			assertEquals(-200, add.getPrice());
+			assertEquals(7, add.getVolume());
+			assertEquals(42, add.getOrderId());
+
+			DeleteOrderMessage delete = reader.next().asDeleteOrderMessage();
+			assertSame(add.getBookId(), delete.getBookId());
+			assertEquals(42, delete.getOrderId());
+
+			assertSame(OrderMessage.EMPTY, reader.next());
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldRejectElementLongerThanWindow() throws IOException {
+		File file = write("<all><AddOrder book=\"a-rather-long-book-identifier\" orderId=\"1\" /></all>");
+
+		try (MappedOrderReader reader = new MappedOrderReader(file, PriceScale.DEFAULT, 32)) {
+			reader.next();
+		}
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldRejectTruncatedFile() throws IOException {
+		File file = write("<all><AddOrder book=\"book-1\" orderId=\"1\" /><DeleteOrder book=\"book-1\" ");
+
+		try (MappedOrderReader reader = new MappedOrderReader(file, PriceScale.DEFAULT)) {
+			reader.next();
+			reader.next();
+		}
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldRejectUnknownAttributeOfAddOrder() throws IOException {
+		File file = write("<AddOrder book=\"book-1\" side=\"BUY\" />");
+
+		try (MappedOrderReader reader = new MappedOrderReader(file, PriceScale.DEFAULT)) {
+			reader.next();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotMapStreams() {
+		OrderReader.from(getClass().getClassLoader().getResourceAsStream("simple_orders.xml"), OrderReader.Mode.MAPPED, PriceScale.DEFAULT);
+	}
+
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -20,6 +20,14 @@ public class OrderMessageTest {
 		Assert.assertTrue(message.isDeleteMessage());
 	}
 	
+	@Test
+	public void shouldCreateModifyMessage() {
+		OrderMessage message = new ModifyOrderMessage();
+		Assert.assertFalse(message.isAddMessage());
+		Assert.assertFalse(message.isDeleteMessage());
+		Assert.assertTrue(message.isModifyMessage());
+	}
+	
 	@Test
 	public void shouldCreateEmptyMessage() {
 		OrderMessage message = OrderMessage.EMPTY;
@@ -0,0 +1,112 @@
+package pl.ciruk.nordea.orders.reader;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+
+public class OrderPipelineTest {
+
+	@Test
+	public void shouldPassOrdersInInputOrder() throws Exception {
+		StringBuilder xml = new StringBuilder("<all>\n");
+		for (int i = 1; i <= 1000; i++) {
+			xml.append("<AddOrder book=\"book-").append(i % 7).append("\" operation=\"")
+					.append(i % 2 == 0 ? "BUY" : "SELL").append("\" price=\"10.5\" volume=\"").append(i)
+					.append("\" orderId=\"").append(i).append("\" />\n");
+			if (i % 10 == 0) {
+				xml.append("<DeleteOrder book=\"book-").append(i % 7).append("\" orderId=\"").append(i - 5).append("\" />\n");
+			}
+		}
+		xml.append("</all>\n");
+
+		// Chunks shorter than two elements split most orders, tiny batches and queues keep stages blocking on each other
+		OrderPipeline pipeline = new OrderPipeline.Builder()
+				.priceScale(new PriceScale(2))
+				.chunkSize(128)
+				.chunkQueueDepth(1)
+				.batchSize(3)
+				.batchQueueDepth(1)
+				.build();
+		final List<String> orders = Lists.newArrayList();
+		pipeline.process(stream(xml.toString()), new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				orders.add(String.format("%s %s %d %d@%d", bookId, operationType, orderId, volume, price));
+			}
+		});
+
+		assertEquals(1100, orders.size());
+		assertEquals("book-1 SELL 1 1@1050", orders.get(0));
+		assertEquals("book-3 BUY 10 10@1050", orders.get(9));
+		assertEquals("book-3 DELETE 5 0@0", orders.get(10));
+		assertEquals("book-6 DELETE 995 0@0", orders.get(1099));
+	}
+
+	@Test
+	public void shouldReadSameOrdersAsReader() throws Exception {
+		final List<String> expected = Lists.newArrayList();
+		try (OrderReader reader = OrderReader.from(getClass().getClassLoader().getResourceAsStream("simple_orders.xml"))) {
+			while (reader.hasNext()) {
+				OrderMessage message = reader.next();
+				if (message != OrderMessage.EMPTY) {
+					expected.add(message.getBookId() + " " + message.getOrderId());
+				}
+			}
+		}
+
+		final List<String> orders = Lists.newArrayList();
+		new OrderPipeline.Builder().build().process(getClass().getClassLoader().getResourceAsStream("simple_orders.xml"), new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				orders.add(bookId + " " + orderId);
+			}
+		});
+
+		assertEquals(expected, orders);
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldReportFailureOfDecoding() throws Exception {
+		new OrderPipeline.Builder().build().process(stream("<all><DeleteOrder book=\"book-1\" orderId=\"1\" /><DeleteOrder "),
+				new OrderEventHandler() {
+					@Override
+					public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+					}
+				});
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldStopStagesWhenHandlerFails() throws Exception {
+		StringBuilder xml = new StringBuilder();
+		for (int i = 1; i <= 100000; i++) {
+			xml.append("<DeleteOrder book=\"book-1\" orderId=\"").append(i).append("\" />\n");
+		}
+
+		OrderPipeline pipeline = new OrderPipeline.Builder()
+				.chunkSize(1024)
+				.batchSize(16)
+				.build();
+		pipeline.process(stream(xml.toString()), new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				if (orderId == 100) {
+					throw new IllegalStateException();
+				}
+			}
+		});
+	}
+
+	private InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
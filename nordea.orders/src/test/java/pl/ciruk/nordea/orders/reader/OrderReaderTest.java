@@ -3,15 +3,19 @@ package pl.ciruk.nordea.orders.reader;
 import static org.junit.Assert.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URISyntaxException;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
 import com.google.common.collect.Lists;
 
 public class OrderReaderTest {
@@ -37,7 +41,7 @@ public class OrderReaderTest {
 			fail(e.getMessage());
 		}
 
-		int expectedOrderNumber = countOccurrances("AddOrder", xml) + countOccurrances("DeleteOrder", xml);
+		int expectedOrderNumber = countOccurrances("AddOrder", xml) + countOccurrances("DeleteOrder", xml) + countOccurrances("ModifyOrder", xml);
 		
 		List<OrderMessage> messages = Lists.newArrayList();
 		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("simple_orders.xml");
@@ -59,6 +63,54 @@ public class OrderReaderTest {
 		assertEquals(expectedOrderNumber, messages.size());
 	}
 	
+	@Test
+	public void shouldReadPriceAsTicks() throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("simple_orders.xml");
+				OrderReader reader = OrderReader.from(inputStream, new PriceScale(2))) {
+			
+			OrderMessage message = OrderMessage.EMPTY;
+			while (reader.hasNext() && !message.isAddMessage()) {
+				message = reader.next();
+			}
+			
+			assertEquals(10100, message.asAddMessage().getPrice());
+		}
+	}
+	
+	@Test
+	public void shouldReadSameMessagesInEveryMode() throws Exception {
+		List<String> expected = describeAll(OrderReader.Mode.EVENT);
+		assertEquals(5, expected.size());
+		assertEquals("modify book-2 9365 40@1005000", expected.get(3));
+		
+		for (OrderReader.Mode mode : OrderReader.Mode.values()) {
+			assertEquals(mode.name(), expected, describeAll(mode));
+		}
+	}
+	
+	/** Reads sample file in given mode and describes each message, so that reused messages can be compared. */
+	private List<String> describeAll(OrderReader.Mode mode) throws URISyntaxException {
+		File file = new File(getClass().getClassLoader().getResource("simple_orders.xml").toURI());
+		List<String> descriptions = Lists.newArrayList();
+		try (OrderReader reader = OrderReader.from(file, mode, PriceScale.DEFAULT)) {
+			while (reader.hasNext()) {
+				OrderMessage message = reader.next();
+				if (message.isAddMessage()) {
+					AddOrderMessage add = message.asAddMessage();
+					descriptions.add(String.format("add %s %d %s %d@%d", 
+							add.getBookId(), add.getOrderId(), add.getOperation(), add.getVolume(), add.getPrice()));
+				} else if (message.isDeleteMessage()) {
+					descriptions.add(String.format("delete %s %d", message.getBookId(), message.getOrderId()));
+				} else if (message.isModifyMessage()) {
+					ModifyOrderMessage modify = message.asModifyMessage();
+					descriptions.add(String.format("modify %s %d %d@%d", 
+							modify.getBookId(), modify.getOrderId(), modify.getVolume(), modify.getPrice()));
+				}
+			}
+		}
+		return descriptions;
+	}
+	
 	private String readAll(InputStream stream) throws IOException {
 		StringBuffer data = new StringBuffer();
 		try (Reader reader = new BufferedReader(new InputStreamReader(stream))) {
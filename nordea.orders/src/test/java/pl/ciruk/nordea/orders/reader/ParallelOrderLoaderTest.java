@@ -0,0 +1,97 @@
+package pl.ciruk.nordea.orders.reader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.ciruk.nordea.orders.book.Order.OperationType;
+import pl.ciruk.nordea.orders.utils.PriceScale;
+
+import com.google.common.collect.Lists;
+
+public class ParallelOrderLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldDispatchOrdersInFileOrder() throws Exception {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<all>\n");
+		for (int i = 1; i <= 5000; i++) {
+			xml.append("<AddOrder book=\"book-").append(i % 13).append("\" operation=\"")
+					.append(i % 3 == 0 ? "BUY" : "SELL").append("\" price=\"").append(i % 50).append(".25\" volume=\"")
+					.append(i).append("\" orderId=\"").append(i).append("\" />\n");
+			if (i % 4 == 0) {
+				xml.append("<DeleteOrder book=\"book-").append(i % 13).append("\" orderId=\"").append(i - 2).append("\" />\n");
+			}
+			if (i % 5 == 0) {
+				xml.append("<ModifyOrder book=\"book-").append(i % 13).append("\" orderId=\"").append(i - 1)
+						.append("\" price=\"").append(i % 40).append(".5\" volume=\"").append(i / 2).append("\" />\n");
+			}
+		}
+		xml.append("</all>\n");
+		File file = write(xml.toString());
+
+		List<String> expected = Lists.newArrayList();
+		try (OrderReader reader = OrderReader.from(file, OrderReader.Mode.MAPPED, PriceScale.DEFAULT)) {
+			while (reader.hasNext()) {
+				OrderMessage message = reader.next();
+				if (message.isAddMessage()) {
+					AddOrderMessage add = message.asAddMessage();
+					expected.add(describe(add.getBookId(), OperationType.valueOf(add.getOperation()), add.getOrderId(), add.getPrice(), add.getVolume()));
+				} else if (message.isDeleteMessage()) {
+					expected.add(describe(message.getBookId(), OperationType.DELETE, message.getOrderId(), 0, 0));
+				} else if (message.isModifyMessage()) {
+					ModifyOrderMessage modify = message.asModifyMessage();
+					expected.add(describe(modify.getBookId(), OperationType.MODIFY, modify.getOrderId(), modify.getPrice(), modify.getVolume()));
+				}
+			}
+		}
+		assertEquals(7250, expected.size());
+
+		// Chunks of a few elements each and more tasks in flight than there are processors
+		for (int chunkSize : new int[] { 1, 200, 4096, ParallelOrderLoader.DEFAULT_CHUNK_SIZE }) {
+			ParallelOrderLoader loader = new ParallelOrderLoader.Builder()
+					.parallelism(4)
+					.chunkSize(chunkSize)
+					.batchSize(7)
+					.build();
+			assertEquals("chunk size " + chunkSize, expected, loadAll(loader, file));
+		}
+	}
+
+	@Test(expected = OrderReaderException.class)
+	public void shouldReportFailureOfChunk() throws Exception {
+		File file = write("<all><DeleteOrder book=\"book-1\" orderId=\"1\" /><DeleteOrder book=\"book-1\" orderId=\"2\" <DeleteOrder book=\"book-1\" orderId=\"3\" /></all>");
+
+		loadAll(new ParallelOrderLoader.Builder().chunkSize(1).build(), file);
+	}
+
+	private List<String> loadAll(ParallelOrderLoader loader, File file) throws InterruptedException {
+		final List<String> orders = Lists.newArrayList();
+		loader.process(file, new OrderEventHandler() {
+			@Override
+			public void onOrder(String bookId, OperationType operationType, long orderId, long price, long volume) {
+				orders.add(describe(bookId, operationType, orderId, price, volume));
+			}
+		});
+		return orders;
+	}
+
+	private static String describe(String bookId, OperationType operationType, long orderId, long price, long volume) {
+		return String.format("%s %s %d %d@%d", bookId, operationType, orderId, volume, price);
+	}
+
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,59 @@
+package pl.ciruk.nordea.orders.utils;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class LongIntMapTest {
+
+	@Test
+	public void shouldBehaveLikeHashMap() {
+		Random random = new Random(42);
+		LongIntMap map = new LongIntMap(0);
+		Map<Long, Integer> expected = Maps.newHashMap();
+
+		// Narrow key range, so that puts and removes often hit the same keys and probe sequences overlap
+		for (int i = 0; i < 200000; i++) {
+			long key = random.nextInt(5000) * 1024L;
+			if (random.nextInt(10) < 6) {
+				int value = random.nextInt(Integer.MAX_VALUE);
+				Integer previous = expected.put(key, value);
+				Assert.assertEquals(previous != null ? previous : LongIntMap.NO_VALUE, map.put(key, value));
+			} else {
+				Integer removed = expected.remove(key);
+				Assert.assertEquals(removed != null ? removed : LongIntMap.NO_VALUE, map.remove(key));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+
+		for (long key = 0; key < 5000 * 1024L; key += 1024) {
+			Integer value = expected.get(key);
+			Assert.assertEquals(value != null ? value : LongIntMap.NO_VALUE, map.get(key));
+		}
+	}
+
+	@Test
+	public void shouldFindEntriesAfterRemovalWithinProbeSequence() {
+		LongIntMap map = new LongIntMap(1000);
+		for (int i = 0; i < 1000; i++) {
+			map.put(Long.MIN_VALUE + i, i);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			Assert.assertEquals(i, map.remove(Long.MIN_VALUE + i));
+		}
+
+		Assert.assertEquals(500, map.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i % 2 == 0 ? LongIntMap.NO_VALUE : i, map.get(Long.MIN_VALUE + i));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeValues() {
+		new LongIntMap(1).put(1L, LongIntMap.NO_VALUE);
+	}
+}
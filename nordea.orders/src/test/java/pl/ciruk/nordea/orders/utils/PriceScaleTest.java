@@ -0,0 +1,58 @@
+package pl.ciruk.nordea.orders.utils;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class PriceScaleTest {
+
+	private PriceScale scale = new PriceScale(2);
+
+	@Test
+	public void shouldParseToTicks() {
+		assertEquals(10100, scale.parse("101"));
+		assertEquals(10150, scale.parse("101.5"));
+		assertEquals(10125, scale.parse("101.25"));
+		assertEquals(-10, scale.parse("-0.1"));
+		assertEquals(5, scale.parse(".05"));
+	}
+
+	@Test
+	public void shouldParseTrailingZerosToTheSameTicks() {
+		assertEquals(scale.parse("101.0"), scale.parse("101.00"));
+		assertEquals(scale.parse("101"), scale.parse("101.0000"));
+	}
+
+	@Test
+	public void shouldParseRangeOfCharacters() {
+		assertEquals(9950, scale.parse("price=\"99.50\"", 7, 12));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void shouldRejectPriceFinerThanTick() {
+		scale.parse("101.005");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void shouldRejectInvalidCharacters() {
+		scale.parse("10a.5");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void shouldRejectEmptyPrice() {
+		scale.parse("");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void shouldRejectOverflow() {
+		scale.parse("92233720368547758.08");
+	}
+
+	@Test
+	public void shouldConvertBigDecimal() {
+		assertEquals(10150, scale.toTicks(new BigDecimal("101.50")));
+		assertEquals(0, new BigDecimal("101.50").compareTo(scale.toDecimal(10150)));
+	}
+}